@@ -1,48 +1,42 @@
 package com;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
-import javafx.animation.PauseTransition;
 import javafx.application.Application;
 import javafx.application.Platform;
-import javafx.geometry.Bounds;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ContextMenu;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
+import javafx.scene.control.MenuItem;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.RadioButton;
 import javafx.scene.control.ScrollPane;
-import javafx.scene.control.Separator;
 import javafx.scene.control.TextField;
 import javafx.scene.control.ToggleGroup;
-import javafx.scene.control.Tooltip;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCode;
-import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
-import javafx.scene.layout.Priority;
-import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
-import javafx.scene.text.Text;
-import javafx.scene.text.TextAlignment;
-import javafx.scene.text.TextFlow;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import javafx.util.Duration;
 
 /**
  * JavaFX-based GUI application for a drug interaction checker
@@ -50,18 +44,39 @@ import javafx.util.Duration;
 public class AppGUI extends Application {
     private static final Logger logger = Logger.getLogger(AppGUI.class.getName());
     private static final DatabaseQuery databaseQuery = new DatabaseQuery();
+    private static final int QUERY_THREADS = 4;
+    private static final long VERSION_CHECK_SECONDS = 30;
     private TextField textField;
     private ListView<String> suggestions;
     private final Set<String> drugSelection = new HashSet<>();
+    private final RegimenSession regimenSession = new RegimenSession();
+    private InteractionWindow sessionWindow;
+    private CheckBox summariesFirstBox;
     private HBox labelRow;
     private ScrollPane scrollPane;
     private final Map<String, String> wikiQueries = new HashMap<>();
     private MQQTClient mqttServer;
+    private HttpQueryClient httpClient;
+    private HttpQueryServer httpServer;
+    private EmbeddedBroker embeddedBroker;
+    private MQQTServer embeddedServer;
     private boolean localdb=false;
     private boolean mqttdb=false;
+    private boolean httpdb=false;
     private Queryable querySource;
     private Thread serverThread;
     private boolean serverRunning = false;
+    private final ExecutorService queryExecutor = Executors.newFixedThreadPool(QUERY_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "twosides-query");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService versionChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "data-version-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> versionPoll;
 
     /**
      * Starts the JavaFX application by setting up the primary stage
@@ -72,15 +87,66 @@ public class AppGUI extends Application {
     public void start(Stage primaryStage) {
         VBox mainLayout = createMainLayout();
         Scene scene = new Scene(mainLayout, 1200, 1000);
+        scene.getStylesheets().add(ResourceCache.stylesheet());
         primaryStage.setTitle("Twosides");
         primaryStage.setScene(scene);
         primaryStage.show();
         openConnectionSelectionWindow();
-        querySource = mqttdb ? mqttServer : localdb ? databaseQuery : null;
+        querySource = mqttdb ? mqttServer : httpdb ? httpClient : localdb ? databaseQuery : null;
         if (querySource == null && !serverRunning) {
             logger.severe("No database connection method selected. Please choose either MQTT or Local DB.");
             alertMessage("Error", "No database connection method selected. Please choose either MQTT or Local DB.");
         }
+        watchDataVersion();
+    }
+
+    /**
+     * Stops the servers and the embedded broker when the application closes, their threads would keep the JVM alive
+     */
+    @Override
+    public void stop() {
+        versionChecker.shutdownNow();
+        if (httpServer != null) {
+            httpServer.stop();
+        }
+        if (embeddedServer != null) {
+            embeddedServer.stop();
+        }
+        if (embeddedBroker != null) {
+            embeddedBroker.stop();
+        }
+    }
+
+    /**
+     * Subscribes to data version changes of the selected backend
+     * The HTTP client revalidates its responses by ETag, but the regimen results kept by the GUI are only flushed by a version change
+     */
+    private void watchDataVersion() {
+        if (mqttdb && mqttServer != null) {
+            mqttServer.addDataVersionListener(version -> Platform.runLater(this::dataChanged));
+        } else if (httpdb && httpClient != null) {
+            httpClient.addDataVersionListener(version -> Platform.runLater(this::dataChanged));
+        } else if (localdb) {
+            //the first notification only reports the version found at startup
+            AtomicBoolean known = new AtomicBoolean();
+            databaseQuery.addDataVersionListener(version -> {
+                if (known.getAndSet(true)) {
+                    Platform.runLater(this::dataChanged);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops everything derived from the old data: the regimen results are fetched again and the snapshot is reloaded
+     */
+    private void dataChanged() {
+        logger.info("The twosides data changed, refreshing the results");
+        regimenSession.invalidate();
+        refreshSessionWindow();
+        if (querySource instanceof SnapshotQuery) {
+            loadSnapshotInBackground();
+        }
     }
 
     /**
@@ -98,7 +164,14 @@ public class AppGUI extends Application {
         Button mqttButton=new Button("MQTT Server");
         mqttButton.setOnAction(e -> {
             logger.info("MQTT connection selected");
-            showRoleSelectionDialog();
+            showRoleSelectionDialog(false);
+            dialogStage.close();
+        });
+
+        Button httpButton=new Button("HTTP Server");
+        httpButton.setOnAction(e -> {
+            logger.info("HTTP connection selected");
+            showRoleSelectionDialog(true);
             dialogStage.close();
         });
 
@@ -109,19 +182,21 @@ public class AppGUI extends Application {
             dialogStage.close();
         });
 
-        VBox layout=new VBox(10, label, mqttButton, mysqlButton);
+        VBox layout=new VBox(10, label, mqttButton, httpButton, mysqlButton);
         layout.setStyle("-fx-padding: 20px; -fx-alignment: center;");
 
-        Scene scene=new Scene(layout, 300, 150);
+        Scene scene=new Scene(layout, 300, 190);
         dialogStage.setScene(scene);
         dialogStage.showAndWait();
     }
 
     /**
      * Opens a role selection dialog allowing the user to choose between:
-     * MQTT Client, Server (Local DB), or Both
+     * Client, Server (Local DB), or Both
+     *
+     * @param http whether the HTTP server is used instead of MQTT
      */
-    private void showRoleSelectionDialog() {
+    private void showRoleSelectionDialog(boolean http) {
         Stage roleStage = new Stage();
         roleStage.initModality(Modality.APPLICATION_MODAL);
         roleStage.setTitle("Select Role");
@@ -129,30 +204,40 @@ public class AppGUI extends Application {
         Label roleLabel = new Label("Choose your mode:");
         ToggleGroup roleGroup = new ToggleGroup();
 
-        RadioButton clientRadio = new RadioButton("MQTT Client");
+        RadioButton clientRadio = new RadioButton(http ? "HTTP Client" : "MQTT Client");
         clientRadio.setToggleGroup(roleGroup);
         RadioButton serverRadio = new RadioButton("Server (Local DB)");
         serverRadio.setToggleGroup(roleGroup);
         RadioButton bothRadio = new RadioButton("Both (Client & Server)");
         bothRadio.setToggleGroup(roleGroup);
+        RadioButton allInOneRadio = new RadioButton("All-in-one (Embedded Broker)");
+        allInOneRadio.setToggleGroup(roleGroup);
+        allInOneRadio.setVisible(!http);
+        allInOneRadio.setManaged(!http);
 
         Button continueButton = new Button("Continue");
         continueButton.setOnAction(e -> {
             if (clientRadio.isSelected()) {
-                openMQTTBrokerWindow();
+                if (http) {
+                    openHttpServerWindow();
+                } else {
+                    openMQTTBrokerWindow();
+                }
             } else if (serverRadio.isSelected()) {
-                openDatabaseConfigWindow(false);
+                openDatabaseConfigWindow(false, http, false);
             } else if (bothRadio.isSelected()) {
-                openDatabaseConfigWindow(true);
+                openDatabaseConfigWindow(true, http, false);
+            } else if (allInOneRadio.isSelected()) {
+                openDatabaseConfigWindow(true, false, true);
             }
             roleStage.close();
         });
 
-        VBox layout = new VBox(10, roleLabel, clientRadio, serverRadio, bothRadio, continueButton);
+        VBox layout = new VBox(10, roleLabel, clientRadio, serverRadio, bothRadio, allInOneRadio, continueButton);
         layout.setPadding(new Insets(20));
         layout.setStyle("-fx-alignment: center;");
 
-        Scene scene = new Scene(layout, 300, 200);
+        Scene scene = new Scene(layout, 300, 230);
         roleStage.setScene(scene);
         roleStage.showAndWait();
     }
@@ -170,13 +255,14 @@ public class AppGUI extends Application {
         TextField brokerField = new TextField();
         brokerField.setPromptText("tcp://your-broker-url:1883");
         brokerField.setText("tcp://broker.emqx.io:1883");
+        CheckBox mqtt5Box = new CheckBox("Use MQTT 5");
 
         Button connectButton = new Button("Connect");
         connectButton.setOnAction(e -> {
             String brokerUrl = brokerField.getText().trim();
             if (!brokerUrl.isEmpty()) {
                 System.out.println("Connecting to MQTT broker: " + brokerUrl);
-                serverConnect(brokerUrl);
+                serverConnect(brokerUrl, mqtt5Box.isSelected());
                 mqttdb = true;
                 mqttStage.close();
             } else {
@@ -184,22 +270,58 @@ public class AppGUI extends Application {
             }
         });
 
-        VBox layout = new VBox(10, instructionLabel, brokerField, connectButton);
+        VBox layout = new VBox(10, instructionLabel, brokerField, mqtt5Box, connectButton);
         layout.setPadding(new Insets(20));
         layout.setStyle("-fx-alignment: center;");
 
-        Scene scene = new Scene(layout, 350, 200);
+        Scene scene = new Scene(layout, 350, 220);
         mqttStage.setScene(scene);
         mqttStage.showAndWait();
     }
 
+    /**
+     * Opens a window for entering the HTTP server URL
+     */
+    private void openHttpServerWindow() {
+        Stage httpStage = new Stage();
+        httpStage.initModality(Modality.APPLICATION_MODAL);
+        httpStage.setTitle("Enter HTTP Server");
+
+        Label instructionLabel = new Label("Enter HTTP Server URL:");
+        TextField serverField = new TextField();
+        serverField.setPromptText("http://your-server:8080");
+        serverField.setText("http://localhost:8080");
+
+        Button connectButton = new Button("Connect");
+        connectButton.setOnAction(e -> {
+            String serverUrl = serverField.getText().trim();
+            if (serverUrl.startsWith("http://") || serverUrl.startsWith("https://")) {
+                httpClient = new HttpQueryClient(serverUrl);
+                httpdb = true;
+                httpStage.close();
+            } else {
+                alertMessage("Invalid Input", "Please enter a valid server URL");
+            }
+        });
+
+        VBox layout = new VBox(10, instructionLabel, serverField, connectButton);
+        layout.setPadding(new Insets(20));
+        layout.setStyle("-fx-alignment: center;");
+
+        Scene scene = new Scene(layout, 350, 200);
+        httpStage.setScene(scene);
+        httpStage.showAndWait();
+    }
+
     /**
      * Opens a window for configuring the database connection
-     * If 'both' is true, it also initializes the MQTT server
+     * If 'both' is true, it also initializes the client
      *
-     * @param both whether both MQTT and database connections should be initialized
+     * @param both whether both the server and the client should be initialized
+     * @param http whether the HTTP server is started instead of the MQTT server
+     * @param embedded whether the MQTT server runs on an embedded broker and this application queries the database directly
      */
-    private void openDatabaseConfigWindow(boolean both) {
+    private void openDatabaseConfigWindow(boolean both, boolean http, boolean embedded) {
         Stage dbStage = new Stage();
         dbStage.initModality(Modality.APPLICATION_MODAL);
         dbStage.setTitle("Database Configuration");
@@ -215,10 +337,13 @@ public class AppGUI extends Application {
         PasswordField dbPasswordField = new PasswordField();
         dbPasswordField.setPromptText("Password");
 
-        Label instructionLabel = new Label("Enter MQTT Broker URL:");
+        Label instructionLabel = new Label(http ? "Enter HTTP Port:" : embedded ? "Enter Broker Port:" : "Enter MQTT Broker URL:");
         TextField brokerField = new TextField();
-        brokerField.setPromptText("tcp://your-broker-url:1883");
-        brokerField.setText("tcp://broker.emqx.io:1883");
+        brokerField.setPromptText(http ? "8080" : embedded ? "1883" : "tcp://your-broker-url:1883");
+        brokerField.setText(http ? "8080" : embedded ? "1883" : "tcp://broker.emqx.io:1883");
+        CheckBox mqtt5Box = new CheckBox("Use MQTT 5");
+        mqtt5Box.setVisible(!http);
+        mqtt5Box.setManaged(!http);
 
         Button connectButton = new Button("Connect");
 
@@ -228,16 +353,33 @@ public class AppGUI extends Application {
             String password = dbPasswordField.getText().trim();
             String broker = brokerField.getText().trim();
 
-            if (!url.isEmpty() && !user.isEmpty() && !password.isEmpty()) {
+            if ((http || embedded) && !broker.matches("\\d{1,5}")) {
+                alertMessage("Invalid Input", "Please enter a valid port");
+            } else if (!url.isEmpty() && !user.isEmpty() && !password.isEmpty()) {
                 logger.info("Connecting to Database at: " + url);
+                if (embedded) {
+                    localdb = allInOneInit(Integer.parseInt(broker), url, user, password, mqtt5Box.isSelected());
+                    dbStage.close();
+                    return;
+                }
+                if (http) {
+                    httpServerInit(Integer.parseInt(broker), url, user, password, both);
+                    if (!both) {
+                        serverRunning = true;
+                        openServerStatusWindow("http.server");
+                    }
+                    httpdb = both;
+                    dbStage.close();
+                    return;
+                }
                 if (both) {
-                    serverInitAndConnect(broker, url, user, password);
+                    serverInitAndConnect(broker, url, user, password, mqtt5Box.isSelected());
                 }
                 else {
                     logger.info("Starting Server with Database at: " + url);
                     serverRunning = true;
-                    startServerInBackground(broker, url, user, password);
-                    openServerStatusWindow();
+                    startServerInBackground(broker, url, user, password, mqtt5Box.isSelected());
+                    openServerStatusWindow("mqtt.server");
                 }
                 mqttdb = true;
                 dbStage.close();
@@ -246,39 +388,26 @@ public class AppGUI extends Application {
             }
         });
 
-        VBox layout = new VBox(10, dbLabel, dbHostField, dbUserField, dbPasswordField, instructionLabel, brokerField, connectButton);
+        VBox layout = new VBox(10, dbLabel, dbHostField, dbUserField, dbPasswordField, instructionLabel, brokerField, mqtt5Box, connectButton);
         layout.setPadding(new Insets(20));
         layout.setStyle("-fx-alignment: center;");
 
-        Scene scene = new Scene(layout, 350, 250);
+        Scene scene = new Scene(layout, 350, 270);
         dbStage.setScene(scene);
         dbStage.showAndWait();
     }
 
     /**
-     * Opens a separate window displaying the server status
+     * Opens a separate window displaying the live server status
      * The user can stop the server by clicking "Stop Server"
+     *
+     * @param metricsPrefix the metric prefix of the running server, mqtt.server or http.server
      */
-    private void openServerStatusWindow() {
-        Stage serverStage = new Stage();
-        serverStage.setTitle("Server Status");
-    
-        Label statusLabel = new Label("Server is running...");
-        Button stopButton = new Button("Stop Server");
-    
-        stopButton.setOnAction(e -> {
+    private void openServerStatusWindow(String metricsPrefix) {
+        new ServerDashboard(metricsPrefix, () -> {
             stopServer();
-            serverStage.close();
             System.exit(0);
-        });
-    
-        VBox layout = new VBox(15, statusLabel, stopButton);
-        layout.setPadding(new Insets(20));
-        layout.setStyle("-fx-alignment: center;");
-    
-        Scene scene = new Scene(layout, 250, 150);
-        serverStage.setScene(scene);
-        serverStage.show();
+        }).show();
     }
 
     /**
@@ -289,12 +418,13 @@ public class AppGUI extends Application {
      * @param url      Database connection URL
      * @param user     Database username
      * @param password Database password
+     * @param mqtt5    whether MQTT 5 is used
      */
-    private void startServerInBackground(String broker, String url, String user, String password) {
+    private void startServerInBackground(String broker, String url, String user, String password, boolean mqtt5) {
         serverThread = new Thread(() -> {
             try {
                 logger.info("Server running with DB connection...");
-                serverInit(broker, url, user, password);
+                serverInit(broker, url, user, password, mqtt5);
                 while (serverRunning) {
                     Thread.sleep(1000);
                 }
@@ -313,6 +443,18 @@ public class AppGUI extends Application {
      */
     private void stopServer() {
         serverRunning = false;
+        if (httpServer != null) {
+            httpServer.stop();
+            httpServer = null;
+        }
+        if (embeddedServer != null) {
+            embeddedServer.stop();
+            embeddedServer = null;
+        }
+        if (embeddedBroker != null) {
+            embeddedBroker.stop();
+            embeddedBroker = null;
+        }
         if (serverThread != null) {
             serverThread.interrupt();
         }
@@ -342,6 +484,8 @@ public class AppGUI extends Application {
         PasswordField passwordField = new PasswordField();
         passwordField.setPromptText("Enter password");
 
+        CheckBox snapshotBox = new CheckBox("Load the data into memory for fast lookups");
+
         Button connectButton = new Button("Connect");
         connectButton.setOnAction(e -> {
             String url = urlField.getText().trim();
@@ -354,26 +498,59 @@ public class AppGUI extends Application {
                 DatabaseQuery.connectInitially(url, user, password);
                 mysqlStage.close();
                 localdb=true;
+                if (snapshotBox.isSelected()) {
+                    loadSnapshotInBackground();
+                }
             }
         });
 
-        VBox layout = new VBox(10, urlLabel, urlField, userLabel, userField, passwordLabel, passwordField, connectButton);
+        VBox layout = new VBox(10, urlLabel, urlField, userLabel, userField, passwordLabel, passwordField, snapshotBox, connectButton);
         layout.setStyle("-fx-padding: 20px; -fx-alignment: center;");
 
-        Scene scene = new Scene(layout, 400, 300);
+        Scene scene = new Scene(layout, 400, 330);
         mysqlStage.setScene(scene);
         mysqlStage.showAndWait();
     }
 
+    /**
+     * Loads the twosides table into an in-memory snapshot and switches the lookups to it once loaded
+     * The database answers the lookups until the snapshot is ready
+     */
+    private void loadSnapshotInBackground() {
+        queryExecutor.submit(() -> {
+            SnapshotQuery snapshot = databaseQuery.loadSnapshot();
+            Platform.runLater(() -> {
+                if (snapshot != null) {
+                    querySource = snapshot;
+                    logger.info("Lookups switched to the in-memory snapshot of " + snapshot.size() + " rows");
+                    pollDataVersion();
+                } else {
+                    alertMessage("Snapshot error", "The data could not be loaded into memory, the database is used instead");
+                }
+            });
+        });
+    }
+
+    /**
+     * Checks the data version periodically while the snapshot answers the lookups
+     * The version is otherwise only checked by database lookups, so without the poll the version listener would never fire
+     */
+    private void pollDataVersion() {
+        if (versionPoll == null) {
+            versionPoll = versionChecker.scheduleWithFixedDelay(() -> databaseQuery.getDataVersion(), VERSION_CHECK_SECONDS, VERSION_CHECK_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
     /**
      * Establishes a connection to the MQTT broker as a client
      * 
      * @param broker the MQTT broker URL
+     * @param mqtt5  whether MQTT 5 is used
      */
-    private void serverConnect(String broker) {
+    private void serverConnect(String broker, boolean mqtt5) {
         try {
             logger.info("Initializing MQTT Client connection...");
-            mqttServer=new MQQTClient(broker);
+            mqttServer=new MQQTClient(broker, mqtt5);
             logger.info("MQTT Client is running and ready to send requests");
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to start connect: {0}", e.getMessage());
@@ -389,11 +566,12 @@ public class AppGUI extends Application {
      * @param url      the database connection URL
      * @param username the database username
      * @param password the database password
+     * @param mqtt5    whether MQTT 5 is used
      */
-    private void serverInit(String broker, String url, String username, String password) {
+    private void serverInit(String broker, String url, String username, String password, boolean mqtt5) {
         try {
             logger.info("Starting MQTT Server...");
-            MQQTServer mqttHandler = new MQQTServer(broker, url, username, password);
+            MQQTServer mqttHandler = new MQQTServer(broker, url, username, password, mqtt5);
             logger.info("MQTT Server is running and ready to accept requests");
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to start MQTT Server: {0}", e.getMessage());
@@ -401,6 +579,56 @@ public class AppGUI extends Application {
         }
     }
 
+    /**
+     * Starts the HTTP server with database connection, optionally with a client of it
+     *
+     * @param port     the port of the HTTP server
+     * @param url      the database connection URL
+     * @param username the database username
+     * @param password the database password
+     * @param connect  whether this application also queries through the server
+     */
+    private void httpServerInit(int port, String url, String username, String password, boolean connect) {
+        try {
+            logger.info("Starting HTTP Server...");
+            httpServer = new HttpQueryServer(port, url, username, password);
+            logger.info("HTTP Server is running and ready to accept requests");
+            if (connect) {
+                httpClient = new HttpQueryClient("http://localhost:" + port);
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Failed to start HTTP Server: {0}", e.getMessage());
+            alertMessage("Connection error", "Failed to start HTTP Server");
+        }
+    }
+
+    /**
+     * Starts the embedded broker with an MQTT server on it for the clients of other nodes
+     * The lookups of this application go straight to the database, without broker round trips or serialization
+     * The server shares the database backend of the lookups, so both use the same pair filters and data version
+     *
+     * @param port     the port of the embedded broker
+     * @param url      the database connection URL
+     * @param username the database username
+     * @param password the database password
+     * @param mqtt5    whether the server uses MQTT 5, MQTT 3 clients are served either way
+     * @return true if the database is connected
+     */
+    private boolean allInOneInit(int port, String url, String username, String password, boolean mqtt5) {
+        try {
+            logger.info("Starting the embedded broker...");
+            embeddedBroker = new EmbeddedBroker(port);
+            DatabaseQuery.connectInitially(url, username, password);
+            embeddedServer = new MQQTServer(embeddedBroker.getLocalUrl(), databaseQuery, mqtt5);
+            logger.info("MQTT Server is running on the embedded broker and ready to accept requests");
+            return true;
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Failed to start the embedded broker: {0}", e.getMessage());
+            alertMessage("Connection error", "Failed to start the embedded broker");
+            return false;
+        }
+    }
+
     /**
      * Initializes both an MQTT server and a client
      * The server is responsible for handling requests, and the client can send messages
@@ -409,13 +637,14 @@ public class AppGUI extends Application {
      * @param url      the database connection URL
      * @param username the database username
      * @param password the database password
+     * @param mqtt5    whether MQTT 5 is used
      */
-    private void serverInitAndConnect(String broker, String url, String username, String password) {
+    private void serverInitAndConnect(String broker, String url, String username, String password, boolean mqtt5) {
         try {
             logger.info("Starting MQTT Server...");
-            MQQTServer mqttHandler = new MQQTServer(broker, url, username, password);
+            MQQTServer mqttHandler = new MQQTServer(broker, url, username, password, mqtt5);
             logger.info("MQTT Server is running and ready to accept requests");
-            mqttServer=new MQQTClient(broker);
+            mqttServer=new MQQTClient(broker, mqtt5);
             logger.info("MQTT Client is running and ready to send requests");
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to start MQTT Server: {0}", e.getMessage());
@@ -430,7 +659,7 @@ public class AppGUI extends Application {
      */
     private VBox createMainLayout() {
         VBox vbox = new VBox(10);
-        vbox.setStyle("-fx-padding: 20;");
+        vbox.getStyleClass().add("main-layout");
         Label titleSection = createTitleSection();
         VBox.setMargin(titleSection, new Insets(220, 0, 20, 0));
         titleSection.setMaxWidth(Double.MAX_VALUE);
@@ -451,8 +680,7 @@ public class AppGUI extends Application {
      */
     private Label createTitleSection() {
         Label labelTitle = new Label("Drug Interaction Checker");
-        labelTitle.setStyle("-fx-font-weight: bold;" +
-                            "-fx-font-size: 34px;");
+        labelTitle.getStyleClass().add("app-title");
         return labelTitle;
     }
 
@@ -465,14 +693,14 @@ public class AppGUI extends Application {
         //text field
         textField = new TextField();
         //textField styling
-        textField.setStyle("-fx-font-size: 16pt;");
+        textField.getStyleClass().add("drug-input");
         textField.setPromptText("Enter drug name");
         //suggestions list
         suggestions = new ListView<>();
         //suggestions styling
         suggestions.setMaxHeight(160);
         suggestions.setVisible(false);
-        suggestions.setStyle("-fx-font-size: 15pt;");
+        suggestions.getStyleClass().add("drug-suggestions");
         //suggestions update
         textField.textProperty().addListener((observable, oldValue, newValue) -> {
             updateSuggestions(newValue);
@@ -498,7 +726,11 @@ public class AppGUI extends Application {
         try {
         if (!newValue.isEmpty()) {
             //get matches from the databasea and filter out the ones that are already selected
-            List<String> matches = querySource.queryDrug(newValue, true).stream()
+            List<String> found = querySource.queryDrug(newValue, true);
+            if (found == null) {
+                throw new IllegalStateException("No response for the drug search");
+            }
+            List<String> matches = found.stream()
                     .filter(drug -> !drugSelection.contains(drug.toLowerCase()))
                     .collect(Collectors.toList());       
             for (int i = 0; i < matches.size(); i++) {
@@ -591,13 +823,12 @@ public class AppGUI extends Application {
      */
     private ScrollPane createScrollPaneSection() {
         labelRow = new HBox(10);
-        labelRow.setStyle("-fx-padding: 10;" +
-                        "-fx-alignment: center-left;");
+        labelRow.getStyleClass().add("tag-row");
         scrollPane = new ScrollPane(labelRow);
         scrollPane.setHbarPolicy(ScrollPane.ScrollBarPolicy.AS_NEEDED);
         scrollPane.setVbarPolicy(ScrollPane.ScrollBarPolicy.NEVER);
         scrollPane.setFitToHeight(true);
-        scrollPane.setStyle("-fx-background-color: transparent;");
+        scrollPane.getStyleClass().add("tag-scroll");
         return scrollPane;
     }
 
@@ -620,7 +851,7 @@ public class AppGUI extends Application {
      * @param input the input string
      * @return the string with the first letter of each word capitalized
      */
-    private String capitalizeEveryFirstLetter(String input) {
+    static String capitalizeEveryFirstLetter(String input) {
         if (input == null || input.isEmpty()) {
             return input;
         }    
@@ -646,6 +877,7 @@ public class AppGUI extends Application {
 
     /**
      * Creates a tag element for a selected drug
+     * The drug is added to the regimen session and removed again when the tag is closed
      *
      * @param labelText the text to display in the tag
      * @return an HBox representing the tag
@@ -657,22 +889,20 @@ public class AppGUI extends Application {
         HBox tagContainer = new HBox(label, closeButton);
 
         //styling
-        label.setStyle("-fx-text-fill: white;" + 
-                    "-fx-font-size: 12px;");
-        closeButton.setStyle("-fx-background-color: transparent;"+ 
-                            "-fx-text-fill: white;"+ 
-                            "-fx-font-size: 12px;"+ 
-                            "-fx-cursor: hand;");
-        tagContainer.setStyle("-fx-background-color: #0078d7;"+ 
-                            "-fx-padding: 5 10;" +
-                            "-fx-background-radius: 15;"+ 
-                            "-fx-alignment: center;");
+        label.getStyleClass().add("drug-tag-label");
+        closeButton.getStyleClass().add("drug-tag-close");
+        tagContainer.getStyleClass().add("drug-tag");
         tagContainer.setSpacing(5);
+
+        //regimen session only queries the pairs of the new drug
+        regimenSession.addDrug(labelText.toLowerCase());
+        refreshSessionWindow();
                             
         //close button and delet from the drugSelection colelction
         closeButton.setOnMouseClicked(e -> {
             ((HBox) tagContainer.getParent()).getChildren().remove(tagContainer);
             drugSelection.remove(labelText.toLowerCase());
+            regimenSession.removeDrug(labelText.toLowerCase());
             updateSuggestions(textField.getText());
         });
 
@@ -747,6 +977,9 @@ public class AppGUI extends Application {
         try {
         String in = textField.getText().trim();
         List<String> match = querySource.queryDrug(in, false);
+        if (match == null) {
+            throw new IllegalStateException("No response for drug " + in);
+        }
         if (!match.isEmpty()) {
             if (drugSelection.contains(in.toLowerCase())) {
                 alertMessage("Duplicate Drug", "The drug '" + in + "' has already been added");
@@ -788,33 +1021,23 @@ public class AppGUI extends Application {
     private HBox createButtonSection() {
         Button checkButton = new Button("Check Interactions");
         Button testButton = new Button("Test Interactions");
-        String DesignStr =  "-fx-text-fill: white; " +         
-                            "-fx-font-size: 22px; " +            
-                            "-fx-background-radius: 20; " +         
-                            "-fx-padding: 8 16;"+
-                            "-fx-min-width: 300px; ";
-        checkButton.setStyle(DesignStr + "-fx-background-color:rgb(199, 21, 95); ");
-        testButton.setStyle(DesignStr + "-fx-background-color:rgb(134, 22, 138);");
-        checkButton.setOnMouseEntered(event->checkButton.setStyle(DesignStr + "-fx-background-color:rgb(172, 27, 87); "));
-        checkButton.setOnMouseExited(event->checkButton.setStyle(DesignStr + "-fx-background-color:rgb(199, 21, 95); "));
-        testButton.setOnMouseEntered(event->testButton.setStyle(DesignStr + "-fx-background-color:rgb(106, 18, 109); "));
-        testButton.setOnMouseExited(event->testButton.setStyle(DesignStr + "-fx-background-color:rgb(134, 22, 138); "));
-
-        //create new window with drug interactions
+        //styling and hover states come from the shared stylesheet
+        checkButton.getStyleClass().addAll("action-button", "check-button");
+        testButton.getStyleClass().addAll("action-button", "test-button");
+
+        //open the regimen window, only pairs that were not fetched yet are queried
         checkButton.setOnAction(e -> {
             try {
                 if (drugSelection.size() < 2) {
                     alertMessage("Insufficient Drugs", "Please select at least two drugs to check for interactions");
+                } else if (sessionWindow != null && sessionWindow.isShowing()) {
+                    regimenSession.fetch(querySource, true, summariesFirstBox.isSelected(), queryExecutor, Platform::runLater);
+                    sessionWindow.toFront();
                 } else {
-                    List<String> drugList = new ArrayList<>(drugSelection); //Convert Set to List
-                    TwosidesCol twosidesCol = new TwosidesCol();
-                    for (int i = 0; i < drugList.size(); i++) {
-                        for (int j = i + 1; j < drugList.size(); j++) {
-                            TwosidesCol tempTwosidesCol = querySource.queryTwosides(drugList.get(i), drugList.get(j), true);  
-                            twosidesCol.addTwosides(tempTwosidesCol.getCol().keySet().iterator().next(), tempTwosidesCol.getCol().values().iterator().next());
-                        }
-                    }
-                    showInteractionWindow(twosidesCol);
+                    sessionWindow = new InteractionWindow(this::fetchWikiInfo);
+                    sessionWindow.setDetailLoader(pair -> regimenSession.getResults().fetchDetails(pair, querySource, true, queryExecutor, Platform::runLater));
+                    sessionWindow.show(regimenSession.getResults());
+                    regimenSession.fetch(querySource, true, summariesFirstBox.isSelected(), queryExecutor, Platform::runLater);
                 }
             } catch (Exception ex) {
                 logger.log(Level.SEVERE, "An error occurred while trying to show the interaction window: {0}", ex.getMessage());
@@ -822,570 +1045,41 @@ public class AppGUI extends Application {
             }
         });
 
-        testButton.setOnAction(e -> {showInteractionWindow(mockDb.getDb());});
+        testButton.setOnAction(e -> {showInteractionWindow(InteractionResults.of(mockDb.getDb()));});
+        //right click opens a synthetic 1,000 row window, its build time is logged by InteractionWindow
+        MenuItem largeTestItem = new MenuItem("Test with 1,000 rows");
+        largeTestItem.setOnAction(e -> showInteractionWindow(InteractionResults.of(mockDb.getSyntheticDb(20, 50))));
+        testButton.setContextMenu(new ContextMenu(largeTestItem));
+
+        //summaries first mode, detail rows are only fetched for the sections that are opened
+        summariesFirstBox = new CheckBox("Load details on demand");
+        summariesFirstBox.getStyleClass().add("summary-mode-box");
 
         //button row
-        HBox buttonRow = new HBox(10, checkButton, testButton);
+        HBox buttonRow = new HBox(10, checkButton, testButton, summariesFirstBox);
         //button row styling
-        buttonRow.setStyle("-fx-padding: 20;" +
-                        "-fx-alignment: center;");
+        buttonRow.getStyleClass().add("button-row");
         return buttonRow;
     }
 
     //////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
-     * Displays a new window to show drug interaction details
+     * Displays a new window to show drug interaction details as they arrive
      *
-     * @param twosidesCol the collection of drug interactions to display
+     * @param results the streaming results of the interaction check
      */
-    private void showInteractionWindow(TwosidesCol twosidescol) {
-        Stage interactionStage = new Stage();
-        interactionStage.setTitle("Drug Interactions"); 
-        ScrollPane scrollPane = new ScrollPane();
-        scrollPane.setFitToWidth(true);
-        VBox mainLayout = new VBox(15);
-        mainLayout.setPadding(new Insets(10));
-        mainLayout.setStyle("-fx-background-color: #f9f9f9;");
-        Label interactionTitle = new Label("Drug Interactions");
-        interactionTitle.setStyle("-fx-font-weight: bold;" +
-                                "-fx-font-size: 24px;");
-        interactionTitle.setId("DI");
-        VBox summarySection = createSummarySection(twosidescol, scrollPane);
-        VBox interactionDetails = createInteractionDetails(twosidescol, scrollPane);
-        mainLayout.getChildren().addAll(interactionTitle, summarySection, interactionDetails);
-        scrollPane.setContent(mainLayout);
-        Scene scene = new Scene(scrollPane, 1000, 1200);
-        interactionStage.setScene(scene);
-        interactionStage.show();
+    private void showInteractionWindow(InteractionResults results) {
+        new InteractionWindow(this::fetchWikiInfo).show(results);
     }
 
     /**
-     * Creates the summary section listing drug interactions
-     *
-     * @param twosidesCol the collection of drug interactions
-     * @param scrollPane the scrollable pane for interaction content
-     * @return a VBox containing the summary section
+     * Fetches the pairs of newly added drugs while the regimen window is open so it updates in place
      */
-    private VBox createSummarySection(TwosidesCol twosidescol, ScrollPane scrollPane) {
-        //local vars
-        Set<VBox> safeDrugs = new HashSet<>();
-
-        //summary section
-        VBox summarySection = new VBox(10);
-        for (Map.Entry<String, Map<String, Twosides>> entry : twosidescol.getCol().entrySet()) {
-            if (entry.getValue().isEmpty()) {safeDrugs.add(createInteractionBox(entry, summarySection, true, scrollPane));}
-            else {createInteractionBox(entry, summarySection, false, scrollPane);}
+    private void refreshSessionWindow() {
+        if (sessionWindow != null && sessionWindow.isShowing() && querySource != null) {
+            regimenSession.fetch(querySource, true, summariesFirstBox.isSelected(), queryExecutor, Platform::runLater);
         }
-        
-        //safe drugs section
-        if (!safeDrugs.isEmpty()) {
-            safeDrugsHeaderSection(summarySection, safeDrugs, twosidescol);
-        }
-        
-        //styling
-        summarySection.setStyle("-fx-background-color: #ffffff;" +
-                                "-fx-border-color: #cccccc;" +
-                                "-fx-border-radius: 5;" + 
-                                "-fx-padding: 10;");
-
-        return summarySection;
-    }
-
-    /**
-     * Generates a header for the "safe drugs" section and allows toggling its visibility
-     *
-     * @param summarySection the parent VBox where the header will be added
-     * @param safeDrugsBoxes the set of safe drug interaction boxes
-     * @param twosidesCol the collection of all drug interactions
-     * @return the updated summary section with the safe drugs header
-     */
-    private VBox safeDrugsHeaderSection(VBox summarySection, Set<VBox> safeDrugsBoxes, TwosidesCol twosidescol) {
-        //header to add seperator; title for toggle action
-        HBox header = new HBox(5);
-        Label title = new Label(
-            safeDrugsBoxes.size()==1
-                ? "No interactions were found for 1 drug pair. Expand this section to view details"
-                : "No interactions were found for " + safeDrugsBoxes.size() + " drug pairs. Expand this section to view details."
-        );
-
-        //icon creation and styling
-        String path = "icons/step-forward.png";
-        Image image = new Image(getClass().getResource(path).toExternalForm());
-        ImageView arrow = new ImageView(image);
-        arrow.setFitWidth(24);
-        arrow.setFitHeight(24);
-        
-        //header styling; title styling
-        header.setStyle("-fx-padding: 5;" + 
-                        "-fx-border-color: black;" + 
-                        "-fx-border-width: 4 0 0 0;" +
-                        "-fx-cursor: hand;");
-        title.setStyle("-fx-font-size: 16px;");
-
-        //content section
-        VBox content = new VBox();
-        content.setVisible(false);
-        content.setManaged(false);
-        
-        //Toggle action
-        header.setOnMouseClicked(event -> {
-            boolean isCollapsed = content.isVisible();
-            content.setVisible(!isCollapsed);
-            content.setManaged(!isCollapsed);
-            content.getChildren().setAll(safeDrugsBoxes);
-            
-            if (isCollapsed) {
-                arrow.setRotate(0);
-            } else {
-                arrow.setRotate(90);
-            }
-        });
-
-        //add to summary section
-        header.getChildren().addAll(arrow, title);
-        summarySection.getChildren().addAll(header, content);
-
-        return summarySection;
-    }
-
-    /**
-     * Creates a header showing the interaction between two drugs
-     *
-     * @param drug1 the name of the first drug
-     * @param drug2 the name of the second drug
-     * @param frameHeader true if the header is styled as a frame, false otherwise
-     * @param scrollPane the ScrollPane to enable navigation
-     * @return an HBox representing the interaction header
-     */
-    private HBox createInteractionContent(String drug1, String drug2, boolean frameHeader, ScrollPane scrollPane) {
-        //label content creation
-        HBox header = new HBox(5);
-        Label drug1Label = new Label(drug1);
-        String path = "icons/repeat.png";
-        Image image = new Image(getClass().getResource(path).toExternalForm());        
-        ImageView arrowIcon = new ImageView(image);        arrowIcon.setFitWidth(20);
-        arrowIcon.setFitHeight(20);
-        Label drug2Label = new Label(drug2);
-        header.getChildren().addAll(drug1Label, arrowIcon, drug2Label);
-        
-        //header styling twopath
-        String headerCommonStyle =  "-fx-padding: 5 20;" +
-                                    "-fx-font-weight: bold;";
-        header.setAlignment(Pos.CENTER);
-        if (frameHeader) {
-            String frameHederStdStyle = "-fx-background-radius: 20;" + 
-                                        "-fx-font-size: 20px;";
-            header.setStyle(headerCommonStyle + frameHederStdStyle+"-fx-background-color: rgba(27, 113, 243, 0.61);");
-            header.setOnMouseEntered(event->header.setStyle(headerCommonStyle+frameHederStdStyle+"-fx-background-color: rgba(7, 74, 175, 0.64);"));
-            header.setOnMouseExited(event->header.setStyle(headerCommonStyle+frameHederStdStyle+"-fx-background-color: rgba(27, 113, 243, 0.61);"));
-            // header.setOnMouseClicked(event->scrollToSection("sfi", scrollPane));
-            header.setOnMouseClicked(event->scrollToSection("DI", scrollPane));
-        }
-        else {
-            header.setStyle(headerCommonStyle + "-fx-background-color: rgba(228, 236, 243, 0.51);"+
-                                                "-fx-background-radius: 12;" + 
-                                                "-fx-font-size: 17px;" +
-                                                "-fx-max-width: 450px;" +
-                                                "-fx-min-width: 450px;");
-        }
-        header.setId("sfi");
-        return header;
-    }
-
-    /**
-     * Creates a counter label for an interaction entry
-     *
-     * @param value the count value to display
-     * @return a styled Label showing the count
-     */
-    private Label createCounterLabel(int value) {
-        //label content creation
-        Label countLabel = new Label(String.valueOf(value));
-
-        //label stylign
-        countLabel.setStyle("-fx-background-color: #e57373; " +
-                            "-fx-text-fill: white; " +
-                            "-fx-font-weight: bold; " +
-                            "-fx-font-size: 15px; " +
-                            "-fx-padding: 5 15; " +
-                            "-fx-background-radius: 20; " +
-                            "-fx-alignment: center;" +
-                            "-fx-min-width: 60px; " +
-                            "-fx-max-width: 60px; ");
-        countLabel.setAlignment(Pos.CENTER);
-
-        return countLabel;
-    }
- 
-    /**
-     * Creates the header for an interaction entry with a count of interactions
-     *
-     * @param twoSideInteraction the drugs involved in the interaction
-     * @param value the interaction details
-     * @param key the identifier for the interaction
-     * @param safeDrug whether the interaction is marked as safe
-     * @param scrollPane the ScrollPane to enable scrolling to the section
-     * @return an HBox containing the interaction header
-     */
-    private HBox createInteractionHeader(List<String> twoSideInteraction, Map<String, Twosides> value, String key, boolean safeDrug, ScrollPane scrollPane) {
-        //interactionHeader content creation
-        HBox interactionHeader = new HBox(10);
-        HBox headerContent = createInteractionContent(twoSideInteraction.get(0), twoSideInteraction.get(1), false, scrollPane);
-        Label countLabel = createCounterLabel(value.size());
-        Region rowSpacer = new Region();
-        interactionHeader.getChildren().addAll(headerContent, rowSpacer, countLabel);
-
-        //interactionHeader styling
-        String stdStyle="-fx-padding: 10 50;" +
-                        "-fx-border-color: #dddddd;" +
-                        "-fx-border-radius: 5;";
-        interactionHeader.setStyle(stdStyle + "-fx-background-color: #f9f9f9;");
-        interactionHeader.setAlignment(Pos.CENTER);
-        HBox.setHgrow(rowSpacer, Priority.ALWAYS);
-        rowSpacer.setMaxWidth(200);
-
-        //interactionHeader actions
-        if (!safeDrug) {
-            interactionHeader.setOnMouseClicked(event -> scrollToSection(key, scrollPane));
-            interactionHeader.setOnMouseEntered(event -> interactionHeader.setStyle(stdStyle + "-fx-background-color:rgba(233, 230, 230, 0.57);")); //#e6f7ff;"
-            interactionHeader.setOnMouseExited(event -> interactionHeader.setStyle(stdStyle + "-fx-background-color: #f9f9f9;"));
-        }
-
-        //interactionHeader tooltip
-        String tooltipText;
-        if (safeDrug) {
-            tooltipText = "No interactions were found for " + twoSideInteraction.get(0) + " ↔ " + twoSideInteraction.get(1);
-        } else {
-            tooltipText = value.size() + " interactions were found. Click to view details for " + 
-                        twoSideInteraction.get(0) + " ↔ " + twoSideInteraction.get(1);
-        }
-        Tooltip tooltip = new Tooltip(tooltipText);
-        tooltip.setShowDelay(Duration.millis(200));
-        tooltip.setHideDelay(Duration.millis(2));
-        tooltip.setStyle("-fx-font-size: 11px; ");
-        Tooltip.install(interactionHeader, tooltip);
-
-        return interactionHeader;
-    }
-
-    /**
-     * Creates an interaction box containing the header and optional details
-     *
-     * @param entry the interaction entry
-     * @param summarySection the VBox to add the interaction box to
-     * @param safeDrug whether the interaction is marked as safe
-     * @param scrollPane the ScrollPane to enable scrolling
-     * @return a VBox containing the interaction box
-     */
-    private VBox createInteractionBox(Map.Entry<String, Map<String, Twosides>> entry, VBox summarySection, boolean safeDrug, ScrollPane scrollPane) {
-        //local vars
-        String key = entry.getKey();
-        Map<String, Twosides> value = entry.getValue();
-        List<String> twoSideInteraction = TwosidesCol.getUnmapedStrId(key);
-        for (int i = 0; i < twoSideInteraction.size(); i++) {
-            twoSideInteraction.set(i, capitalizeEveryFirstLetter(twoSideInteraction.get(i)));
-        }
-
-        //interactionBox content creation
-        HBox interactionHeader = createInteractionHeader(twoSideInteraction, value, key, safeDrug, scrollPane);
-        VBox interactionBox = new VBox(5, interactionHeader);
-        if (!safeDrug) {
-            summarySection.getChildren().add(interactionBox);
-        }
-
-        //interactionBox styling
-        interactionBox.setStyle("-fx-padding: 5;" +
-                                "-fx-background-color: #ffffff;" +
-                                "-fx-border-color: #dddddd;" + 
-                                "-fx-border-radius: 5;");
-
-        return interactionBox;
-    }
-
-    /**
-     * Creates a detailed interaction section with information about symptoms and severity
-     *
-     * @param twosidesCol the collection of drug interactions
-     * @param scrollPane the scrollable pane for interaction content
-     * @return a VBox containing interaction details
-     */
-    private VBox createInteractionDetails(TwosidesCol twosidescol, ScrollPane scrollPane) {
-        //interactionDetails content creation
-        VBox detailsContainer = new VBox(20);
-        detailsContainer.setStyle("-fx-background-color: #ffffff;" + 
-                                "-fx-border-color: #cccccc;" + 
-                                "-fx-border-radius: 5;" + 
-                                "-fx-padding: 10;");
-
-        for (Map.Entry<String, Map<String, Twosides>> twosidesInteraction : twosidescol.getCol().entrySet()) {
-            //safe drug skip
-            if (twosidesInteraction.getValue().isEmpty()) {
-                continue;
-            }
-            //otehrwise create an interaction section
-            GridPane table = new GridPane();
-            VBox interactionSection = createInteractionSection(twosidesInteraction, table);
-            List<String> twoSideInteraction = TwosidesCol.getUnmapedStrId(twosidesInteraction.getKey());
-            for (int i=0; i<twoSideInteraction.size(); i++) {
-                twoSideInteraction.set(i, capitalizeEveryFirstLetter(twoSideInteraction.get(i)));
-            }            
-            HBox header = createInteractionContent(twoSideInteraction.get(0), twoSideInteraction.get(1), true, scrollPane);
-            table = initTable(table);
-            table = createInteractionRows(twosidesInteraction, table);
-            interactionSection.getChildren().addAll(header, table);
-            detailsContainer.getChildren().add(interactionSection);
-        }
-
-        return detailsContainer;
-    }
-
-    /**
-     * Creates a VBox to display an interaction section with a header and table of details
-     *
-     * @param twosidesInteraction the interaction data
-     * @param table the GridPane table to populate with interaction rows
-     * @return a VBox containing the interaction section
-     */
-    private VBox createInteractionSection(Map.Entry<String, Map<String, Twosides>> twosidesInteraction, GridPane table) {
-        //interactionSection content craetion
-        VBox interactionSection = new VBox(10);
-        interactionSection.setId(twosidesInteraction.getKey());
-
-        //interactionSection styling
-        interactionSection.setStyle("-fx-border-color:rgb(228, 222, 222);" +
-                                    "-fx-border-width: 1;" +
-                                    "-fx-background-color: #f9f9f9;" + //#f9f9f9
-                                    "-fx-padding: 10;" +
-                                    "-fx-border-radius: 5;");
-
-        return interactionSection;
-    }
-
-    /**
-     * Initializes a table for displaying interaction details
-     *
-     * @param table the GridPane to initialize
-     * @return the initialized GridPane
-     */
-    private GridPane initTable(GridPane table) {
-        //table styling
-        table.setHgap(20);
-        table.setVgap(10);
-        table.setStyle("-fx-border-color: #dddddd;" +
-                    "-fx-background-color: #ffffff;" +
-                    "-fx-padding: 10;");
-        table.setAlignment(Pos.CENTER);
-        table.setPrefWidth(1000);
-
-        //table labels creation
-        String stdFont="-fx-font-weight: bold; -fx-font-size: 16px;";
-        Label symptomHeader = new Label(String.format("%-26s %s", " ", "Symptom"));
-        Label severityHeader = new Label(String.format("%-5s %s", " ", "Severity"));
-        Label descriptionHeader = new Label(String.format("%-29s %s", " ", "Description"));
-
-        //table lables styling
-        symptomHeader.setStyle(stdFont);
-        severityHeader.setStyle(stdFont);
-        descriptionHeader.setStyle(stdFont);
-
-        //table labels add
-        table.add(symptomHeader, 0, 0);
-        table.add(severityHeader, 1, 0);
-        table.add(descriptionHeader, 2, 0);
-
-        return table;
-    }
-
-    /**
-     * Creates rows in the interaction table with details about symptoms and severity
-     *
-     * @param twosidesInteraction the interaction data
-     * @param table the table to populate
-     * @return the populated GridPane
-     */
-    private GridPane createInteractionRows(Map.Entry<String, Map<String, Twosides>> twosidesInteraction, GridPane table) {
-        int row = 1;
-        for (Map.Entry<String, Twosides> twosides : twosidesInteraction.getValue().entrySet()) {
-            //local vars
-            Twosides value = twosides.getValue();
-            Label symptomLabel = new Label(value.getConditionName());
-            Label severityLabel = setSeverityStyle(value.getSeverityClass());
-            TextFlow descriptionInfo = twosidesInteractionDescription(value);
-            
-            //symptom label styling
-            String symptomLabelStyle="-fx-text-fill: black; " +
-                                    "-fx-font-size: 15px; " +
-                                    "-fx-font-weight: bold; " +
-                                    "-fx-padding: 5 20; " +
-                                    "-fx-background-radius: 15; " +
-                                    "-fx-alignment: center; " +
-                                    "-fx-min-width: 300px; " +
-                                    "-fx-max-width: 300px; ";
-            symptomLabel.setStyle(symptomLabelStyle+"-fx-background-color: rgba(228, 236, 243, 0.51);");
-            
-            //descirption label styling
-            descriptionInfo.setMaxWidth(350);
-            descriptionInfo.setStyle("-fx-padding: 5 10;" +
-                                    "-fx-background-color:rgba(228, 236, 243, 0.51);" + 
-                                    "-fx-background-radius: 15;");
-
-            //symptom label tooltip
-            symptomLabel = symptomInfoTooltip(symptomLabel, value, symptomLabelStyle);
-
-            //add ot table
-            table.add(symptomLabel, 0, row);
-            table.add(severityLabel, 1, row);
-            table.add(descriptionInfo, 2, row);
-
-            //seperators
-            row++;
-            if (row <= 2*twosidesInteraction.getValue().size()-1) {
-                Separator separator = new Separator();
-                table.add(separator, 0, row, 3, 1);
-                row++;
-            }
-        }
-
-        return table;
-    }
-
-    /**
-     * Adds a tooltip to a symptom label with delayed content loading
-     *
-     * @param symptomLabel the Label for the symptom
-     * @param value the Twosides object containing condition details
-     * @param symptomLabelStyle the base style for the label
-     * @return the updated Label with tooltip functionality
-     */
-    private Label symptomInfoTooltip(Label symptomLabel, Twosides value, String symptomLabelStyle) {
-        //tooltip creation
-        String loadStr = "Loading condition description...";
-        Tooltip tooltip = new Tooltip(loadStr);
-
-        //tooltrip props
-        tooltip.setShowDelay(Duration.millis(200));
-        tooltip.setHideDelay(Duration.INDEFINITE);
-        tooltip.setMaxWidth(400);
-        tooltip.wrapTextProperty().setValue(true);
-        tooltip.setStyle("-fx-font-size: 11px;");
-        tooltip.setTextAlignment(TextAlignment.JUSTIFY);
-        PauseTransition delay = new PauseTransition(Duration.seconds(0.2));
-
-        //prompts when mouse enters the label
-        symptomLabel.setOnMouseEntered(event -> {
-            symptomLabel.setStyle(symptomLabelStyle+"-fx-background-color: rgba(223, 221, 221, 0.66);");
-            tooltip.setText(loadStr);
-            delay.setOnFinished(e -> {
-                if (tooltip.getText().equals(loadStr)) {
-                    new Thread(() -> {
-                        String wikiInfo = fetchWikiInfo(value.getConditionName());
-                        Platform.runLater(() -> tooltip.setText(wikiInfo));
-                        }).start();
-                        tooltip.show(symptomLabel, 
-                        event.getScreenX() + 10,
-                        event.getScreenY() + 10);
-                }
-            });
-            delay.playFromStart();
-        });
-        symptomLabel.setOnMouseExited(event -> {
-            symptomLabel.setStyle(symptomLabelStyle+"-fx-background-color: rgba(228, 236, 243, 0.51);");
-            delay.stop();
-            tooltip.hide();
-        });
-
-        return symptomLabel;
-    }
-
-    /**
-     * Sets the styling for a severity label based on its value
-     *
-     * @param severityStr the severity string
-     * @return a styled Label representing the severity
-     */
-    private Label setSeverityStyle(String severityStr) {
-        Label severityLabel = new Label(severityStr);
-        String baseStyle = "-fx-text-fill: white; " +
-                        "-fx-font-weight: bold; " +
-                        "-fx-font-size: 17px; " +
-                        "-fx-padding: 5 15; " +
-                        "-fx-background-radius: 14; " +
-                        "-fx-alignment: center; " +
-                        "-fx-min-width: 110px; " + 
-                        "-fx-max-width: 110px; ";
-        String backgroundColor = switch (severityStr) {
-            case "Critical" -> "rgb(119, 32, 32)";
-            case "Severe" -> "rgb(199, 21, 95)";
-            case "Medium" -> "rgb(255, 152, 0)";
-            case "Minor" -> "rgb(0, 150, 136)";
-            case "Negligible" -> "rgb(76, 175, 80)";
-            case "Unknown" -> "rgb(245, 243, 227)";
-            default -> "rgb(200, 200, 200)";
-        };
-        severityLabel.setStyle(baseStyle + "-fx-background-color: " + backgroundColor + ";");
-
-        return severityLabel;
-    }
-
-    /**
-     * Creates a description for a Twosides interaction
-     *
-     * @param twosides the Twosides object containing interaction details
-     * @return a TextFlow containing the interaction description
-     */
-    private TextFlow twosidesInteractionDescription(Twosides twosides) {
-        //declare local vars and text alignment
-        TextFlow descriptionTextFlow = new TextFlow();
-        descriptionTextFlow.setTextAlignment(javafx.scene.text.TextAlignment.JUSTIFY);
-        String stdFont="-fx-font-size: 14px;";
-        String boldFont="-fx-font-weight: bold; -fx-font-size: 14px;";
-
-        //create text parts
-        Text part1 = new Text("Based on the sample of ");
-        part1.setStyle(stdFont);
-        Text part2 = new Text(String.valueOf(twosides.getA() + twosides.getB()));
-        part2.setStyle(boldFont);
-        Text part3 = new Text(" reports for the pair of drugs, the mean reporting frequency of " + twosides.getConditionName() + " is ");
-        part3.setStyle(stdFont);
-        Text part4 = new Text(String.format("%.2f%%", twosides.getMeanReportingFrequency() * 100));
-        part4.setStyle(boldFont);
-        Text part5 = new Text(". " + "The Proportional Reporting Ratio (PRR)" + " is ");
-        part5.setStyle(stdFont);
-        Text part6 = new Text(String.format("%.2f", twosides.getPrr()));
-        part6.setStyle(boldFont);
-        Text part7 = new Text(" with an error estimate of ");
-        part7.setStyle(stdFont);
-        Text part8 = new Text(String.format("%.2f", twosides.getPrrError()));
-        part8.setStyle(boldFont);
-
-        descriptionTextFlow.getChildren().addAll(part1, part2, part3, part4, part5, part6, part7, part8);
-        return descriptionTextFlow;
-    }
-
-    /**
-     * Scrolls the view to the specified section within the ScrollPane
-     *
-     * @param sectionId the ID of the target section
-     * @param scrollPane the ScrollPane containing the content
-     */
-    private void scrollToSection(String sectionId, ScrollPane scrollPane) {
-        Platform.runLater(() -> {
-            Node targetNode = scrollPane.getContent().lookup("#" + sectionId);
-
-            if (targetNode != null) {
-                Bounds contentBounds = scrollPane.getContent().localToScene(scrollPane.getContent().getBoundsInLocal());
-                Bounds nodeBounds = targetNode.localToScene(targetNode.getBoundsInLocal());
-                double nodePosition = nodeBounds.getMinY() - contentBounds.getMinY();
-                double viewportHeight = scrollPane.getViewportBounds().getHeight();
-                double contentHeight = scrollPane.getContent().getLayoutBounds().getHeight();
-                double scrollValue = nodePosition / (contentHeight - viewportHeight);
-                scrollValue = Math.max(0, Math.min(scrollValue, 1));
-                scrollPane.setVvalue(scrollValue);
-            } else {
-                logger.info("Failed to find the target node");
-            }
-        });
     }
 
     /**
@@ -1396,8 +1090,10 @@ public class AppGUI extends Application {
      */
     private String fetchWikiInfo(String info) {
         if (wikiQueries.containsKey(info)) {
+            Metrics.counter("wiki.cache.hits").increment();
             return wikiQueries.get(info);
         }
+        Metrics.counter("wiki.cache.misses").increment();
         String wikiInfo = WikiAPI.queryWiki(info);
         wikiQueries.put(info, wikiInfo);
         if (wikiInfo == null) {
@@ -1411,8 +1107,3 @@ public class AppGUI extends Application {
     }
 
 }
-
-interface Queryable {
-    TwosidesCol queryTwosides(String drugA, String drugB, boolean someFlag);
-    List<String> queryDrug(String drugName, boolean like);
-}
\ No newline at end of file
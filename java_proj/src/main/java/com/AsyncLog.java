@@ -0,0 +1,227 @@
+package com;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Asynchronous, sampled logging for the request hot paths
+ * A call only checks the level and the sample of its category and queues the record, the message is built and
+ * handed to the java.util.logging handlers on a background thread; when the bounded queue is full the record is dropped and counted
+ * Payloads are described by their size and CRC32, the full content is only logged for the request id being traced
+ * Sample rates are set with -Dtwosides.log.sample=category=rate,..., e.g. mqtt.request=1 logs every request;
+ * the traced request is set with -Dtwosides.log.trace=requestId or setTracedRequest
+ */
+public final class AsyncLog {
+    private static final Logger logger = Logger.getLogger(AsyncLog.class.getName());
+    private static final int QUEUE_CAPACITY = 8192;
+    /**
+     * Categories logged for every request unless configured otherwise, one record out of the rate is kept
+     */
+    private static final Map<String, Integer> DEFAULT_SAMPLE_RATES = Map.of(
+            "mqtt.received", 100,
+            "mqtt.request", 100,
+            "mqtt.response", 100,
+            "db.query", 100);
+    private static final Map<String, Integer> sampleRates = parseSampleRates(System.getProperty("twosides.log.sample"));
+    private static final Map<String, AtomicLong> sampleCounters = new ConcurrentHashMap<>();
+    private static final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static volatile String tracedRequest = System.getProperty("twosides.log.trace");
+
+    /**
+     * A queued record with the message supplier it is completed with
+     */
+    private static class Entry {
+        private final Logger target;
+        private final LogRecord record;
+        private final Supplier<String> message;
+
+        Entry(Logger target, LogRecord record, Supplier<String> message) {
+            this.target = target;
+            this.record = record;
+            this.message = message;
+        }
+    }
+
+    static {
+        Thread writer = new Thread(AsyncLog::drain, "async-log");
+        writer.setDaemon(true);
+        writer.start();
+        //the queued records are still written when the application exits
+        Runtime.getRuntime().addShutdownHook(new Thread(AsyncLog::flush, "async-log-flush"));
+        Metrics.gauge("log.queued", queue::size);
+    }
+
+    private AsyncLog() {
+    }
+
+    /**
+     * Sets the request whose payloads are logged in full, without sampling
+     *
+     * @param requestId the request id, null to stop tracing
+     */
+    public static void setTracedRequest(String requestId) {
+        tracedRequest = requestId;
+    }
+
+    /**
+     * Checks whether a request is being traced
+     *
+     * @param requestId the request id, may be null
+     * @return true if its payloads are logged in full
+     */
+    public static boolean isTraced(String requestId) {
+        String traced = tracedRequest;
+        return traced != null && traced.equals(requestId);
+    }
+
+    /**
+     * Queues a sampled record, the message is only built if the record is written
+     *
+     * @param target the logger the record is written to
+     * @param level the level of the record
+     * @param category the sampling category, e.g. mqtt.request
+     * @param message the supplier of the message, called on the logging thread
+     */
+    public static void log(Logger target, Level level, String category, Supplier<String> message) {
+        if (target.isLoggable(level) && sampled(category)) {
+            enqueue(target, level, category, message);
+        }
+    }
+
+    /**
+     * Queues a record of a traced request, bypassing the sampling
+     *
+     * @param target the logger the record is written to
+     * @param category the category, e.g. mqtt.request
+     * @param message the supplier of the message, called on the logging thread
+     */
+    public static void trace(Logger target, String category, Supplier<String> message) {
+        if (target.isLoggable(Level.INFO)) {
+            enqueue(target, Level.INFO, category, message);
+        }
+    }
+
+    /**
+     * Describes a payload without its content
+     *
+     * @param payload the payload
+     * @return the size and the CRC32 of the payload
+     */
+    public static String describe(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return String.format("%d bytes, crc32 %08x", payload.length, crc.getValue());
+    }
+
+    /**
+     * Describes a JSON value without its content
+     *
+     * @param json the JSON value, e.g. the params of a request
+     * @return the size and the CRC32 of its UTF-8 encoding
+     */
+    public static String describe(Object json) {
+        return describe(String.valueOf(json).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the queued records, e.g. before the application exits
+     */
+    public static void flush() {
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            write(entry);
+        }
+    }
+
+    /**
+     * Decides whether a record of a category is kept
+     *
+     * @param category the sampling category
+     * @return true for one record out of the rate of the category
+     */
+    private static boolean sampled(String category) {
+        int rate = sampleRates.getOrDefault(category, 1);
+        if (rate <= 1) {
+            return true;
+        }
+        return sampleCounters.computeIfAbsent(category, key -> new AtomicLong()).getAndIncrement() % rate == 0;
+    }
+
+    /**
+     * Queues a record stamped with the time and thread of the caller
+     * The source shows the logger and the category, the caller frame would only point at the logging thread
+     *
+     * @param target the logger the record is written to
+     * @param level the level of the record
+     * @param category the category of the record
+     * @param message the supplier of the message
+     */
+    private static void enqueue(Logger target, Level level, String category, Supplier<String> message) {
+        LogRecord record = new LogRecord(level, null);
+        record.setLoggerName(target.getName());
+        record.setSourceClassName(target.getName());
+        record.setSourceMethodName(category);
+        if (!queue.offer(new Entry(target, record, message))) {
+            Metrics.counter("log.dropped").increment();
+        }
+    }
+
+    /**
+     * Loop of the logging thread
+     */
+    private static void drain() {
+        while (true) {
+            try {
+                write(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Builds the message of a record and hands it to the logger
+     *
+     * @param entry the queued record
+     */
+    private static void write(Entry entry) {
+        try {
+            entry.record.setMessage(entry.message.get());
+            entry.target.log(entry.record);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to write a log record", e);
+        }
+    }
+
+    /**
+     * Parses the configured sample rates over the defaults
+     *
+     * @param config the rates as category=rate pairs separated by commas, may be null
+     * @return the sample rate of every configured category
+     */
+    private static Map<String, Integer> parseSampleRates(String config) {
+        Map<String, Integer> rates = new HashMap<>(DEFAULT_SAMPLE_RATES);
+        if (config == null || config.isBlank()) {
+            return rates;
+        }
+        for (String pair : config.split(",")) {
+            String[] parts = pair.trim().split("=");
+            try {
+                rates.put(parts[0].trim(), Math.max(1, Integer.parseInt(parts[1].trim())));
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Ignored the sample rate {0}", pair);
+            }
+        }
+        return rates;
+    }
+}
@@ -0,0 +1,395 @@
+package com;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Headless screening of regimen files without the GUI
+ * Every regimen is resolved and scored by a pool of workers sharing one CachingQuery
+ * Results are appended to a JSONL file and the ids of finished regimens to a checkpoint file, so an interrupted run resumes where it stopped
+ */
+public class BatchScreening {
+    private static final Logger logger = Logger.getLogger(BatchScreening.class.getName());
+    private static final String USAGE = "Usage: --batch --input <regimens.csv|regimens.jsonl> --output <results.jsonl>"
+            + " (--db-url <url> --db-user <user> --db-password <password> [--snapshot] | --broker <broker> [--mqtt5])"
+            + " [--threads <n>] [--unfiltered] [--top-pairs <n>]";
+    private static final long PROGRESS_INTERVAL_SECONDS = 10;
+    private final Queryable source;
+    private final CachingQuery cache;
+    private final boolean filtered;
+    private final int threads;
+    private final int topPairs;
+    private final Gson gson = new Gson();
+    private final LongAdder regimensDone = new LongAdder();
+    private final LongAdder pairsDone = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private BufferedWriter output;
+    private BufferedWriter checkpoint;
+
+    /**
+     * Single regimen of the input file
+     */
+    static class Regimen {
+        private final String id;
+        private final List<String> drugs;
+
+        Regimen(String id, List<String> drugs) {
+            this.id = id;
+            this.drugs = drugs;
+        }
+
+        //Getters
+        public String getId() { return id; }
+        public List<String> getDrugs() { return drugs; }
+    }
+
+    /**
+     * Constructs a batch run
+     *
+     * @param source the backend answering the queries, wrapped in a shared cache
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @param threads the number of parallel workers
+     * @param topPairs the number of riskiest pairs written per regimen
+     */
+    public BatchScreening(Queryable source, boolean filtered, int threads, int topPairs) {
+        this.cache = new CachingQuery(source);
+        this.source = cache;
+        //regimens screened after a data reload must not reuse results of the old data
+        if (source instanceof MQQTClient) {
+            ((MQQTClient) source).addDataVersionListener(version -> cache.invalidate());
+        } else if (source instanceof DatabaseQuery) {
+            ((DatabaseQuery) source).addDataVersionListener(version -> cache.invalidate());
+        }
+        this.filtered = filtered;
+        this.threads = threads;
+        this.topPairs = topPairs;
+    }
+
+    /**
+     * Entry point of the batch mode, called by GUIStarter for --batch
+     *
+     * @param args the command-line arguments without --batch
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = parseOptions(args);
+        if (!options.containsKey("input") || !options.containsKey("output")) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try {
+            Queryable source = connect(options);
+            if (source == null) {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+            int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors() * 2)));
+            int topPairs = Integer.parseInt(options.getOrDefault("top-pairs", "5"));
+            BatchScreening screening = new BatchScreening(source, !options.containsKey("unfiltered"), threads, topPairs);
+            screening.run(Paths.get(options.get("input")), Paths.get(options.get("output")));
+            System.exit(screening.failures.sum() == 0 ? 0 : 1);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Batch screening failed", e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Parses --key value pairs, options without a value are stored as "true"
+     *
+     * @param args the command-line arguments
+     * @return the options by key without the leading dashes
+     */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                continue;
+            }
+            String key = args[i].substring(2);
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(key, args[++i]);
+            } else {
+                options.put(key, "true");
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Connects the backend selected by the options
+     *
+     * @param options the parsed command-line options
+     * @return the backend, null if no backend was selected
+     * @throws Exception if the broker connection fails
+     */
+    private static Queryable connect(Map<String, String> options) throws Exception {
+        if (options.containsKey("broker")) {
+            MQQTClient client = new MQQTClient(options.get("broker"), options.containsKey("mqtt5"));
+            client.setBulkOnly(true); //keeps screening runs behind the typing of GUI users
+            return client;
+        }
+        if (!options.containsKey("db-url")) {
+            return null;
+        }
+        DatabaseQuery.connectInitially(options.get("db-url"), options.getOrDefault("db-user", ""), options.getOrDefault("db-password", ""));
+        DatabaseQuery databaseQuery = new DatabaseQuery();
+        if (options.containsKey("snapshot")) {
+            SnapshotQuery snapshot = databaseQuery.loadSnapshot();
+            logger.log(Level.INFO, "Loaded a snapshot of {0} rows", snapshot.size());
+            return snapshot;
+        }
+        return databaseQuery;
+    }
+
+    /**
+     * Screens every regimen of the input file that is not in the checkpoint yet
+     *
+     * @param input the CSV or JSONL regimen file
+     * @param outputPath the JSONL result file
+     * @throws IOException if a file cannot be read or written
+     * @throws InterruptedException if the run is interrupted while waiting for the workers
+     */
+    public void run(Path input, Path outputPath) throws IOException, InterruptedException {
+        Path checkpointPath = Paths.get(outputPath + ".checkpoint");
+        Set<String> completed = new HashSet<>();
+        if (Files.exists(checkpointPath)) {
+            completed.addAll(Files.readAllLines(checkpointPath, StandardCharsets.UTF_8));
+            logger.log(Level.INFO, "Resuming after {0} completed regimens", completed.size());
+        } else {
+            //no checkpoint means a fresh run, a stale output file is replaced
+            Files.deleteIfExists(outputPath);
+        }
+        output = Files.newBufferedWriter(outputPath, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        checkpoint = Files.newBufferedWriter(checkpointPath, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        //a bounded queue with caller-runs keeps the reader from loading the whole file ahead of the workers
+        AtomicInteger workerCount = new AtomicInteger();
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4), runnable -> new Thread(runnable, "batch-worker-" + workerCount.incrementAndGet()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "batch-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        progress.scheduleAtFixedRate(() -> logThroughput(start), PROGRESS_INTERVAL_SECONDS, PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            boolean jsonl = input.getFileName().toString().toLowerCase().endsWith(".jsonl");
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                Regimen regimen = jsonl ? parseJsonLine(line, lineNumber) : parseCsvLine(line, lineNumber);
+                if (regimen == null) {
+                    continue;
+                }
+                if (completed.contains(regimen.getId())) {
+                    skipped++;
+                    continue;
+                }
+                workers.execute(() -> screen(regimen));
+            }
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            progress.shutdownNow();
+            output.close();
+            checkpoint.close();
+        }
+        logThroughput(start);
+        logger.log(Level.INFO, "Skipped {0} regimens from the checkpoint, {1} regimens failed and can be resumed",
+                new Object[]{skipped, failures.sum()});
+    }
+
+    /**
+     * Parses a CSV line of the form id,drug1,drug2,... and skips blank lines, comments and the header
+     *
+     * @param line the line
+     * @param lineNumber the line number, used as id if the id column is empty
+     * @return the regimen, null if the line holds none
+     */
+    static Regimen parseCsvLine(String line, int lineNumber) {
+        if (line.isBlank() || line.startsWith("#")) {
+            return null;
+        }
+        String[] cells = line.split(",");
+        String id = cells[0].trim();
+        if (lineNumber == 1 && id.equalsIgnoreCase("id")) {
+            return null;
+        }
+        List<String> drugs = new ArrayList<>();
+        for (int i = 1; i < cells.length; i++) {
+            String drug = cells[i].trim().replaceAll("^\"|\"$", "");
+            if (!drug.isEmpty()) {
+                drugs.add(drug);
+            }
+        }
+        return new Regimen(id.isEmpty() ? "line-" + lineNumber : id, drugs);
+    }
+
+    /**
+     * Parses a JSONL line of the form {"id": "...", "drugs": ["...", "..."]}
+     *
+     * @param line the line
+     * @param lineNumber the line number, used as id if the line has none
+     * @return the regimen, null if the line is blank
+     */
+    static Regimen parseJsonLine(String line, int lineNumber) {
+        if (line.isBlank()) {
+            return null;
+        }
+        JsonObject json = JsonParser.parseString(line).getAsJsonObject();
+        List<String> drugs = new ArrayList<>();
+        for (JsonElement drug : json.getAsJsonArray("drugs")) {
+            drugs.add(drug.getAsString());
+        }
+        return new Regimen(json.has("id") ? json.get("id").getAsString() : "line-" + lineNumber, drugs);
+    }
+
+    /**
+     * Resolves, queries and scores one regimen and records the result
+     * A failed regimen is logged and left out of the checkpoint, so the next run retries it
+     *
+     * @param regimen the regimen
+     */
+    private void screen(Regimen regimen) {
+        try {
+            Set<String> resolved = new LinkedHashSet<>();
+            List<String> unresolved = new ArrayList<>();
+            for (String drug : regimen.getDrugs()) {
+                List<String> matches = source.queryDrug(drug, false);
+                if (matches == null) {
+                    throw new IllegalStateException("No response for drug " + drug);
+                }
+                if (matches.isEmpty()) {
+                    unresolved.add(drug);
+                } else {
+                    resolved.add(matches.get(0));
+                }
+            }
+
+            List<String> drugs = new ArrayList<>(resolved);
+            Map<String, Map<String, Twosides>> interactions = new LinkedHashMap<>();
+            for (int i = 0; i < drugs.size(); i++) {
+                for (int j = i + 1; j < drugs.size(); j++) {
+                    TwosidesCol twosidesCol = source.queryTwosides(drugs.get(i), drugs.get(j), filtered);
+                    //a failed lookup comes back without a pair entry, scoring it as interaction free would checkpoint a wrong result
+                    if (twosidesCol == null || twosidesCol.getCol().isEmpty()) {
+                        throw new IllegalStateException("No response for pair " + drugs.get(i) + " and " + drugs.get(j));
+                    }
+                    interactions.put(TwosidesCol.getMapStrId(drugs.get(i), drugs.get(j)), twosidesCol.getCol().values().iterator().next());
+                }
+            }
+            TwosidesCol regimenCol = new TwosidesCol();
+            regimenCol.setCol(interactions);
+            RegimenReport report = RegimenScorer.score(regimenCol);
+            record(regimen.getId(), toJson(regimen.getId(), drugs, unresolved, report));
+            regimensDone.increment();
+            pairsDone.add(interactions.size());
+        } catch (Exception e) {
+            failures.increment();
+            logger.log(Level.WARNING, "Failed to screen regimen " + regimen.getId(), e);
+        }
+    }
+
+    /**
+     * Builds the output line of a regimen
+     *
+     * @param id the id of the regimen
+     * @param drugs the resolved drug names
+     * @param unresolved the input names without an exact match
+     * @param report the scored regimen
+     * @return the JSON object of the regimen
+     */
+    private JsonObject toJson(String id, List<String> drugs, List<String> unresolved, RegimenReport report) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", id);
+        json.add("drugs", gson.toJsonTree(drugs));
+        json.add("unresolved", gson.toJsonTree(unresolved));
+        json.addProperty("pairs", report.getPairs().size());
+        json.addProperty("interactingPairs", report.getPairs().stream().filter(pair -> pair.getScore() > 0).count());
+        json.addProperty("score", report.getScore());
+        JsonObject severities = new JsonObject();
+        for (String severityClass : PairSummary.SEVERITY_ORDER) {
+            severities.addProperty(severityClass, report.getSeverityCount(severityClass));
+        }
+        json.add("severityCounts", severities);
+        if (!report.getDrugs().isEmpty() && report.getDrugs().get(0).getScore() > 0) {
+            json.addProperty("riskiestDrug", report.getDrugs().get(0).getDrug());
+        }
+        JsonArray pairs = new JsonArray();
+        for (RegimenReport.PairScore pair : report.getPairs().subList(0, Math.min(topPairs, report.getPairs().size()))) {
+            JsonObject pairJson = new JsonObject();
+            pairJson.addProperty("drug1", pair.getDrug1());
+            pairJson.addProperty("drug2", pair.getDrug2());
+            pairJson.addProperty("score", pair.getScore());
+            pairJson.addProperty("weightedPrr", pair.getWeightedPrr());
+            pairs.add(pairJson);
+        }
+        json.add("topPairs", pairs);
+        return json;
+    }
+
+    /**
+     * Appends a result line and then its id to the checkpoint
+     * The result is flushed first, so a crash in between repeats the regimen instead of losing it
+     *
+     * @param id the id of the regimen
+     * @param result the result of the regimen
+     * @throws IOException if a file cannot be written
+     */
+    private synchronized void record(String id, JsonObject result) throws IOException {
+        output.write(gson.toJson(result));
+        output.newLine();
+        output.flush();
+        checkpoint.write(id);
+        checkpoint.newLine();
+        checkpoint.flush();
+    }
+
+    /**
+     * Logs the number of screened regimens and pairs with their rates since the start
+     *
+     * @param start the start of the run from System.nanoTime
+     */
+    private void logThroughput(long start) {
+        double seconds = Math.max((System.nanoTime() - start) / 1e9, 1e-3);
+        long hits = cache.getHits();
+        long lookups = hits + cache.getMisses();
+        logger.log(Level.INFO, String.format("%d regimens (%.1f/s), %d pairs (%.1f/s), cache hit rate %.1f%%, %d coalesced, %d failed",
+                regimensDone.sum(), regimensDone.sum() / seconds, pairsDone.sum(), pairsDone.sum() / seconds,
+                lookups == 0 ? 0.0 : 100.0 * hits / lookups, cache.getCoalesced(), failures.sum()));
+    }
+}
@@ -0,0 +1,128 @@
+package com;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Queryable decorator sharing the results of pair and drug lookups between threads
+ * A pair is cached once for both drug orders, the paged and fan-out queries are passed through
+ * Concurrent misses of the same pair share one backend query
+ */
+public class CachingQuery implements Queryable {
+    private final Queryable delegate;
+    private final Map<String, Map<String, Twosides>> pairs = new ConcurrentHashMap<>();
+    private final Map<String, PairSummary> summaries = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> drugs = new ConcurrentHashMap<>();
+    private final SingleFlight<String, TwosidesCol> pairLoads = new SingleFlight<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructs a caching decorator
+     *
+     * @param delegate the backend answering the cache misses
+     */
+    public CachingQuery(Queryable delegate) {
+        this.delegate = delegate;
+    }
+
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getCoalesced() { return pairLoads.getCoalesced(); }
+
+    /**
+     * Drops every cached result, used when the data of the backend changed
+     */
+    public void invalidate() {
+        pairs.clear();
+        summaries.clear();
+        drugs.clear();
+    }
+
+    /**
+     * Returns the cached interactions of a pair or queries them once
+     * Failed lookups, which come back as null or without a pair entry, are not cached
+     *
+     * @param drug1Name the name of the first drug
+     * @param drug2Name the name of the second drug
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @return a TwosidesCol keyed by the requested drug order
+     */
+    public TwosidesCol queryTwosides(String drug1Name, String drug2Name, boolean filtered) {
+        String key = PairBloomFilter.pairKey(drug1Name, drug2Name) + "%" + filtered;
+        Map<String, Twosides> interactions = pairs.get(key);
+        if (interactions != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            TwosidesCol twosidesCol = pairLoads.run(key, () -> delegate.queryTwosides(drug1Name, drug2Name, filtered));
+            if (twosidesCol == null || twosidesCol.getCol().isEmpty()) {
+                return twosidesCol;
+            }
+            interactions = twosidesCol.getCol().values().iterator().next();
+            pairs.putIfAbsent(key, interactions);
+        }
+        return new TwosidesCol(TwosidesCol.getMapStrId(drug1Name, drug2Name), interactions);
+    }
+
+    /**
+     * Returns the cached drug search result or queries it once
+     * Failed searches, which come back as null, are not cached
+     *
+     * @param drugName the name of the drug to search for
+     * @param like whether to use a wildcard search or an exact match
+     * @return a list of drug names matching the search criteria
+     */
+    public List<String> queryDrug(String drugName, boolean like) {
+        String key = drugName.trim().toLowerCase(Locale.ROOT) + "%" + like;
+        List<String> result = drugs.get(key);
+        if (result != null) {
+            hits.increment();
+            return result;
+        }
+        misses.increment();
+        result = delegate.queryDrug(drugName, like);
+        if (result != null) {
+            drugs.putIfAbsent(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the cached summary of a pair or queries it once
+     *
+     * @param drug1Name the name of the first drug
+     * @param drug2Name the name of the second drug
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @return the summary of the pair
+     */
+    public PairSummary queryPairSummary(String drug1Name, String drug2Name, boolean filtered) {
+        String key = PairBloomFilter.pairKey(drug1Name, drug2Name) + "%" + filtered;
+        PairSummary summary = summaries.get(key);
+        if (summary != null) {
+            hits.increment();
+            return summary;
+        }
+        misses.increment();
+        summary = delegate.queryPairSummary(drug1Name, drug2Name, filtered);
+        if (summary != null) {
+            summaries.putIfAbsent(key, summary);
+        }
+        return summary;
+    }
+
+    public TwosidesPage queryTwosidesPage(String drug1Name, String drug2Name, boolean filtered, TwosidesPage.Cursor after, int limit) {
+        return delegate.queryTwosidesPage(drug1Name, drug2Name, filtered, after, limit);
+    }
+
+    public List<PairSummary> queryNeighbors(String drugName, boolean filtered) {
+        return delegate.queryNeighbors(drugName, filtered);
+    }
+
+    public List<Twosides> queryByCondition(String conditionName, String drugName, boolean filtered, int limit) {
+        return delegate.queryByCondition(conditionName, drugName, filtered, limit);
+    }
+}
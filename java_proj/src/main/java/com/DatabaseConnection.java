@@ -9,13 +9,18 @@ import java.sql.DriverManager;
 public class DatabaseConnection {
     /**
      * Establishes a connection to the database using the specified params
+     * The time to acquire the connection is recorded in the db.connection.acquire histogram
      *
      * @return a Connection object if successful, or null if the connection fails
      */
     public static Connection connect(String url, String user, String password) {
+        long start = System.nanoTime();
         try {
-            return DriverManager.getConnection(url, user, password);
+            Connection connection = DriverManager.getConnection(url, user, password);
+            Metrics.recordSince("db.connection.acquire", start);
+            return connection;
         } catch (Exception e) {
+            Metrics.counter("db.connection.failures").increment();
             e.printStackTrace();
             return null;
         }
@@ -3,10 +3,18 @@ package com;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,6 +26,42 @@ public class DatabaseQuery implements Queryable {
     private static String url;
     private static String username;
     private static String password;
+    private static final long FINGERPRINT_INTERVAL_MILLIS = 5 * 60 * 1000; //5 minutes
+    private static final long VERSION_INTERVAL_MILLIS = 30 * 1000;
+    private static final String METADATA_TABLE = "effect_nsides.twosides_metadata";
+    private static final String SUMMARY_SOURCE_KEY = "pair_summary_source";
+    private static final String SUMMARY_LOCK = "effect_nsides.twosides_pair_summary";
+    private static final double PAIR_FILTER_FALSE_POSITIVE_RATE = 0.01;
+    private static final String FILTERED_CONDITION = "severity_class != 'Unknown' AND severity_class !='Negligible'";
+    /**
+     * Sort keys of the severity order, a NULL sorts like the 0 it is read as, so the keyset of a page can be compared with = and <
+     */
+    private static final String SEVERITY_KEY = "COALESCE(severity, 0)";
+    private static final String PRR_KEY = "COALESCE(prr, 0)";
+    private static final String CONDITION_KEY = "COALESCE(condition_meddra_id, 0)";
+    private static final String DRUG_1_KEY = "COALESCE(drug_1_rxnorm_id, 0)";
+    private static final String SEVERITY_ORDER = SEVERITY_KEY + " DESC, " + PRR_KEY + " DESC, " + CONDITION_KEY + ", " + DRUG_1_KEY;
+    private static final String AFTER_CURSOR = String.format("(%1$s < ? OR (%1$s = ? AND (%2$s < ? OR (%2$s = ? AND (%3$s > ? OR (%3$s = ? AND %4$s > ?))))))",
+            SEVERITY_KEY, PRR_KEY, CONDITION_KEY, DRUG_1_KEY);
+    private static final String SEVERITY_RANK = "GREATEST(FIELD(severity_class, 'Unknown', 'Negligible', 'Minor', 'Medium', 'Severe', 'Critical') - 1, 0)";
+    private volatile PairBloomFilter allPairs;
+    private volatile PairBloomFilter filteredPairs;
+    private volatile boolean summaryTableReady;
+    private volatile boolean maintainer;
+    private volatile boolean indexesEnsured;
+    private volatile String dataFingerprint;
+    private volatile long fingerprintCheckedAt;
+    private volatile boolean metadataEnsured;
+    private volatile String metadataVersion;
+    private volatile long versionCheckedAt;
+    private volatile String dataVersion;
+    private final List<Consumer<String>> versionListeners = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final ExecutorService filterBuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pair-filter-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
      * Establishes an initial connection to the database and logs the connection status
@@ -37,26 +81,42 @@ public class DatabaseQuery implements Queryable {
         }
     }
 
+    /**
+     * Makes this instance maintain the twosides indexes and the pair summary table shared by every process
+     * Only the servers call it, other instances use the indexes and the table once a server has created them
+     */
+    public void maintainDerivedTables() {
+        maintainer = true;
+    }
+
     /**
      * Queries the database for twosides
      *
      * @param drug1Name the name of the first drug
      * @param drug2Name the name of the second drug
      * @param filtered whether to exclude interactions with unknown or negligible severity
-     * @return a TwosidesCol object containing the queried drug interactions
+     * @return a TwosidesCol object containing the queried drug interactions, null if the database could not be queried
      */
     public TwosidesCol queryTwosides(String drug1Name, String drug2Name, boolean filtered) {
         TwosidesCol twosidesCol = new TwosidesCol();
-        Map<String, Twosides> twosidesInteractionMap = new HashMap<>();
+        Map<String, Twosides> twosidesInteractionMap = new LinkedHashMap<>();
+        PairBloomFilter pairFilter = getPairFilter(filtered);
+        if (pairFilter != null && !pairFilter.mightContain(drug1Name, drug2Name)) {
+            //definitely no interactions, answered without a round trip
+            logger.log(Level.FINE, "Pair filter skipped lookup of {0} and {1}", new Object[]{drug1Name, drug2Name});
+            twosidesCol.addTwosides(TwosidesCol.getMapStrId(drug1Name, drug2Name), twosidesInteractionMap);
+            return twosidesCol;
+        }
+        long start = System.nanoTime();
+        JfrEvents.Query event = new JfrEvents.Query("queryTwosides", drug1Name, drug2Name);
         try (Connection connection = DatabaseConnection.connect(url, username, password)) {
             if (connection != null) {
-                logger.info("Connected to the database successfully");
                 String query;
                 if (filtered) {                
-                    query = "SELECT * FROM effect_nsides.twosides WHERE ((drug_1_concept_name = ? AND drug_2_concept_name = ?) OR (drug_1_concept_name = ? AND drug_2_concept_name = ?)) AND severity_class != 'Unknown' AND severity_class !='Negligible'";
+                    query = "SELECT * FROM effect_nsides.twosides WHERE ((drug_1_concept_name = ? AND drug_2_concept_name = ?) OR (drug_1_concept_name = ? AND drug_2_concept_name = ?)) AND " + FILTERED_CONDITION + " ORDER BY " + SEVERITY_ORDER;
                 }
                 else {
-                    query = "SELECT * FROM effect_nsides.twosides WHERE (drug_1_concept_name = ? AND drug_2_concept_name = ?) OR (drug_1_concept_name = ? AND drug_2_concept_name = ?)";
+                    query = "SELECT * FROM effect_nsides.twosides WHERE (drug_1_concept_name = ? AND drug_2_concept_name = ?) OR (drug_1_concept_name = ? AND drug_2_concept_name = ?) ORDER BY " + SEVERITY_ORDER;
                 }
                 PreparedStatement preparedStatement = connection.prepareStatement(query);
                 preparedStatement.setString(1, drug1Name);
@@ -64,36 +124,307 @@ public class DatabaseQuery implements Queryable {
                 preparedStatement.setString(3, drug2Name);
                 preparedStatement.setString(4, drug1Name);
 
-                logger.log(Level.INFO, "Executing query: {0}", query);
+                AsyncLog.log(logger, Level.INFO, "db.query", () -> "Executing query: " + query);
+                RequestDeadline.applyTo(preparedStatement);
                 ResultSet resultSet = preparedStatement.executeQuery();
                 while (resultSet.next()) {
                     // logger.log(Level.INFO, "Interaction found: {0}", resultSet.getString("condition_name"));
-                    Twosides tempTwosides = new Twosides(resultSet.getInt("drug_1_rxnorm_id"), 
-                                                        resultSet.getString("drug_1_concept_name"),
-                                                        resultSet.getInt("drug_2_rxnorm_id"), 
-                                                        resultSet.getString("drug_2_concept_name"),
-                                                        resultSet.getInt("condition_meddra_id"), 
-                                                        resultSet.getString("condition_name"),
-                                                        resultSet.getInt("a"), 
-                                                        resultSet.getInt("b"), 
-                                                        resultSet.getInt("c"), 
-                                                        resultSet.getInt("d"),
-                                                        resultSet.getDouble("prr"), 
-                                                        resultSet.getDouble("prr_error"), 
-                                                        resultSet.getDouble("mean_reporting_frequency"),
-                                                        resultSet.getDouble("severity"),
-                                                        resultSet.getString("severity_class")
-                                                        );
+                    Twosides tempTwosides = readTwosides(resultSet);
                     twosidesInteractionMap.put(TwosidesCol.getMapStrId(tempTwosides), tempTwosides);
                 }
                 twosidesCol.addTwosides(TwosidesCol.getMapStrId(drug1Name, drug2Name), twosidesInteractionMap);
+                recordQuery(event, start, twosidesInteractionMap.size());
+                return twosidesCol;
             } else {
                 logger.warning("Failed to connect to the database");
             }
         } catch (Exception e) {
+            Metrics.counter("db.query.errors").increment();
             logger.log(Level.SEVERE, "An error occurred while interacting with the database", e);
         }
-        return twosidesCol;
+        return null;
+    }
+
+    /**
+     * Records the time of a query, including the connection, and the number of rows it read
+     *
+     * @param event the flight recorder event started with the query
+     * @param startNanos the start of the query as returned by System.nanoTime
+     * @param rows the number of rows read
+     */
+    private static void recordQuery(JfrEvents.Query event, long startNanos, int rows) {
+        Metrics.recordSince("db.query." + event.method, startNanos);
+        event.finish(rows);
+        Metrics.counter("db.rows").add(rows);
+    }
+
+    /**
+     * Reads the current row of a twosides result set
+     *
+     * @param resultSet the result set positioned on a row
+     * @return the Twosides record of the row
+     * @throws SQLException if a column cannot be read
+     */
+    private Twosides readTwosides(ResultSet resultSet) throws SQLException {
+        return new Twosides(resultSet.getInt("drug_1_rxnorm_id"), 
+                            resultSet.getString("drug_1_concept_name"),
+                            resultSet.getInt("drug_2_rxnorm_id"), 
+                            resultSet.getString("drug_2_concept_name"),
+                            resultSet.getInt("condition_meddra_id"), 
+                            resultSet.getString("condition_name"),
+                            resultSet.getInt("a"), 
+                            resultSet.getInt("b"), 
+                            resultSet.getInt("c"), 
+                            resultSet.getInt("d"),
+                            resultSet.getDouble("prr"), 
+                            resultSet.getDouble("prr_error"), 
+                            resultSet.getDouble("mean_reporting_frequency"),
+                            resultSet.getDouble("severity"),
+                            resultSet.getString("severity_class")
+                            );
+    }
+
+    /**
+     * Queries one page of the interactions of a drug pair, the most severe first
+     * The order and the limit are applied by the database; later pages continue after the cursor instead of using OFFSET
+     *
+     * @param drug1Name the name of the first drug
+     * @param drug2Name the name of the second drug
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @param after the cursor of the previous page, null for the first page
+     * @param limit the maximum number of rows of the page
+     * @return the page, null if the database could not be queried
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public TwosidesPage queryTwosidesPage(String drug1Name, String drug2Name, boolean filtered, TwosidesPage.Cursor after, int limit) {
+        TwosidesPage.checkLimit(limit);
+        PairBloomFilter pairFilter = getPairFilter(filtered);
+        if (pairFilter != null && !pairFilter.mightContain(drug1Name, drug2Name)) {
+            return new TwosidesPage(drug1Name, drug2Name, new ArrayList<>(), false);
+        }
+        StringBuilder query = new StringBuilder("SELECT * FROM effect_nsides.twosides WHERE ((drug_1_concept_name = ? AND drug_2_concept_name = ?) OR (drug_1_concept_name = ? AND drug_2_concept_name = ?))");
+        if (filtered) {
+            query.append(" AND ").append(FILTERED_CONDITION);
+        }
+        if (after != null) {
+            //rows strictly after the cursor in the severity order
+            query.append(" AND ").append(AFTER_CURSOR);
+        }
+        //one extra row tells whether another page follows
+        query.append(" ORDER BY ").append(SEVERITY_ORDER).append(" LIMIT ?");
+        long start = System.nanoTime();
+        JfrEvents.Query event = new JfrEvents.Query("queryTwosidesPage", drug1Name, drug2Name);
+        try (Connection connection = DatabaseConnection.connect(url, username, password)) {
+            if (connection == null) {
+                logger.warning("Failed to connect to the database");
+                return null;
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(query.toString())) {
+                int i = 1;
+                stmt.setString(i++, drug1Name);
+                stmt.setString(i++, drug2Name);
+                stmt.setString(i++, drug2Name);
+                stmt.setString(i++, drug1Name);
+                if (after != null) {
+                    stmt.setDouble(i++, after.getSeverity());
+                    stmt.setDouble(i++, after.getSeverity());
+                    stmt.setDouble(i++, after.getPrr());
+                    stmt.setDouble(i++, after.getPrr());
+                    stmt.setInt(i++, after.getConditionMeddraId());
+                    stmt.setInt(i++, after.getConditionMeddraId());
+                    stmt.setInt(i++, after.getDrug1RxnormId());
+                }
+                stmt.setInt(i, limit + 1);
+                List<Twosides> rows = new ArrayList<>();
+                RequestDeadline.applyTo(stmt);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        rows.add(readTwosides(rs));
+                    }
+                }
+                recordQuery(event, start, rows.size());
+                boolean hasMore = rows.size() > limit;
+                if (hasMore) {
+                    rows.remove(limit);
+                }
+                return new TwosidesPage(drug1Name, drug2Name, rows, hasMore);
+            }
+        } catch (Exception e) {
+            Metrics.counter("db.query.errors").increment();
+            logger.log(Level.SEVERE, "An error occurred while interacting with the database", e);
+            return null;
+        }
+    }
+
+    /**
+     * Queries every drug that has interactions with the given drug, aggregated per co-medication
+     * The most severe co-medications come first
+     *
+     * @param drugName the name of the drug
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @return the summaries of the pairs with drug1 set to the given drug, null if the database could not be queried
+     */
+    public List<PairSummary> queryNeighbors(String drugName, boolean filtered) {
+        String branch;
+        if (summaryTableReady) {
+            branch = "SELECT %s AS neighbor, row_count, severity_rank, max_severity, max_prr FROM effect_nsides.twosides_pair_summary "
+                    + "WHERE %s = ? AND filtered = " + (filtered ? 1 : 0);
+        } else {
+            branch = "SELECT %s AS neighbor, COUNT(*) AS row_count, MAX(" + SEVERITY_RANK + ") AS severity_rank, MAX(severity) AS max_severity, MAX(prr) AS max_prr "
+                    + "FROM effect_nsides.twosides WHERE %s = ?" + (filtered ? " AND " + FILTERED_CONDITION : "") + " GROUP BY neighbor";
+        }
+        //each branch is served by the index leading with its drug column, a pair stored in both orders is combined
+        String query = "SELECT neighbor, SUM(row_count) AS row_count, MAX(severity_rank) AS severity_rank, MAX(max_severity) AS max_severity, MAX(max_prr) AS max_prr FROM ("
+                + String.format(branch, "drug_2_concept_name", "drug_1_concept_name") + " UNION ALL "
+                + String.format(branch, "drug_1_concept_name", "drug_2_concept_name")
+                + ") neighbors GROUP BY neighbor ORDER BY severity_rank DESC, row_count DESC";
+        List<PairSummary> neighbors = new ArrayList<>();
+        long start = System.nanoTime();
+        JfrEvents.Query event = new JfrEvents.Query("queryNeighbors", drugName, null);
+        try (Connection connection = DatabaseConnection.connect(url, username, password)) {
+            if (connection == null) {
+                logger.warning("Failed to connect to the database");
+                return null;
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setString(1, drugName);
+                stmt.setString(2, drugName);
+                RequestDeadline.applyTo(stmt);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        neighbors.add(new PairSummary(drugName, rs.getString("neighbor"), rs.getInt("row_count"),
+                                PairSummary.severityClass(rs.getInt("severity_rank")), rs.getDouble("max_severity"), rs.getDouble("max_prr")));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Metrics.counter("db.query.errors").increment();
+            logger.log(Level.SEVERE, "An error occurred while interacting with the database", e);
+            return null;
+        }
+        recordQuery(event, start, neighbors.size());
+        return neighbors;
+    }
+
+    /**
+     * Queries the interactions reporting a condition, the most severe first
+     * E.g. the co-medications of Warfarin linked to Gastrointestinal haemorrhage
+     *
+     * @param conditionName the name of the condition
+     * @param drugName restricts the result to pairs containing this drug, null for every pair
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @param limit the maximum number of rows
+     * @return the matching Twosides records, null if the database could not be queried
+     */
+    public List<Twosides> queryByCondition(String conditionName, String drugName, boolean filtered, int limit) {
+        StringBuilder query = new StringBuilder("SELECT * FROM effect_nsides.twosides WHERE condition_name = ?");
+        if (drugName != null) {
+            query.append(" AND (drug_1_concept_name = ? OR drug_2_concept_name = ?)");
+        }
+        if (filtered) {
+            query.append(" AND ").append(FILTERED_CONDITION);
+        }
+        query.append(" ORDER BY ").append(SEVERITY_ORDER).append(" LIMIT ?");
+        List<Twosides> rows = new ArrayList<>();
+        long start = System.nanoTime();
+        JfrEvents.Query event = new JfrEvents.Query("queryByCondition", conditionName, drugName);
+        try (Connection connection = DatabaseConnection.connect(url, username, password)) {
+            if (connection == null) {
+                logger.warning("Failed to connect to the database");
+                return null;
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(query.toString())) {
+                int i = 1;
+                stmt.setString(i++, conditionName);
+                if (drugName != null) {
+                    stmt.setString(i++, drugName);
+                    stmt.setString(i++, drugName);
+                }
+                stmt.setInt(i, limit);
+                RequestDeadline.applyTo(stmt);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        rows.add(readTwosides(rs));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Metrics.counter("db.query.errors").increment();
+            logger.log(Level.SEVERE, "An error occurred while interacting with the database", e);
+            return null;
+        }
+        recordQuery(event, start, rows.size());
+        return rows;
+    }
+
+    /**
+     * Loads the whole twosides table into an in-memory snapshot with inverted indexes
+     * The rows are streamed, so only the snapshot itself has to fit into memory
+     *
+     * @return the snapshot, null if the database could not be read
+     */
+    public SnapshotQuery loadSnapshot() {
+        long start = System.nanoTime();
+        List<Twosides> rows = new ArrayList<>();
+        try (Connection connection = DatabaseConnection.connect(url, username, password)) {
+            if (connection == null) {
+                logger.warning("Failed to connect to the database");
+                return null;
+            }
+            try (PreparedStatement stmt = connection.prepareStatement("SELECT * FROM effect_nsides.twosides")) {
+                stmt.setFetchSize(Integer.MIN_VALUE); //stream the rows instead of buffering the whole result
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        rows.add(readTwosides(rs));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "An error occurred while loading the snapshot", e);
+            return null;
+        }
+        SnapshotQuery snapshot = new SnapshotQuery(rows);
+        logger.log(Level.INFO, "Snapshot of {0} rows loaded in {1} ms", new Object[]{rows.size(), (System.nanoTime() - start) / 1_000_000});
+        return snapshot;
+    }
+
+    /**
+     * Builds the interaction graph of the whole dataset from the per pair aggregates
+     *
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @return the interaction graph, null if the database could not be read
+     */
+    public InteractionGraph loadInteractionGraph(boolean filtered) {
+        long start = System.nanoTime();
+        String query;
+        if (summaryTableReady) {
+            query = "SELECT drug_1_concept_name, drug_2_concept_name, max_severity, max_prr FROM effect_nsides.twosides_pair_summary WHERE filtered = " + (filtered ? 1 : 0);
+        } else {
+            query = "SELECT drug_1_concept_name, drug_2_concept_name, MAX(severity) AS max_severity, MAX(prr) AS max_prr FROM effect_nsides.twosides"
+                    + (filtered ? " WHERE " + FILTERED_CONDITION : "") + " GROUP BY drug_1_concept_name, drug_2_concept_name";
+        }
+        InteractionGraph.Builder builder = new InteractionGraph.Builder();
+        try (Connection connection = DatabaseConnection.connect(url, username, password)) {
+            if (connection == null) {
+                logger.warning("Failed to connect to the database");
+                return null;
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setFetchSize(Integer.MIN_VALUE); //stream the rows instead of buffering the whole result
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        builder.addEdge(rs.getString(1), rs.getString(2), rs.getDouble(3), rs.getDouble(4));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "An error occurred while loading the interaction graph", e);
+            return null;
+        }
+        InteractionGraph graph = builder.build();
+        logger.log(Level.INFO, "Interaction graph with {0} drugs and {1} pairs loaded in {2} ms",
+                new Object[]{graph.nodeCount(), graph.edgeCount(), (System.nanoTime() - start) / 1_000_000});
+        return graph;
     }
 
     /**
@@ -101,13 +432,14 @@ public class DatabaseQuery implements Queryable {
      *
      * @param drugName the name of the drug to search for
      * @param like whether to use a wildcard search or an exact match
-     * @return a list of drug names matching the search criteria
+     * @return a list of drug names matching the search criteria, null if the database could not be queried
      */
     public List<String> queryDrug(String drugName, boolean like) {
         List<String> results = new ArrayList<>();
+        long start = System.nanoTime();
+        JfrEvents.Query event = new JfrEvents.Query("queryDrug", drugName, null);
         try (Connection connection = DatabaseConnection.connect(url, username, password)) {
             if (connection!=null) {
-                logger.info("Connected to the database successfully");
                 String query;
                 if (like) {
                     query = "SELECT DISTINCT drug_1_concept_name FROM effect_nsides.twosides WHERE drug_1_concept_name LIKE ? LIMIT 50";
@@ -122,19 +454,411 @@ public class DatabaseQuery implements Queryable {
                 else {
                     stmt.setString(1, drugName);
                 }
+                RequestDeadline.applyTo(stmt);
                 ResultSet rs = stmt.executeQuery();
         
                 while (rs.next()) {
                     // logger.log(Level.INFO, "Drug found: {0}", resultSet.getString("drug_1_concept_name"));
                     results.add(rs.getString("drug_1_concept_name"));
                     }
+                recordQuery(event, start, results.size());
+                return results;
             }
             else {
                 logger.warning("Failed to connect to the database");
             }
+        } catch (Exception e) {
+            Metrics.counter("db.query.errors").increment();
+            logger.log(Level.SEVERE, "An error occurred while interacting with the database", e);
+        }
+        //an empty list would read as an unknown drug, so failures are reported as no result
+        return null;
+    }
+
+    /**
+     * Returns the version of the twosides data and checks it again if the last check is older than the version interval
+     * The version is the data_version row of the metadata table, or the data fingerprint while that row is missing
+     *
+     * @return the data version, or null until the first check has finished
+     */
+    public String getDataVersion() {
+        refreshDerivedDataIfStale();
+        return dataVersion;
+    }
+
+    /**
+     * Registers a listener called with the new data version whenever it changes, including the first time it becomes known
+     * The listener runs on the background thread that detected the change
+     *
+     * @param listener the listener
+     */
+    public void addDataVersionListener(Consumer<String> listener) {
+        versionListeners.add(listener);
+    }
+
+    /**
+     * Reads the data version from the metadata table
+     * Jobs reloading the twosides table are expected to bump it afterwards, e.g.
+     * UPDATE effect_nsides.twosides_metadata SET value = 'reload-2024-05-01' WHERE name = 'data_version'
+     *
+     * @return the data version, null if the metadata table has none
+     */
+    public String queryDataVersion() {
+        try (Connection connection = DatabaseConnection.connect(url, username, password)) {
+            if (connection == null) {
+                logger.warning("Failed to connect to the database");
+                return null;
+            }
+            return queryDataVersion(connection);
         } catch (Exception e) {
             logger.log(Level.SEVERE, "An error occurred while interacting with the database", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the data version from the metadata table over an open connection
+     *
+     * @param connection an open database connection
+     * @return the data version, null if the metadata table has none
+     * @throws SQLException if the query fails
+     */
+    private String queryDataVersion(Connection connection) throws SQLException {
+        return queryMetadata(connection, "data_version");
+    }
+
+    /**
+     * Reads a value of the metadata table
+     *
+     * @param connection an open database connection
+     * @param name the name of the value
+     * @return the value, null if the table has none
+     * @throws SQLException if the query fails
+     */
+    private String queryMetadata(Connection connection, String name) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT value FROM " + METADATA_TABLE + " WHERE name = ?")) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString("value") : null;
+            }
+        }
+    }
+
+    /**
+     * Inserts or replaces a value of the metadata table
+     *
+     * @param connection an open database connection
+     * @param name the name of the value
+     * @param value the new value
+     * @throws SQLException if the statement fails
+     */
+    private void storeMetadata(Connection connection, String name, String value) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO " + METADATA_TABLE + " (name, value) VALUES (?, ?) ON DUPLICATE KEY UPDATE value = VALUES(value)")) {
+            stmt.setString(1, name);
+            stmt.setString(2, value);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Returns the membership filter of interacting pairs
+     * The filters are built in the background on first use and rebuilt when the twosides data changes
+     *
+     * @param filtered whether the filter should only contain pairs with known, non negligible interactions
+     * @return the filter, or null while it has not been built yet
+     */
+    public PairBloomFilter getPairFilter(boolean filtered) {
+        refreshDerivedDataIfStale();
+        return filtered ? filteredPairs : allPairs;
+    }
+
+    /**
+     * Queries the aggregates of a drug pair from the pair summary table
+     * Until the summary table has been built the aggregates are computed from the twosides table
+     *
+     * @param drug1Name the name of the first drug
+     * @param drug2Name the name of the second drug
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @return the summary of the pair, null if the database could not be queried
+     */
+    public PairSummary queryPairSummary(String drug1Name, String drug2Name, boolean filtered) {
+        PairBloomFilter pairFilter = getPairFilter(filtered);
+        if (pairFilter != null && !pairFilter.mightContain(drug1Name, drug2Name)) {
+            return new PairSummary(drug1Name, drug2Name, 0, null, 0, 0);
+        }
+        String pairCondition = "((drug_1_concept_name = ? AND drug_2_concept_name = ?) OR (drug_1_concept_name = ? AND drug_2_concept_name = ?))";
+        String query;
+        if (summaryTableReady) {
+            //a pair may be stored in both drug orders, so both summary rows are combined
+            query = "SELECT SUM(row_count) AS row_count, MAX(severity_rank) AS severity_rank, MAX(max_severity) AS max_severity, MAX(max_prr) AS max_prr "
+                    + "FROM effect_nsides.twosides_pair_summary WHERE " + pairCondition + " AND filtered = " + (filtered ? 1 : 0);
+        } else {
+            query = "SELECT COUNT(*) AS row_count, MAX(" + SEVERITY_RANK + ") AS severity_rank, MAX(severity) AS max_severity, MAX(prr) AS max_prr "
+                    + "FROM effect_nsides.twosides WHERE " + pairCondition + (filtered ? " AND " + FILTERED_CONDITION : "");
+        }
+        long start = System.nanoTime();
+        JfrEvents.Query event = new JfrEvents.Query("queryPairSummary", drug1Name, drug2Name);
+        try (Connection connection = DatabaseConnection.connect(url, username, password)) {
+            if (connection == null) {
+                logger.warning("Failed to connect to the database");
+                return null;
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(query)) {
+                stmt.setString(1, drug1Name);
+                stmt.setString(2, drug2Name);
+                stmt.setString(3, drug2Name);
+                stmt.setString(4, drug1Name);
+                RequestDeadline.applyTo(stmt);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    int rowCount = rs.getInt("row_count");
+                    String maxSeverityClass = rowCount == 0 ? null : PairSummary.severityClass(rs.getInt("severity_rank"));
+                    recordQuery(event, start, 1);
+                    return new PairSummary(drug1Name, drug2Name, rowCount, maxSeverityClass, rs.getDouble("max_severity"), rs.getDouble("max_prr"));
+                }
+            }
+        } catch (Exception e) {
+            Metrics.counter("db.query.errors").increment();
+            logger.log(Level.SEVERE, "An error occurred while interacting with the database", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the data version at most once per version interval and the more expensive data fingerprint at most once per fingerprint interval
+     * The pair filters are rebuilt if either changed and the pair summary table is checked against them, then the version listeners are notified
+     */
+    private void refreshDerivedDataIfStale() {
+        long now = System.currentTimeMillis();
+        if (now - versionCheckedAt < VERSION_INTERVAL_MILLIS || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        filterBuilder.execute(() -> {
+            try (Connection connection = DatabaseConnection.connect(url, username, password)) {
+                if (connection == null) {
+                    logger.warning("Failed to connect to the database");
+                    return;
+                }
+                //creating an index locks the table for a while, so it is left to the servers
+                if (maintainer && !indexesEnsured) {
+                    indexesEnsured = ensureIndexes(connection);
+                }
+                if (!metadataEnsured) {
+                    metadataEnsured = ensureMetadataTable(connection);
+                }
+                String version = metadataEnsured ? queryDataVersion(connection) : null;
+                versionCheckedAt = System.currentTimeMillis();
+                boolean versionChanged = !Objects.equals(version, metadataVersion);
+                if (!versionChanged && System.currentTimeMillis() - fingerprintCheckedAt < FINGERPRINT_INTERVAL_MILLIS) {
+                    return;
+                }
+                String fingerprint = queryDataFingerprint(connection);
+                boolean dataChanged = versionChanged || !Objects.equals(fingerprint, dataFingerprint);
+                if (dataChanged) {
+                    long start = System.nanoTime();
+                    //both variants are replaced together so they always describe the same data
+                    PairBloomFilter all = buildPairFilter(connection, false, fingerprint);
+                    PairBloomFilter filteredOnly = buildPairFilter(connection, true, fingerprint);
+                    allPairs = all;
+                    filteredPairs = filteredOnly;
+                    logger.log(Level.INFO, "Pair filters built in {0} ms, version {1}", new Object[]{(System.nanoTime() - start) / 1_000_000, fingerprint});
+                    dataFingerprint = fingerprint;
+                    metadataVersion = version;
+                }
+                if (dataChanged || !summaryTableReady) {
+                    summaryTableReady = metadataEnsured && ensurePairSummaries(connection, version + "@" + fingerprint);
+                }
+                fingerprintCheckedAt = System.currentTimeMillis();
+                String current = version != null ? version : fingerprint;
+                if (!Objects.equals(current, dataVersion)) {
+                    logger.log(Level.INFO, "Data version changed from {0} to {1}", new Object[]{dataVersion, current});
+                    dataVersion = current;
+                    for (Consumer<String> listener : versionListeners) {
+                        listener.accept(current);
+                    }
+                }
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "An error occurred while building the pair filters", e);
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+    }
+
+    /**
+     * Identifies the current state of the twosides table by its row count and last update time
+     *
+     * @param connection an open database connection
+     * @return the fingerprint of the twosides data
+     * @throws Exception if the query fails
+     */
+    private String queryDataFingerprint(Connection connection) throws Exception {
+        String query = "SELECT COUNT(*) AS row_count, (SELECT UPDATE_TIME FROM information_schema.TABLES WHERE TABLE_SCHEMA = 'effect_nsides' AND TABLE_NAME = 'twosides') AS update_time FROM effect_nsides.twosides";
+        try (PreparedStatement stmt = connection.prepareStatement(query); ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getLong("row_count") + "@" + rs.getString("update_time");
+        }
+    }
+
+    /**
+     * Builds a membership filter from the distinct drug pairs of the twosides table
+     *
+     * @param connection an open database connection
+     * @param filtered whether to only include pairs with known, non negligible interactions
+     * @param version the data fingerprint the filter is built from
+     * @return the filled filter
+     * @throws Exception if a query fails
+     */
+    private PairBloomFilter buildPairFilter(Connection connection, boolean filtered, String version) throws Exception {
+        String where = filtered ? " WHERE " + FILTERED_CONDITION : "";
+        String pairs = "SELECT DISTINCT drug_1_concept_name, drug_2_concept_name FROM effect_nsides.twosides" + where;
+        long count;
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT COUNT(*) FROM (" + pairs + ") pairs"); ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            count = rs.getLong(1);
+        }
+        PairBloomFilter filter = new PairBloomFilter(count, PAIR_FILTER_FALSE_POSITIVE_RATE, version);
+        try (PreparedStatement stmt = connection.prepareStatement(pairs)) {
+            stmt.setFetchSize(Integer.MIN_VALUE); //stream the rows instead of buffering the whole result
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    filter.put(rs.getString(1), rs.getString(2));
+                }
+            }
+        }
+        logger.log(Level.INFO, "Pair filter with {0} pairs, {1} bits and {2} hashes", new Object[]{count, filter.getNumBits(), filter.getNumHashes()});
+        return filter;
+    }
+
+    /**
+     * Checks that the pair summary table was built from the current data and has the maintainer rebuild it otherwise
+     * The source of the table is stored in the metadata table, so a restart does not rebuild it
+     * The rebuild runs under a database lock, a server that finds the lock taken leaves the rebuild to its holder and checks again later
+     *
+     * @param connection an open database connection
+     * @param source the data version and fingerprint of the current data
+     * @return true if the summary table describes the current data
+     * @throws SQLException if the metadata or the lock cannot be queried
+     */
+    private boolean ensurePairSummaries(Connection connection, String source) throws SQLException {
+        if (source.equals(queryMetadata(connection, SUMMARY_SOURCE_KEY))) {
+            return true;
+        }
+        if (!maintainer) {
+            return false;
+        }
+        try (PreparedStatement lock = connection.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+            lock.setString(1, SUMMARY_LOCK);
+            try (ResultSet rs = lock.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    logger.info("The pair summary table is being rebuilt by another server");
+                    return false;
+                }
+            }
+        }
+        try {
+            //another server may have finished the rebuild between the check and the lock
+            if (source.equals(queryMetadata(connection, SUMMARY_SOURCE_KEY))) {
+                return true;
+            }
+            if (!rebuildPairSummaries(connection)) {
+                return false;
+            }
+            storeMetadata(connection, SUMMARY_SOURCE_KEY, source);
+            return true;
+        } finally {
+            try (PreparedStatement release = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                release.setString(1, SUMMARY_LOCK);
+                release.executeQuery().close();
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the materialized pair summary table from the twosides table
+     * The new table is filled aside and swapped in with an atomic rename, so readers never see a partial table
+     *
+     * @param connection an open database connection
+     * @return true if the summary table is usable
+     */
+    private boolean rebuildPairSummaries(Connection connection) {
+        long start = System.nanoTime();
+        String aggregate = "SELECT drug_1_concept_name, drug_2_concept_name, %d, COUNT(*), MAX(" + SEVERITY_RANK + "), MAX(severity), MAX(prr) "
+                + "FROM effect_nsides.twosides %s GROUP BY drug_1_concept_name, drug_2_concept_name";
+        String[] statements = {
+            "CREATE TABLE IF NOT EXISTS effect_nsides.twosides_pair_summary ("
+                + "drug_1_concept_name VARCHAR(255) NOT NULL, drug_2_concept_name VARCHAR(255) NOT NULL, filtered TINYINT NOT NULL, "
+                + "row_count INT NOT NULL, severity_rank TINYINT NOT NULL, max_severity DOUBLE, max_prr DOUBLE, "
+                + "PRIMARY KEY (drug_1_concept_name, drug_2_concept_name, filtered))",
+            "DROP TABLE IF EXISTS effect_nsides.twosides_pair_summary_new",
+            "CREATE TABLE effect_nsides.twosides_pair_summary_new LIKE effect_nsides.twosides_pair_summary",
+            "INSERT INTO effect_nsides.twosides_pair_summary_new " + String.format(aggregate, 0, ""),
+            "INSERT INTO effect_nsides.twosides_pair_summary_new " + String.format(aggregate, 1, "WHERE " + FILTERED_CONDITION),
+            "RENAME TABLE effect_nsides.twosides_pair_summary TO effect_nsides.twosides_pair_summary_old, "
+                + "effect_nsides.twosides_pair_summary_new TO effect_nsides.twosides_pair_summary",
+            "DROP TABLE effect_nsides.twosides_pair_summary_old"
+        };
+        try (Statement stmt = connection.createStatement()) {
+            for (String statement : statements) {
+                stmt.execute(statement);
+            }
+            logger.log(Level.INFO, "Pair summary table rebuilt in {0} ms", (System.nanoTime() - start) / 1_000_000);
+            return true;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not rebuild the pair summary table, summaries are computed from twosides", e);
+            return false;
+        }
+    }
+
+    /**
+     * Creates the metadata table holding the data version if it is missing
+     *
+     * @param connection an open database connection
+     * @return true if the table exists
+     */
+    private boolean ensureMetadataTable(Connection connection) {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + METADATA_TABLE + " (name VARCHAR(64) NOT NULL PRIMARY KEY, value VARCHAR(255) NOT NULL, "
+                    + "updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP)");
+            return true;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not create the metadata table, the data fingerprint is used as version", e);
+            return false;
+        }
+    }
+
+    /**
+     * Creates the indexes backing the pair, neighbor and condition lookups if they are missing
+     *
+     * @param connection an open database connection
+     * @return true if every index exists
+     */
+    private boolean ensureIndexes(Connection connection) {
+        String[][] indexes = {
+            {"idx_twosides_drug_1_name", "drug_1_concept_name, drug_2_concept_name"},
+            {"idx_twosides_drug_2_name", "drug_2_concept_name, drug_1_concept_name"},
+            {"idx_twosides_drug_1_id", "drug_1_rxnorm_id"},
+            {"idx_twosides_drug_2_id", "drug_2_rxnorm_id"},
+            {"idx_twosides_condition_id", "condition_meddra_id"},
+            {"idx_twosides_condition_name", "condition_name"}
+        };
+        String existing = "SELECT 1 FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = 'effect_nsides' AND TABLE_NAME = 'twosides' AND INDEX_NAME = ? LIMIT 1";
+        try (PreparedStatement check = connection.prepareStatement(existing); Statement stmt = connection.createStatement()) {
+            for (String[] index : indexes) {
+                check.setString(1, index[0]);
+                try (ResultSet rs = check.executeQuery()) {
+                    if (rs.next()) {
+                        continue;
+                    }
+                }
+                long start = System.nanoTime();
+                stmt.execute("CREATE INDEX " + index[0] + " ON effect_nsides.twosides (" + index[1] + ")");
+                logger.log(Level.INFO, "Created index {0} in {1} ms", new Object[]{index[0], (System.nanoTime() - start) / 1_000_000});
+            }
+            return true;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not create the twosides indexes", e);
+            return false;
         }
-        return results;
     }
 }
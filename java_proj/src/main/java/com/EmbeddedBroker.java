@@ -0,0 +1,114 @@
+package com;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import com.hivemq.embedded.EmbeddedHiveMQ;
+
+/**
+ * HiveMQ broker running inside this JVM, so a server needs no external broker
+ * It listens on every interface, other nodes connect to it like to any broker and speak MQTT 3 or MQTT 5
+ * Sessions and retained messages are kept in memory, the working folders are temporary and removed on stop
+ */
+public class EmbeddedBroker {
+    private static final Logger logger = Logger.getLogger(EmbeddedBroker.class.getName());
+    private static final String CONFIG_TEMPLATE = "<?xml version=\"1.0\"?>\n"
+            + "<hivemq>\n"
+            + "    <listeners>\n"
+            + "        <tcp-listener>\n"
+            + "            <port>%d</port>\n"
+            + "            <bind-address>0.0.0.0</bind-address>\n"
+            + "        </tcp-listener>\n"
+            + "    </listeners>\n"
+            + "    <mqtt>\n"
+            + "        <queued-messages>\n"
+            + "            <max-queue-size>%d</max-queue-size>\n"
+            + "        </queued-messages>\n"
+            + "    </mqtt>\n"
+            + "    <persistence>\n"
+            + "        <mode>in-memory</mode>\n"
+            + "    </persistence>\n"
+            + "    <anonymous-usage-statistics>\n"
+            + "        <enabled>false</enabled>\n"
+            + "    </anonymous-usage-statistics>\n"
+            + "</hivemq>\n";
+    /**
+     * Messages queued per client before the broker drops them, the default of 1000 loses responses when a client falls behind a burst
+     */
+    private static final int MAX_QUEUED_MESSAGES = 100000;
+    private final int port;
+    private final Path folder;
+    private final EmbeddedHiveMQ hiveMQ;
+
+    /**
+     * Starts the broker and waits until it accepts connections
+     *
+     * @param port the TCP port to listen on
+     * @throws IOException if the working folders cannot be created or the broker fails to start
+     */
+    public EmbeddedBroker(int port) throws IOException {
+        this.port = port;
+        this.folder = Files.createTempDirectory("twosides-broker");
+        Path config = Files.createDirectories(folder.resolve("conf"));
+        Files.write(config.resolve("config.xml"), String.format(CONFIG_TEMPLATE, port, MAX_QUEUED_MESSAGES).getBytes(StandardCharsets.UTF_8));
+
+        hiveMQ = EmbeddedHiveMQ.builder()
+                .withConfigurationFolder(config)
+                .withDataFolder(Files.createDirectories(folder.resolve("data")))
+                .withExtensionsFolder(Files.createDirectories(folder.resolve("extensions")))
+                .build();
+        try {
+            hiveMQ.start().join();
+        } catch (RuntimeException e) {
+            deleteFolder();
+            throw new IOException("Failed to start the embedded broker on port " + port, e);
+        }
+        logger.log(Level.INFO, "Embedded broker listening on port {0}", String.valueOf(port));
+    }
+
+    //Getters
+    public int getPort() { return port; }
+
+    /**
+     * Returns the URL clients in this JVM connect to
+     *
+     * @return the broker URL on the loopback interface
+     */
+    public String getLocalUrl() {
+        return "tcp://localhost:" + port;
+    }
+
+    /**
+     * Stops the broker, connected clients are disconnected
+     */
+    public void stop() {
+        try {
+            hiveMQ.close();
+            logger.info("Embedded broker stopped");
+        } catch (ExecutionException e) {
+            logger.log(Level.WARNING, "Failed to stop the embedded broker", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            deleteFolder();
+        }
+    }
+
+    /**
+     * Removes the temporary working folders
+     */
+    private void deleteFolder() {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Failed to remove the broker folder", e);
+        }
+    }
+}
@@ -1,14 +1,26 @@
 package com;
+
+import java.util.Arrays;
+
 /**
  * class to start JavaFX application.
  */
 public class GUIStarter {
     /**
      * temp solution to run JavaFX application without invoking Maven in the terminal
+     * --batch runs the headless BatchScreening instead of the GUI, --loadgen the LoadGenerator
      *
      * @param args the command-line arguments passed to the application
      */
     public static void main(final String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchScreening.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--loadgen")) {
+            LoadGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         AppGUI.main(args);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,356 @@
+package com;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Queryable client of the HttpQueryServer
+ * The JDK HttpClient keeps the connections alive, responses are requested gzipped and revalidated by their ETag
+ * Pairs that the server's pair filter rules out are answered locally with an empty result
+ */
+public class HttpQueryClient implements Queryable {
+    private static final Logger logger = Logger.getLogger(HttpQueryClient.class.getName());
+    private static final Duration REQUEST_TIMEOUT = Duration.ofMinutes(5);
+    private static final int ETAG_CACHE_SIZE = 512;
+    private static final long VERSION_CHECK_SECONDS = 30;
+    private final String baseUrl;
+    private final HttpClient client;
+    private final Gson gson = new Gson();
+    /**
+     * Last response per request URI with its ETag, the eldest entry is dropped once the cache is full
+     */
+    private final Map<String, String[]> etagCache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+            return size() > ETAG_CACHE_SIZE;
+        }
+    };
+    private final List<Consumer<String>> versionListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService versionChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "data-version-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile String dataVersion;
+    private boolean versionPolled;
+    private final PairFilters pairFilters = new PairFilters(params -> call("pairFilter", params));
+
+    /**
+     * Constructs a client of a server
+     *
+     * @param baseUrl the server URL, e.g. http://localhost:8080
+     */
+    public HttpQueryClient(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        logger.log(Level.INFO, "HTTP client for {0}", this.baseUrl);
+    }
+
+    public String getDataVersion() { return dataVersion; }
+
+    /**
+     * Registers a listener called with the new version when the server reports changed data
+     * The server is asked for its version every VERSION_CHECK_SECONDS once the first listener is registered
+     * The version known at the first check does not trigger the listeners
+     *
+     * @param listener the listener, called on the version check thread
+     */
+    public synchronized void addDataVersionListener(Consumer<String> listener) {
+        versionListeners.add(listener);
+        if (!versionPolled) {
+            versionPolled = true;
+            versionChecker.scheduleWithFixedDelay(this::checkDataVersion, 0, VERSION_CHECK_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Asks the server for its data version and notifies the listeners if it changed
+     */
+    private void checkDataVersion() {
+        try {
+            JsonElement version = gson.fromJson(call("dataVersion", new JsonObject()), JsonObject.class).get("version");
+            if (version == null || version.isJsonNull()) {
+                return;
+            }
+            String previous = dataVersion;
+            dataVersion = version.getAsString();
+            if (previous == null || previous.equals(dataVersion)) {
+                return;
+            }
+            logger.log(Level.INFO, "Data version changed from {0} to {1}", new Object[]{previous, dataVersion});
+            pairFilters.refresh();
+            for (Consumer<String> listener : versionListeners) {
+                listener.accept(dataVersion);
+            }
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Failed to check the data version", e);
+        }
+    }
+
+    /**
+     * Method to query the drug
+     *
+     * @param drugName name of the drug
+     * @param like boolean value
+     * @return list of strings
+     */
+    public List<String> queryDrug(String drugName, boolean like) {
+        JsonObject params = new JsonObject();
+        params.addProperty("drugName", drugName);
+        params.addProperty("like", like);
+        return gson.fromJson(call("queryDrug", params), new TypeToken<List<String>>(){}.getType());
+    }
+
+    /**
+     * Method to query the twosides
+     *
+     * @param drug1Name name of the first drug
+     * @param drug2Name name of the second drug
+     * @param filtered boolean value
+     * @return TwosidesCol object
+     */
+    public TwosidesCol queryTwosides(String drug1Name, String drug2Name, boolean filtered) {
+        if (pairFilters.excludes(drug1Name, drug2Name, filtered)) {
+            return new TwosidesCol(TwosidesCol.getMapStrId(drug1Name, drug2Name), new HashMap<>());
+        }
+        return gson.fromJson(call("queryTwosides", pairParams(drug1Name, drug2Name, filtered)), TwosidesCol.class);
+    }
+
+    /**
+     * Method to query the twosides of many pairs in one round trip
+     *
+     * @param pairs the drug pairs, each a list of two drug names
+     * @param filtered boolean value
+     * @return TwosidesCol objects in the order of the pairs, null for a pair the server failed on
+     */
+    public List<TwosidesCol> queryTwosidesBatch(List<List<String>> pairs, boolean filtered) {
+        List<TwosidesCol> results = new ArrayList<>();
+        JsonArray requests = new JsonArray();
+        for (List<String> pair : pairs) {
+            if (pairFilters.excludes(pair.get(0), pair.get(1), filtered)) {
+                results.add(new TwosidesCol(TwosidesCol.getMapStrId(pair.get(0), pair.get(1)), new HashMap<>()));
+                continue;
+            }
+            results.add(null); //filled from the response below
+            JsonObject request = new JsonObject();
+            request.addProperty("action", "queryTwosides");
+            request.add("params", pairParams(pair.get(0), pair.get(1), filtered));
+            requests.add(request);
+        }
+        if (requests.isEmpty()) {
+            return results;
+        }
+        JsonArray responses = gson.fromJson(post("batch", requests.toString()), JsonArray.class);
+        int next = 0;
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i) == null) {
+                JsonElement response = responses.get(next++);
+                results.set(i, response.isJsonObject() && response.getAsJsonObject().has("error") ? null : gson.fromJson(response, TwosidesCol.class));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Method to query the aggregates of a drug pair without its detail rows
+     *
+     * @param drug1Name name of the first drug
+     * @param drug2Name name of the second drug
+     * @param filtered boolean value
+     * @return PairSummary object
+     */
+    public PairSummary queryPairSummary(String drug1Name, String drug2Name, boolean filtered) {
+        if (pairFilters.excludes(drug1Name, drug2Name, filtered)) {
+            return new PairSummary(drug1Name, drug2Name, 0, null, 0, 0);
+        }
+        return gson.fromJson(call("queryPairSummary", pairParams(drug1Name, drug2Name, filtered)), PairSummary.class);
+    }
+
+    /**
+     * Method to query one page of the interactions of a drug pair, the most severe first
+     *
+     * @param drug1Name name of the first drug
+     * @param drug2Name name of the second drug
+     * @param filtered boolean value
+     * @param after cursor of the previous page, null for the first page
+     * @param limit maximum number of rows of the page
+     * @return TwosidesPage object
+     */
+    public TwosidesPage queryTwosidesPage(String drug1Name, String drug2Name, boolean filtered, TwosidesPage.Cursor after, int limit) {
+        if (pairFilters.excludes(drug1Name, drug2Name, filtered)) {
+            return new TwosidesPage(drug1Name, drug2Name, new ArrayList<>(), false);
+        }
+        JsonObject params = pairParams(drug1Name, drug2Name, filtered);
+        params.addProperty("limit", limit);
+        if (after != null) {
+            params.add("after", gson.toJsonTree(after));
+        }
+        return gson.fromJson(call("queryTwosidesPage", params), TwosidesPage.class);
+    }
+
+    /**
+     * Method to query every drug interacting with the given drug
+     *
+     * @param drugName name of the drug
+     * @param filtered boolean value
+     * @return list of PairSummary objects
+     */
+    public List<PairSummary> queryNeighbors(String drugName, boolean filtered) {
+        JsonObject params = new JsonObject();
+        params.addProperty("drugName", drugName);
+        params.addProperty("filtered", filtered);
+        return gson.fromJson(call("queryNeighbors", params), new TypeToken<List<PairSummary>>(){}.getType());
+    }
+
+    /**
+     * Method to query the interactions reporting a condition
+     *
+     * @param conditionName name of the condition
+     * @param drugName name of a drug the pairs must contain, null for every pair
+     * @param filtered boolean value
+     * @param limit maximum number of rows
+     * @return list of Twosides objects
+     */
+    public List<Twosides> queryByCondition(String conditionName, String drugName, boolean filtered, int limit) {
+        JsonObject params = new JsonObject();
+        params.addProperty("conditionName", conditionName);
+        if (drugName != null) {
+            params.addProperty("drugName", drugName);
+        }
+        params.addProperty("filtered", filtered);
+        params.addProperty("limit", limit);
+        return gson.fromJson(call("queryByCondition", params), new TypeToken<List<Twosides>>(){}.getType());
+    }
+
+    /**
+     * Builds the parameters shared by the pair queries
+     *
+     * @param drug1Name name of the first drug
+     * @param drug2Name name of the second drug
+     * @param filtered boolean value
+     * @return the parameters
+     */
+    private static JsonObject pairParams(String drug1Name, String drug2Name, boolean filtered) {
+        JsonObject params = new JsonObject();
+        params.addProperty("drug1Name", drug1Name);
+        params.addProperty("drug2Name", drug2Name);
+        params.addProperty("filtered", filtered);
+        return params;
+    }
+
+    /**
+     * Runs an action with a GET request, revalidating a previous response of the same request by its ETag
+     *
+     * @param action the action to be executed by the server
+     * @param params the parameters of the action
+     * @return the data of the response as JSON
+     */
+    private String call(String action, JsonObject params) {
+        String uri = baseUrl + "/api/" + action + "?params=" + URLEncoder.encode(params.toString(), StandardCharsets.UTF_8);
+        String[] cached;
+        synchronized (etagCache) {
+            cached = etagCache.get(uri);
+        }
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(uri)).GET();
+        if (cached != null) {
+            request.header("If-None-Match", cached[0]);
+        }
+        HttpResponse<byte[]> response = send(request);
+        if (response.statusCode() == 304 && cached != null) {
+            return cached[1];
+        }
+        String body = body(response);
+        String etag = response.headers().firstValue("ETag").orElse(null);
+        if (etag != null) {
+            synchronized (etagCache) {
+                etagCache.put(uri, new String[]{etag, body});
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Runs an action with a POST request
+     *
+     * @param action the action to be executed by the server
+     * @param json the request body
+     * @return the data of the response as JSON
+     */
+    private String post(String action, String json) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/" + action))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8));
+        return body(send(request));
+    }
+
+    /**
+     * Sends a request accepting a gzipped response
+     *
+     * @param request the request to send
+     * @return the response
+     */
+    private HttpResponse<byte[]> send(HttpRequest.Builder request) {
+        try {
+            return client.send(request.header("Accept-Encoding", "gzip").timeout(REQUEST_TIMEOUT).build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Restore the interrupt status
+            throw new RuntimeException("Thread was interrupted during HTTP query", e);
+        } catch (IOException e) {
+            throw new RuntimeException("HTTP exception occurred during query", e);
+        }
+    }
+
+    /**
+     * Decodes the body of a successful response
+     *
+     * @param response the response
+     * @return the body as a string
+     */
+    private static String body(HttpResponse<byte[]> response) {
+        try {
+            byte[] bytes = response.body();
+            if (response.headers().firstValue("Content-Encoding").orElse("").equals("gzip")) {
+                try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                    bytes = gzip.readAllBytes();
+                }
+            }
+            String body = new String(bytes, StandardCharsets.UTF_8);
+            if (response.statusCode() != 200) {
+                throw new RuntimeException("HTTP " + response.statusCode() + " from server: " + body);
+            }
+            return body;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to decode the response", e);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP/JSON alternative to the MQTT server, built on the JDK HttpServer
+ * GET /api/{action}?params={json} runs a single action, POST /api/batch runs a JSON array of {action, params} requests
+ * Responses carry an ETag and are gzipped for clients accepting it, connections are kept alive by the HttpServer
+ */
+public class HttpQueryServer {
+    private static final Logger logger = Logger.getLogger(HttpQueryServer.class.getName());
+    private static final String API_PATH = "/api/";
+    private static final int GZIP_MIN_BYTES = 1024;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final QueryDispatcher dispatcher;
+    private final LongAdder inFlight = new LongAdder();
+
+    /**
+     * Starts the server with a database connection
+     *
+     * @param port the port to listen on
+     * @param url the database connection URL
+     * @param user the database username
+     * @param password the database password
+     * @throws IOException if the port cannot be bound
+     */
+    public HttpQueryServer(int port, String url, String user, String password) throws IOException {
+        DatabaseQuery dbQuery = new DatabaseQuery();
+        DatabaseQuery.connectInitially(url, user, password);
+        dbQuery.maintainDerivedTables();
+        dbQuery.getPairFilter(true); //starts building the pair filters before the first request
+        this.dispatcher = new QueryDispatcher(dbQuery);
+        this.executor = newRequestExecutor();
+
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(API_PATH, this::handle);
+        server.setExecutor(executor);
+        Metrics.gauge("http.server.inFlight", inFlight::sum);
+        server.start();
+        logger.log(Level.INFO, "HTTP server listening on port {0}", port);
+    }
+
+    /**
+     * Creates the executor running the requests
+     * Virtual threads are used when the runtime has them (Java 21+), otherwise a cached platform thread pool
+     *
+     * @return the request executor
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.info("Virtual threads are not available, using a platform thread pool");
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "http-query-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Stops accepting requests and waits up to a second for the running ones
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        logger.info("HTTP server stopped");
+    }
+
+    /**
+     * Handles a request to /api/{action}
+     *
+     * @param exchange the HTTP exchange
+     * @throws IOException if the response cannot be written
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        inFlight.increment();
+        try {
+            String action = exchange.getRequestURI().getPath().substring(API_PATH.length());
+            if (!dispatcher.supports(action)) {
+                send(exchange, 404, "\"Unknown method: " + action + "\"");
+                return;
+            }
+            JsonObject params;
+            try {
+                params = readParams(exchange, action);
+            } catch (RuntimeException e) {
+                send(exchange, 400, "\"Invalid parameters\"");
+                return;
+            }
+            if (params == null) {
+                exchange.getResponseHeaders().set("Allow", action.equals("batch") ? "POST" : "GET");
+                send(exchange, 405, "\"Method not allowed\"");
+                return;
+            }
+            String response;
+            try {
+                response = dispatcher.dispatch(action, params);
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, new JsonPrimitive(e.getMessage()).toString());
+                return;
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Failed to run " + action, e);
+                send(exchange, 500, "\"Internal server error\"");
+                return;
+            }
+            //the lookups answer null when the database could not be queried, a missing pair filter is only not built yet
+            if (response.equals("null") && !action.equals("pairFilter")) {
+                send(exchange, 503, "\"The database could not be queried\"");
+                return;
+            }
+            send(exchange, 200, response);
+            long elapsed = System.nanoTime() - start;
+            Metrics.histogram("http.server.request").record(elapsed);
+            Metrics.histogram("http.server.action." + action).record(elapsed);
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Client went away before the response was sent", e);
+        } finally {
+            inFlight.decrement();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Reads the parameters of a request: the params query parameter of a GET or the request array of a batch POST
+     *
+     * @param exchange the HTTP exchange
+     * @param action the requested action
+     * @return the parameters, null if the HTTP method does not fit the action
+     * @throws IOException if the body cannot be read
+     */
+    private static JsonObject readParams(HttpExchange exchange, String action) throws IOException {
+        String method = exchange.getRequestMethod();
+        if (action.equals("batch")) {
+            if (!method.equals("POST")) {
+                return null;
+            }
+            try (InputStream body = exchange.getRequestBody()) {
+                JsonObject params = new JsonObject();
+                params.add("requests", JsonParser.parseString(new String(body.readAllBytes(), StandardCharsets.UTF_8)).getAsJsonArray());
+                return params;
+            }
+        }
+        if (!method.equals("GET")) {
+            return null;
+        }
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("params=")) {
+                    String json = URLDecoder.decode(parameter.substring("params=".length()), StandardCharsets.UTF_8);
+                    return JsonParser.parseString(json).getAsJsonObject();
+                }
+            }
+        }
+        return new JsonObject();
+    }
+
+    /**
+     * Sends a JSON response with a fixed length so the connection can be kept alive
+     * A successful response is answered with 304 if the client already holds its ETag, and gzipped if the client accepts it
+     * The ETag is weak because the gzipped and the identity encoding share it
+     *
+     * @param exchange the HTTP exchange
+     * @param status the HTTP status
+     * @param json the response body
+     * @throws IOException if the response cannot be written
+     */
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (status == 200) {
+            String etag = etag(body);
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+        }
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (body.length >= GZIP_MIN_BYTES && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Computes the weak ETag of a response body, equal for every content encoding of the body
+     *
+     * @param body the uncompressed response body
+     * @return the quoted ETag with its weak prefix
+     */
+    private static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            StringBuilder etag = new StringBuilder("W/\"");
+            for (int i = 0; i < 12; i++) {
+                etag.append(String.format("%02x", digest[i]));
+            }
+            return etag.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
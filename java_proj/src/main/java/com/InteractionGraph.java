@@ -0,0 +1,390 @@
+package com;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+
+/**
+ * Undirected drug interaction graph in compressed sparse row form
+ * Drugs are nodes, every interacting pair is an edge weighted by its highest severity and its highest PRR
+ * The neighbors of node u are colIdx[rowPtr[u]] to colIdx[rowPtr[u + 1] - 1], sorted ascending
+ */
+public class InteractionGraph {
+    private static final int PARALLEL_THRESHOLD = 256;
+    private static final ForkJoinPool pool = ForkJoinPool.commonPool();
+    private final String[] names;
+    private final Map<String, Integer> ids;
+    private final int[] rowPtr;
+    private final int[] colIdx;
+    private final float[] severity;
+    private final float[] prr;
+
+    /**
+     * Edge weight used by the graph queries
+     */
+    public enum Weight { SEVERITY, PRR }
+
+    /**
+     * Burden of a single drug within a regimen
+     */
+    public static class Burden {
+        private final String drug;
+        private final double score;
+        private final int interactingDrugs;
+
+        /**
+         * Constructs the burden of a drug
+         *
+         * @param drug the name of the drug
+         * @param score the summed weight of its edges to the other drugs of the regimen
+         * @param interactingDrugs the number of drugs of the regimen it interacts with
+         */
+        public Burden(String drug, double score, int interactingDrugs) {
+            this.drug = drug;
+            this.score = score;
+            this.interactingDrugs = interactingDrugs;
+        }
+
+        //Getters
+        public String getDrug() { return drug; }
+        public double getScore() { return score; }
+        public int getInteractingDrugs() { return interactingDrugs; }
+    }
+
+    /**
+     * Constructs the graph from its CSR arrays, use a Builder to create one
+     *
+     * @param names the drug name of every node
+     * @param rowPtr the offset of the first edge of every node, followed by the edge count
+     * @param colIdx the target node of every edge
+     * @param severity the highest severity of every edge
+     * @param prr the highest PRR of every edge
+     */
+    private InteractionGraph(String[] names, int[] rowPtr, int[] colIdx, float[] severity, float[] prr) {
+        this.names = names;
+        this.rowPtr = rowPtr;
+        this.colIdx = colIdx;
+        this.severity = severity;
+        this.prr = prr;
+        this.ids = new HashMap<>(names.length * 4 / 3 + 1);
+        for (int i = 0; i < names.length; i++) {
+            ids.put(normalize(names[i]), i);
+        }
+    }
+
+    /**
+     * Normalizes a drug name the way the case insensitive database collation compares it
+     *
+     * @param name the drug name
+     * @return the normalized name
+     */
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public int nodeCount() { return names.length; }
+    public int edgeCount() { return colIdx.length / 2; }
+
+    /**
+     * Returns the node id of a drug
+     *
+     * @param drug the name of the drug
+     * @return the node id, or -1 if the drug has no interactions
+     */
+    public int idOf(String drug) {
+        Integer id = ids.get(normalize(drug));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the weight of an edge given its position in colIdx
+     *
+     * @param edge the edge position
+     * @param weight the weight to read
+     * @return the edge weight
+     */
+    private float weightAt(int edge, Weight weight) {
+        return weight == Weight.SEVERITY ? severity[edge] : prr[edge];
+    }
+
+    /**
+     * Finds the edge between two nodes by binary search in the sorted row of the first one
+     *
+     * @param u the first node
+     * @param v the second node
+     * @return the edge position, or a negative value if the drugs do not interact
+     */
+    private int findEdge(int u, int v) {
+        return Arrays.binarySearch(colIdx, rowPtr[u], rowPtr[u + 1], v);
+    }
+
+    /**
+     * Returns the direct neighbors of a drug with their edge weights, the heaviest first
+     *
+     * @param drug the name of the drug
+     * @param weight the edge weight to report
+     * @return an insertion ordered map from neighbor name to edge weight
+     */
+    public Map<String, Float> neighbors(String drug, Weight weight) {
+        Map<String, Float> neighbors = new LinkedHashMap<>();
+        int u = idOf(drug);
+        if (u < 0) {
+            return neighbors;
+        }
+        Integer[] edges = new Integer[rowPtr[u + 1] - rowPtr[u]];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = rowPtr[u] + i;
+        }
+        Arrays.sort(edges, (a, b) -> Float.compare(weightAt(b, weight), weightAt(a, weight)));
+        for (int edge : edges) {
+            neighbors.put(names[colIdx[edge]], weightAt(edge, weight));
+        }
+        return neighbors;
+    }
+
+    /**
+     * Returns every drug reachable within k interaction hops, computed level by level
+     * Each frontier is expanded in parallel; a node is claimed by the first task that reaches it
+     *
+     * @param drug the name of the start drug
+     * @param k the maximum number of hops
+     * @return an insertion ordered map from drug name to its hop distance, the start drug excluded
+     */
+    public Map<String, Integer> kHop(String drug, int k) {
+        Map<String, Integer> reached = new LinkedHashMap<>();
+        int start = idOf(drug);
+        if (start < 0) {
+            return reached;
+        }
+        AtomicIntegerArray distance = new AtomicIntegerArray(names.length);
+        for (int i = 0; i < names.length; i++) {
+            distance.set(i, -1);
+        }
+        distance.set(start, 0);
+        int[] frontier = {start};
+        for (int hop = 1; hop <= k && frontier.length > 0; hop++) {
+            int level = hop;
+            int[] current = frontier;
+            int[][] discovered = new int[current.length][];
+            forEachParallel(current.length, i -> {
+                int u = current[i];
+                int[] found = new int[rowPtr[u + 1] - rowPtr[u]];
+                int count = 0;
+                for (int edge = rowPtr[u]; edge < rowPtr[u + 1]; edge++) {
+                    if (distance.compareAndSet(colIdx[edge], -1, level)) {
+                        found[count++] = colIdx[edge];
+                    }
+                }
+                discovered[i] = Arrays.copyOf(found, count);
+            });
+            frontier = Arrays.stream(discovered).flatMapToInt(Arrays::stream).toArray();
+            for (int v : frontier) {
+                reached.put(names[v], level);
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Computes the interaction burden of every drug of a regimen: the summed weight of its edges to the other regimen drugs
+     * The drugs are scored in parallel, drugs without any interaction get a score of 0
+     *
+     * @param regimen the names of the drugs of the regimen
+     * @param weight the edge weight to sum
+     * @return the burdens of the drugs, the riskiest first
+     */
+    public List<Burden> regimenBurden(Collection<String> regimen, Weight weight) {
+        String[] drugs = regimen.toArray(new String[0]);
+        int[] nodes = new int[drugs.length];
+        for (int i = 0; i < drugs.length; i++) {
+            nodes[i] = idOf(drugs[i]);
+        }
+        Burden[] burdens = new Burden[drugs.length];
+        forEachParallel(drugs.length, i -> {
+            double score = 0;
+            int interacting = 0;
+            for (int j = 0; j < nodes.length; j++) {
+                if (i != j && nodes[i] >= 0 && nodes[j] >= 0) {
+                    int edge = findEdge(nodes[i], nodes[j]);
+                    if (edge >= 0) {
+                        score += weightAt(edge, weight);
+                        interacting++;
+                    }
+                }
+            }
+            burdens[i] = new Burden(drugs[i], score, interacting);
+        });
+        List<Burden> ranked = new ArrayList<>(Arrays.asList(burdens));
+        ranked.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+        return ranked;
+    }
+
+    /**
+     * Returns the drug of a regimen contributing the most interaction burden
+     *
+     * @param regimen the names of the drugs of the regimen
+     * @param weight the edge weight to sum
+     * @return the riskiest drug, or null for an empty regimen
+     */
+    public Burden riskiestDrug(Collection<String> regimen, Weight weight) {
+        List<Burden> ranked = regimenBurden(regimen, weight);
+        return ranked.isEmpty() ? null : ranked.get(0);
+    }
+
+    /**
+     * Runs an action for every index of a range, split into fork/join tasks for large ranges
+     *
+     * @param size the size of the range
+     * @param action the action receiving each index
+     */
+    private static void forEachParallel(int size, IntConsumer action) {
+        if (size < PARALLEL_THRESHOLD) {
+            for (int i = 0; i < size; i++) {
+                action.accept(i);
+            }
+        } else {
+            pool.invoke(new RangeTask(0, size, action));
+        }
+    }
+
+    /**
+     * Fork/join task applying an action to a range of indexes, halving the range until it is small enough
+     */
+    private static class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        /**
+         * Constructs a task for the indexes from inclusive to exclusive
+         *
+         * @param from the first index
+         * @param to the index after the last one
+         * @param action the action receiving each index
+         */
+        RangeTask(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        /**
+         * Runs the action directly on a small range, otherwise splits the range in two subtasks
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    action.accept(i);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, middle, action), new RangeTask(middle, to, action));
+        }
+    }
+
+    /**
+     * Collects the interacting pairs and builds the CSR arrays
+     * A pair added more than once, e.g. in both drug orders, keeps its highest weights
+     */
+    public static class Builder {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final Map<Long, float[]> edges = new HashMap<>();
+
+        /**
+         * Adds an interacting pair
+         *
+         * @param drug1 the name of the first drug
+         * @param drug2 the name of the second drug
+         * @param maxSeverity the highest severity of the pair
+         * @param maxPrr the highest PRR of the pair
+         * @return this builder
+         */
+        public Builder addEdge(String drug1, String drug2, double maxSeverity, double maxPrr) {
+            int u = node(drug1);
+            int v = node(drug2);
+            if (u == v) {
+                return this;
+            }
+            long key = ((long) Math.min(u, v) << 32) | Math.max(u, v);
+            float[] weights = edges.computeIfAbsent(key, k -> new float[2]);
+            weights[0] = Math.max(weights[0], (float) maxSeverity);
+            weights[1] = Math.max(weights[1], (float) maxPrr);
+            return this;
+        }
+
+        /**
+         * Adds the pair of a summary if it has any interaction
+         *
+         * @param summary the pair summary
+         * @return this builder
+         */
+        public Builder addSummary(PairSummary summary) {
+            if (summary != null && summary.getRowCount() > 0) {
+                addEdge(summary.getDrug1(), summary.getDrug2(), summary.getMaxSeverity(), summary.getMaxPrr());
+            }
+            return this;
+        }
+
+        /**
+         * Returns the node id of a drug, registering it on first use
+         *
+         * @param drug the name of the drug
+         * @return the node id
+         */
+        private int node(String drug) {
+            return ids.computeIfAbsent(normalize(drug), k -> {
+                names.add(drug);
+                return names.size() - 1;
+            });
+        }
+
+        /**
+         * Builds the graph: counts the degrees, turns them into row offsets and scatters both directions of every edge
+         *
+         * @return the interaction graph
+         */
+        public InteractionGraph build() {
+            int n = names.size();
+            int[] rowPtr = new int[n + 1];
+            for (long key : edges.keySet()) {
+                rowPtr[(int) (key >>> 32) + 1]++;
+                rowPtr[(int) key + 1]++;
+            }
+            for (int i = 0; i < n; i++) {
+                rowPtr[i + 1] += rowPtr[i];
+            }
+            int[] colIdx = new int[rowPtr[n]];
+            float[] severity = new float[rowPtr[n]];
+            float[] prr = new float[rowPtr[n]];
+            int[] next = Arrays.copyOf(rowPtr, n);
+            //with the keys sorted, the smaller neighbors of every row are scattered first, then the larger ones, both ascending
+            long[] keys = edges.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            for (int pass = 0; pass < 2; pass++) {
+                for (long key : keys) {
+                    float[] weights = edges.get(key);
+                    int low = (int) (key >>> 32);
+                    int high = (int) key;
+                    int row = pass == 0 ? high : low;
+                    int e = next[row]++;
+                    colIdx[e] = pass == 0 ? low : high;
+                    severity[e] = weights[0];
+                    prr[e] = weights[1];
+                }
+            }
+            return new InteractionGraph(names.toArray(new String[0]), rowPtr, colIdx, severity, prr);
+        }
+    }
+}
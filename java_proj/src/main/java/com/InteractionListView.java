@@ -0,0 +1,225 @@
+package com;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javafx.application.Platform;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.Tooltip;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+import javafx.scene.text.TextFlow;
+import javafx.util.Duration;
+
+/**
+ * Virtualized list of drug interactions used for large result sets, one header row per interacting drug pair followed by its interaction rows
+ * Only the cells of the visible rows are created; they are reused while scrolling
+ */
+public class InteractionListView extends ListView<InteractionRow> {
+    private final Map<String, Integer> sectionIndex = new HashMap<>();
+    private final Function<String, String> wikiInfo;
+    private final Runnable onHeaderClick;
+    private final Consumer<String> onLoadMore;
+
+    /**
+     * Constructs an empty list, drug pair sections are appended with addSection
+     *
+     * @param wikiInfo function returning the Wikipedia description of a condition
+     * @param onHeaderClick action performed when a section header is clicked
+     * @param onLoadMore action receiving the pair key when the load more row of a section is clicked
+     */
+    public InteractionListView(Function<String, String> wikiInfo, Runnable onHeaderClick, Consumer<String> onLoadMore) {
+        this.wikiInfo = wikiInfo;
+        this.onHeaderClick = onHeaderClick;
+        this.onLoadMore = onLoadMore;
+        setCellFactory(listView -> new InteractionCell());
+        getStyleClass().add("interaction-list");
+    }
+
+    /**
+     * Appends a drug pair section to the list, pairs without interactions are skipped
+     *
+     * @param key the mapped interaction key
+     * @param interactions the Twosides records of the pair
+     * @param loadMoreText the text of the load more row closing the section, null if all rows are loaded
+     */
+    public void addSection(String key, Map<String, Twosides> interactions, String loadMoreText) {
+        if (interactions.isEmpty()) {
+            return;
+        }
+        List<String> drugs = TwosidesCol.getUnmapedStrId(key);
+        List<InteractionRow> rows = new ArrayList<>(interactions.size() + 1);
+        rows.add(InteractionRow.header(key, AppGUI.capitalizeEveryFirstLetter(drugs.get(0)), AppGUI.capitalizeEveryFirstLetter(drugs.get(1))));
+        for (Twosides twosides : interactions.values()) {
+            rows.add(InteractionRow.detail(key, twosides));
+        }
+        if (loadMoreText != null) {
+            rows.add(InteractionRow.loadMore(key, loadMoreText));
+        }
+        sectionIndex.put(key, getItems().size());
+        getItems().addAll(rows);
+    }
+
+    /**
+     * Removes a drug pair section and its rows from the list
+     *
+     * @param key the mapped interaction key
+     */
+    public void removeSection(String key) {
+        Integer start = sectionIndex.remove(key);
+        if (start == null) {
+            return;
+        }
+        int end = start + 1;
+        while (end < getItems().size() && !getItems().get(end).isHeader()) {
+            end++;
+        }
+        int removed = end - start;
+        getItems().remove(start, end);
+        for (Map.Entry<String, Integer> entry : sectionIndex.entrySet()) {
+            if (entry.getValue() > start) {
+                entry.setValue(entry.getValue() - removed);
+            }
+        }
+    }
+
+    /**
+     * Scrolls the list to the header of the given drug pair section
+     *
+     * @param sectionId the mapped interaction key of the section
+     * @return true if the section exists in the list, false otherwise
+     */
+    public boolean scrollToSection(String sectionId) {
+        Integer index = sectionIndex.get(sectionId);
+        if (index == null) {
+            return false;
+        }
+        scrollTo(index);
+        return true;
+    }
+
+    /**
+     * List cell rendering either a section header or an interaction row
+     * The nodes are built once per cell and only their content is updated on reuse
+     */
+    private class InteractionCell extends ListCell<InteractionRow> {
+        private final HBox header = new HBox(5);
+        private final Label drug1Label = new Label();
+        private final Label drug2Label = new Label();
+        private final GridPane detail = new GridPane();
+        private final Label symptomLabel = new Label();
+        private final Label severityLabel = new Label();
+        private final TextFlow description = new TextFlow();
+        private final Text[] descriptionParts = new Text[8];
+        private final Tooltip tooltip = new Tooltip();
+        private final Button loadMoreButton = new Button();
+
+        /**
+         * Builds the reusable header and detail nodes of the cell
+         */
+        InteractionCell() {
+            //header nodes
+            ImageView arrowIcon = new ImageView(ResourceCache.image("icons/repeat.png"));
+            arrowIcon.setFitWidth(20);
+            arrowIcon.setFitHeight(20);
+            header.getChildren().addAll(drug1Label, arrowIcon, drug2Label);
+            header.setAlignment(Pos.CENTER);
+            header.getStyleClass().addAll("pair-content", "pair-frame");
+            header.setOnMouseClicked(event -> onHeaderClick.run());
+
+            //detail nodes
+            symptomLabel.getStyleClass().add("symptom-label");
+            severityLabel.getStyleClass().add("severity-label");
+            for (int i = 0; i < descriptionParts.length; i++) {
+                descriptionParts[i] = new Text();
+                descriptionParts[i].getStyleClass().add(i % 2 == 0 ? "description-text" : "description-value");
+            }
+            description.getChildren().addAll(descriptionParts);
+            description.setTextAlignment(TextAlignment.JUSTIFY);
+            description.setMaxWidth(350);
+            description.setPrefWidth(350);
+            description.getStyleClass().add("description");
+            detail.setHgap(20);
+            detail.setAlignment(Pos.CENTER);
+            detail.add(symptomLabel, 0, 0);
+            detail.add(severityLabel, 1, 0);
+            detail.add(description, 2, 0);
+
+            //load more node
+            loadMoreButton.getStyleClass().add("load-more-button");
+            loadMoreButton.setOnAction(event -> {
+                InteractionRow row = getItem();
+                if (row != null && row.isLoadMore()) {
+                    onLoadMore.accept(row.getPairKey());
+                }
+            });
+
+            //wiki tooltip, loaded when shown for the condition of the current item
+            tooltip.setShowDelay(Duration.millis(200));
+            tooltip.setMaxWidth(400);
+            tooltip.setWrapText(true);
+            tooltip.getStyleClass().add("info-tooltip");
+            tooltip.setTextAlignment(TextAlignment.JUSTIFY);
+            tooltip.setOnShowing(event -> {
+                InteractionRow row = getItem();
+                if (row == null || row.getTwosides() == null) {
+                    return;
+                }
+                String conditionName = row.getTwosides().getConditionName();
+                tooltip.setText("Loading condition description...");
+                new Thread(() -> {
+                    String info = wikiInfo.apply(conditionName);
+                    Platform.runLater(() -> {
+                        if (getItem() == row) {
+                            tooltip.setText(info);
+                        }
+                    });
+                }).start();
+            });
+            symptomLabel.setTooltip(tooltip);
+        }
+
+        /**
+         * Updates the cell content for the given row
+         *
+         * @param row the row to display
+         * @param empty whether the cell is empty
+         */
+        @Override
+        protected void updateItem(InteractionRow row, boolean empty) {
+            super.updateItem(row, empty);
+            setText(null);
+            if (empty || row == null) {
+                setGraphic(null);
+            } else if (row.isHeader()) {
+                drug1Label.setText(row.getDrug1());
+                drug2Label.setText(row.getDrug2());
+                setGraphic(header);
+            } else if (row.isLoadMore()) {
+                loadMoreButton.setText(row.getLoadMoreText());
+                setGraphic(loadMoreButton);
+            } else {
+                Twosides twosides = row.getTwosides();
+                symptomLabel.setText(twosides.getConditionName());
+                severityLabel.setText(twosides.getSeverityClass());
+                ResourceCache.applySeverity(severityLabel, twosides.getSeverityClass());
+                String[] parts = InteractionWindow.descriptionParts(twosides);
+                for (int i = 0; i < parts.length; i++) {
+                    descriptionParts[i].setText(parts[i]);
+                }
+                setGraphic(detail);
+            }
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package com;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Streaming results model of an interaction check
+ * Pairs are registered up front as pending and filled in one by one as their lookups complete
+ * The model is not thread safe, all mutations and listener callbacks happen on the callback executor (the JavaFX thread in the GUI)
+ */
+public class InteractionResults {
+    private static final Logger logger = Logger.getLogger(InteractionResults.class.getName());
+    static final int DETAIL_PAGE_SIZE = 25;
+    private final Map<String, PairResult> pairs = new LinkedHashMap<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private long startNanos = System.nanoTime();
+    private long lastCompletionMillis;
+    private int inFlight;
+    private int lookupCount;
+    private int completedCount;
+    /**
+     * Incremented when the underlying data changes, lookups started in an older generation are dropped when they complete
+     */
+    private int generation;
+
+    /**
+     * Receives the changes of an InteractionResults model
+     */
+    public interface Listener {
+        /**
+         * Called when a pending pair is added to the results
+         *
+         * @param pair the added pair
+         */
+        void pairAdded(PairResult pair);
+
+        /**
+         * Called when a pair has been loaded or failed
+         *
+         * @param pair the updated pair
+         */
+        void pairUpdated(PairResult pair);
+
+        /**
+         * Called when a pair has been removed from the results
+         *
+         * @param pair the removed pair
+         */
+        void pairRemoved(PairResult pair);
+    }
+
+    /**
+     * Creates a completed results model from an already queried collection
+     *
+     * @param twosidesCol the collection of drug interactions
+     * @return the results with every pair loaded
+     */
+    public static InteractionResults of(TwosidesCol twosidescol) {
+        InteractionResults results = new InteractionResults();
+        for (Map.Entry<String, Map<String, Twosides>> entry : twosidescol.getCol().entrySet()) {
+            List<String> drugs = TwosidesCol.getUnmapedStrId(entry.getKey());
+            results.addPair(drugs.get(0), drugs.get(1));
+            results.complete(TwosidesCol.getMapStrId(drugs.get(0), drugs.get(1)), entry.getValue(), 0);
+        }
+        return results;
+    }
+
+    public void addListener(Listener listener) { listeners.add(listener); }
+    public void removeListener(Listener listener) { listeners.remove(listener); }
+
+    /**
+     * Adds a pending drug pair, pairs that are already present are returned unchanged
+     *
+     * @param drug1 the name of the first drug
+     * @param drug2 the name of the second drug
+     * @return the pair result
+     */
+    public PairResult addPair(String drug1, String drug2) {
+        String key = TwosidesCol.getMapStrId(drug1, drug2);
+        PairResult existing = pairs.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        PairResult pair = new PairResult(drug1, drug2);
+        pairs.put(key, pair);
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.pairAdded(pair);
+        }
+        return pair;
+    }
+
+    /**
+     * Removes a pair from the results and notifies the listeners
+     * A lookup still in flight for the pair is ignored when it completes
+     *
+     * @param key the mapped interaction key
+     * @return the removed pair, or null if the key is unknown
+     */
+    public PairResult removePair(String key) {
+        PairResult pair = pairs.remove(key);
+        if (pair == null) {
+            return null;
+        }
+        if (pair.getStatus() != PairResult.Status.PENDING) {
+            completedCount--;
+        }
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.pairRemoved(pair);
+        }
+        return pair;
+    }
+
+    /**
+     * Puts every failed pair back to pending so the next fetch retries it
+     */
+    public void retryFailed() {
+        for (PairResult pair : pairs.values()) {
+            if (pair.getStatus() == PairResult.Status.FAILED) {
+                pair.reset();
+                completedCount--;
+                for (Listener listener : new ArrayList<>(listeners)) {
+                    listener.pairUpdated(pair);
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts every pair back to pending so the next fetch queries it again, used when the underlying data changed
+     * Lookups still in flight belong to the old data, their results are dropped when they arrive
+     */
+    public void invalidateAll() {
+        generation++;
+        completedCount = 0;
+        for (PairResult pair : pairs.values()) {
+            pair.reset();
+            for (Listener listener : new ArrayList<>(listeners)) {
+                listener.pairUpdated(pair);
+            }
+        }
+    }
+
+    /**
+     * Marks a pair as loaded and notifies the listeners
+     *
+     * @param key the mapped interaction key
+     * @param interactions the Twosides records of the pair
+     * @param elapsedMillis time spent on the lookup in milliseconds
+     */
+    public void complete(String key, Map<String, Twosides> interactions, long elapsedMillis) {
+        PairResult pair = pairs.get(key);
+        if (pair == null) {
+            return;
+        }
+        countCompletion(pair);
+        pair.loaded(interactions, elapsedMillis);
+        pairUpdated(pair);
+    }
+
+    /**
+     * Marks a pair as loaded with its aggregates only and notifies the listeners
+     *
+     * @param key the mapped interaction key
+     * @param summary the aggregates of the pair
+     * @param elapsedMillis time spent on the lookup in milliseconds
+     */
+    public void summarize(String key, PairSummary summary, long elapsedMillis) {
+        PairResult pair = pairs.get(key);
+        if (pair == null) {
+            return;
+        }
+        countCompletion(pair);
+        pair.summarized(summary, elapsedMillis);
+        pairUpdated(pair);
+    }
+
+    /**
+     * Marks a pair as failed and notifies the listeners
+     *
+     * @param key the mapped interaction key
+     * @param error the error message
+     * @param elapsedMillis time spent on the lookup in milliseconds
+     */
+    public void fail(String key, String error, long elapsedMillis) {
+        PairResult pair = pairs.get(key);
+        if (pair == null) {
+            return;
+        }
+        countCompletion(pair);
+        pair.failed(error, elapsedMillis);
+        pairUpdated(pair);
+    }
+
+    /**
+     * Counts a pair as completed unless it already was, called before its status changes
+     *
+     * @param pair the pair about to be loaded or failed
+     */
+    private void countCompletion(PairResult pair) {
+        if (pair.getStatus() == PairResult.Status.PENDING) {
+            completedCount++;
+        }
+    }
+
+    /**
+     * Records the completion time and notifies the listeners of an updated pair
+     *
+     * @param pair the updated pair
+     */
+    private void pairUpdated(PairResult pair) {
+        lastCompletionMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.pairUpdated(pair);
+        }
+    }
+
+    /**
+     * Queries every pending pair that was not requested yet on the given executor
+     * Each result is handed back through the callback executor as soon as it arrives
+     *
+     * @param source the backend used for the lookups
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @param summariesFirst whether to only query the pair summaries and leave the detail rows to fetchDetails
+     * @param executor the executor running the lookups
+     * @param callbackExecutor the executor applying the results to this model
+     */
+    public void fetchPending(Queryable source, boolean filtered, boolean summariesFirst, ExecutorService executor, Executor callbackExecutor) {
+        for (PairResult pair : pairs.values()) {
+            if (pair.getStatus() == PairResult.Status.PENDING && !pair.isRequested()) {
+                //timing restarts with every new batch of lookups
+                if (inFlight == 0) {
+                    startNanos = System.nanoTime();
+                }
+                pair.setRequested(true);
+                inFlight++;
+                lookupCount++;
+                int current = generation;
+                if (summariesFirst) {
+                    executor.submit(() -> fetchSummary(pair, current, source, filtered, callbackExecutor));
+                } else {
+                    executor.submit(() -> fetch(pair, current, source, filtered, callbackExecutor));
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up a single pair and posts the result to the callback executor
+     *
+     * @param pair the pair to look up
+     * @param generation the generation the lookup was started in
+     * @param source the backend used for the lookup
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @param callbackExecutor the executor applying the result to this model
+     */
+    private void fetch(PairResult pair, int generation, Queryable source, boolean filtered, Executor callbackExecutor) {
+        long start = System.nanoTime();
+        try {
+            TwosidesCol twosidesCol = source.queryTwosides(pair.getDrug1(), pair.getDrug2(), filtered);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            if (twosidesCol == null || twosidesCol.getCol().isEmpty()) {
+                callbackExecutor.execute(() -> fetched(pair, generation, null, "No result returned by the backend", elapsed));
+            } else {
+                Map<String, Twosides> interactions = twosidesCol.getCol().values().iterator().next();
+                callbackExecutor.execute(() -> fetched(pair, generation, interactions, null, elapsed));
+            }
+        } catch (Exception e) {
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            logger.log(Level.SEVERE, "An error occurred while querying " + pair.getKey(), e);
+            callbackExecutor.execute(() -> fetched(pair, generation, null, e.getMessage(), elapsed));
+        }
+    }
+
+    /**
+     * Looks up the aggregates of a single pair and posts the result to the callback executor
+     *
+     * @param pair the pair to look up
+     * @param generation the generation the lookup was started in
+     * @param source the backend used for the lookup
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @param callbackExecutor the executor applying the result to this model
+     */
+    private void fetchSummary(PairResult pair, int generation, Queryable source, boolean filtered, Executor callbackExecutor) {
+        long start = System.nanoTime();
+        try {
+            PairSummary summary = source.queryPairSummary(pair.getDrug1(), pair.getDrug2(), filtered);
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            callbackExecutor.execute(() -> {
+                inFlight--;
+                if (!isCurrent(pair, generation)) {
+                    return;
+                }
+                if (summary == null) {
+                    fail(pair.getKey(), "No result returned by the backend", elapsed);
+                } else {
+                    summarize(pair.getKey(), summary, elapsed);
+                }
+            });
+        } catch (Exception e) {
+            long elapsed = (System.nanoTime() - start) / 1_000_000;
+            logger.log(Level.SEVERE, "An error occurred while querying the summary of " + pair.getKey(), e);
+            callbackExecutor.execute(() -> fetched(pair, generation, null, e.getMessage(), elapsed));
+        }
+    }
+
+    /**
+     * Queries the next page of detail rows of a pair that was loaded with its summary only
+     * The first call fetches the most severe rows, later calls continue after the last fetched row
+     * Pairs without further rows or whose rows are being fetched are ignored
+     *
+     * @param pair the summarized pair
+     * @param source the backend used for the lookup
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @param executor the executor running the lookup
+     * @param callbackExecutor the executor applying the result to this model
+     */
+    public void fetchDetails(PairResult pair, Queryable source, boolean filtered, ExecutorService executor, Executor callbackExecutor) {
+        boolean morePending = !pair.hasDetails() || pair.hasMoreRows();
+        if (pair.getStatus() != PairResult.Status.LOADED || !morePending || pair.isDetailsRequested()) {
+            return;
+        }
+        TwosidesPage.Cursor after = pair.hasDetails() ? pair.getNextCursor() : null;
+        pair.setDetailsRequested(true);
+        lookupCount++;
+        int current = generation;
+        executor.submit(() -> {
+            long start = System.nanoTime();
+            try {
+                TwosidesPage page = source.queryTwosidesPage(pair.getDrug1(), pair.getDrug2(), filtered, after, DETAIL_PAGE_SIZE);
+                long elapsed = (System.nanoTime() - start) / 1_000_000;
+                callbackExecutor.execute(() -> detailsFetched(pair, current, page, elapsed));
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "An error occurred while querying the details of " + pair.getKey(), e);
+                callbackExecutor.execute(() -> detailsFetched(pair, current, null, 0));
+            }
+        });
+    }
+
+    /**
+     * Applies a fetched page of detail rows unless the pair was removed or the data changed in the meantime
+     * A failed detail lookup keeps the summary so it can be requested again
+     *
+     * @param pair the summarized pair
+     * @param generation the generation the lookup was started in
+     * @param page the page of interactions, or null if the lookup failed
+     * @param elapsedMillis time spent on the lookup in milliseconds
+     */
+    private void detailsFetched(PairResult pair, int generation, TwosidesPage page, long elapsedMillis) {
+        if (!isCurrent(pair, generation)) {
+            return;
+        }
+        if (page == null) {
+            pair.setDetailsRequested(false);
+        } else {
+            pair.pageLoaded(page, elapsedMillis);
+        }
+        pairUpdated(pair);
+    }
+
+    /**
+     * Applies a finished lookup unless its pair was removed or the data changed in the meantime
+     *
+     * @param pair the looked up pair
+     * @param generation the generation the lookup was started in
+     * @param interactions the Twosides records, or null if the lookup failed
+     * @param error the error message of a failed lookup
+     * @param elapsedMillis time spent on the lookup in milliseconds
+     */
+    private void fetched(PairResult pair, int generation, Map<String, Twosides> interactions, String error, long elapsedMillis) {
+        inFlight--;
+        if (!isCurrent(pair, generation)) {
+            return;
+        }
+        if (interactions != null) {
+            complete(pair.getKey(), interactions, elapsedMillis);
+        } else {
+            fail(pair.getKey(), error, elapsedMillis);
+        }
+    }
+
+    /**
+     * Checks whether a completed lookup still applies to this model
+     *
+     * @param pair the looked up pair
+     * @param generation the generation the lookup was started in
+     * @return true if the pair is still part of the results and the data did not change since the lookup started
+     */
+    private boolean isCurrent(PairResult pair, int generation) {
+        return pairs.get(pair.getKey()) == pair && generation == this.generation;
+    }
+
+    public Collection<PairResult> getPairs() { return pairs.values(); }
+    public PairResult getPair(String key) { return pairs.get(key); }
+    public int size() { return pairs.size(); }
+    public long getLastCompletionMillis() { return lastCompletionMillis; }
+    public int getLookupCount() { return lookupCount; }
+    /**
+     * Number of loaded or failed pairs, kept up to date on every status change
+     */
+    public int getCompletedCount() { return completedCount; }
+
+    /**
+     * Returns every drug taking part in a pair, in the order the pairs were added
+     *
+     * @return the distinct drug names
+     */
+    public Set<String> getDrugs() {
+        Set<String> drugs = new LinkedHashSet<>();
+        for (PairResult pair : pairs.values()) {
+            drugs.add(pair.getDrug1());
+            drugs.add(pair.getDrug2());
+        }
+        return drugs;
+    }
+
+    /**
+     * Builds the interaction graph of the loaded pairs from their summaries
+     *
+     * @return the graph of the regimen
+     */
+    public InteractionGraph toInteractionGraph() {
+        InteractionGraph.Builder builder = new InteractionGraph.Builder();
+        for (PairResult pair : pairs.values()) {
+            if (pair.getStatus() == PairResult.Status.LOADED) {
+                builder.addSummary(pair.getSummary());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Collects the loaded pairs into a TwosidesCol
+     *
+     * @return a TwosidesCol containing every pair loaded with its detail rows
+     */
+    public TwosidesCol toTwosidesCol() {
+        TwosidesCol twosidesCol = new TwosidesCol();
+        for (PairResult pair : pairs.values()) {
+            if (pair.getStatus() == PairResult.Status.LOADED && pair.hasDetails()) {
+                twosidesCol.addTwosides(pair.getKey(), pair.getInteractions());
+            }
+        }
+        return twosidesCol;
+    }
+}
@@ -0,0 +1,85 @@
+package com;
+
+/**
+ * Represents a single row of the virtualized interaction list: the header of a drug pair section, one of its Twosides records
+ * or the "load more" row closing a section whose remaining rows have not been fetched yet
+ */
+public class InteractionRow {
+    private final String pairKey;
+    private final String drug1;
+    private final String drug2;
+    private final Twosides twosides;
+    private final String loadMoreText;
+
+    /**
+     * Constructs an interaction row
+     *
+     * @param pairKey the mapped interaction key of the drug pair
+     * @param drug1 the display name of the first drug
+     * @param drug2 the display name of the second drug
+     * @param twosides the interaction record, or null for a section header or load more row
+     * @param loadMoreText the text of a load more row, null for the other rows
+     */
+    private InteractionRow(String pairKey, String drug1, String drug2, Twosides twosides, String loadMoreText) {
+        this.pairKey = pairKey;
+        this.drug1 = drug1;
+        this.drug2 = drug2;
+        this.twosides = twosides;
+        this.loadMoreText = loadMoreText;
+    }
+
+    /**
+     * Creates the header row of a drug pair section
+     *
+     * @param pairKey the mapped interaction key of the drug pair
+     * @param drug1 the display name of the first drug
+     * @param drug2 the display name of the second drug
+     * @return the header row
+     */
+    public static InteractionRow header(String pairKey, String drug1, String drug2) {
+        return new InteractionRow(pairKey, drug1, drug2, null, null);
+    }
+
+    /**
+     * Creates a detail row for one Twosides record of a drug pair section
+     *
+     * @param pairKey the mapped interaction key of the drug pair
+     * @param twosides the interaction record
+     * @return the detail row
+     */
+    public static InteractionRow detail(String pairKey, Twosides twosides) {
+        return new InteractionRow(pairKey, twosides.getDrug1ConceptName(), twosides.getDrug2ConceptName(), twosides, null);
+    }
+
+    /**
+     * Creates the load more row closing a drug pair section
+     *
+     * @param pairKey the mapped interaction key of the drug pair
+     * @param text the text of the load more button
+     * @return the load more row
+     */
+    public static InteractionRow loadMore(String pairKey, String text) {
+        return new InteractionRow(pairKey, null, null, null, text);
+    }
+
+    //Getters
+    public String getPairKey() { return pairKey; }
+    public String getDrug1() { return drug1; }
+    public String getDrug2() { return drug2; }
+    public Twosides getTwosides() { return twosides; }
+    public String getLoadMoreText() { return loadMoreText; }
+
+    /**
+     * Checks whether this row is a section header
+     *
+     * @return true for a header row, false for a detail or load more row
+     */
+    public boolean isHeader() { return twosides == null && loadMoreText == null; }
+
+    /**
+     * Checks whether this row is a load more row
+     *
+     * @return true for a load more row
+     */
+    public boolean isLoadMore() { return loadMoreText != null; }
+}
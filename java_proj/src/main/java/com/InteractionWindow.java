@@ -0,0 +1,1002 @@
+package com;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.geometry.Bounds;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.ProgressIndicator;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.Separator;
+import javafx.scene.control.Tooltip;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+import javafx.scene.text.TextFlow;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+/**
+ * Window displaying the drug interactions of an interaction check: a summary of every drug pair followed by the detail tables
+ * The window listens to an InteractionResults model and fills in each pair as its lookup arrives
+ * Once more than VIRTUALIZED_ROW_THRESHOLD rows are loaded the detail tables are replaced by a virtualized InteractionListView
+ * Pairs loaded with their summary only get a placeholder section whose rows are requested when it is opened or scrolled into view
+ */
+public class InteractionWindow implements InteractionResults.Listener {
+    private static final Logger logger = Logger.getLogger(InteractionWindow.class.getName());
+    static final int VIRTUALIZED_ROW_THRESHOLD = 200;
+    private final Function<String, String> wikiInfo;
+    private final Map<String, VBox> summaryBoxes = new HashMap<>();
+    private final Map<String, VBox> safeDrugs = new LinkedHashMap<>();
+    private final Map<String, VBox> detailSections = new HashMap<>();
+    private final Map<String, Integer> detailRowCounts = new HashMap<>();
+    private final Map<String, VBox> detailPlaceholders = new LinkedHashMap<>();
+    private Consumer<PairResult> detailLoader;
+    private String scrollTarget;
+    private InteractionResults results;
+    private Stage interactionStage;
+    private VBox root;
+    private VBox mainLayout;
+    private ScrollPane scrollPane;
+    private VBox summarySection;
+    private VBox detailsContainer;
+    private InteractionListView interactionList;
+    private ProgressBar progressBar;
+    private Label progressLabel;
+    private Label burdenLabel;
+    private HBox safeDrugsHeader;
+    private Label safeDrugsTitle;
+    private VBox safeDrugsContent;
+    private int loadedRows;
+    /**
+     * Detail rows the burden label was computed for, -1 while pairs are pending
+     */
+    private int burdenRows = -1;
+    /**
+     * Set while show() replays the pairs, the safe drugs header and progress are built once afterwards
+     */
+    private boolean replaying;
+
+    /**
+     * Constructs an interaction window
+     *
+     * @param wikiInfo function returning the Wikipedia description of a condition
+     */
+    public InteractionWindow(Function<String, String> wikiInfo) {
+        this.wikiInfo = wikiInfo;
+    }
+
+    /**
+     * Sets the function requesting the next page of detail rows of a pair, used for summarized pairs and the load more buttons
+     *
+     * @param detailLoader the detail loader, typically InteractionResults.fetchDetails bound to a backend
+     */
+    public void setDetailLoader(Consumer<PairResult> detailLoader) { this.detailLoader = detailLoader; }
+
+    /**
+     * Displays a new window to show already queried drug interactions
+     *
+     * @param twosidesCol the collection of drug interactions to display
+     */
+    public void show(TwosidesCol twosidescol) {
+        show(InteractionResults.of(twosidescol));
+    }
+
+    /**
+     * Displays a new window for an interaction check that may still be running
+     * Pending pairs are shown as placeholders and replaced as soon as their results arrive
+     *
+     * @param results the streaming results model of the interaction check
+     */
+    public void show(InteractionResults results) {
+        long buildStart = System.nanoTime();
+        JfrEvents.WindowPhase layoutPhase = new JfrEvents.WindowPhase("layout");
+        this.results = results;
+        interactionStage = new Stage();
+        interactionStage.setTitle("Drug Interactions"); 
+        scrollPane = new ScrollPane();
+        scrollPane.setFitToWidth(true);
+        mainLayout = new VBox(15);
+        mainLayout.setPadding(new Insets(10));
+        mainLayout.getStyleClass().add("interaction-root");
+        Label interactionTitle = new Label("Drug Interactions");
+        interactionTitle.getStyleClass().add("interaction-title");
+        interactionTitle.setId("DI");
+        HBox progressSection = createProgressSection();
+        burdenLabel = new Label();
+        burdenLabel.getStyleClass().add("burden-label");
+        burdenLabel.setWrapText(true);
+        burdenLabel.setVisible(false);
+        burdenLabel.setManaged(false);
+        summarySection = createSummarySection();
+        detailsContainer = createInteractionDetails();
+        mainLayout.getChildren().addAll(interactionTitle, progressSection, burdenLabel, summarySection, detailsContainer);
+        scrollPane.setContent(mainLayout);
+        root = new VBox(10, scrollPane);
+        root.getStyleClass().add("interaction-root");
+        VBox.setVgrow(scrollPane, Priority.ALWAYS);
+        //placeholder sections scrolled into view request their rows
+        scrollPane.vvalueProperty().addListener((observable, oldValue, newValue) -> loadVisibleDetails());
+        scrollPane.viewportBoundsProperty().addListener((observable, oldValue, newValue) -> loadVisibleDetails());
+
+        layoutPhase.finish(results.getPairs().size(), loadedRows);
+
+        //replay the current state, then follow the updates
+        JfrEvents.WindowPhase rowsPhase = new JfrEvents.WindowPhase("rows");
+        replaying = true;
+        for (PairResult pair : results.getPairs()) {
+            pairUpdated(pair);
+        }
+        replaying = false;
+        safeDrugsHeaderSection();
+        updateProgress();
+        rowsPhase.finish(results.getPairs().size(), loadedRows);
+        results.addListener(this);
+        interactionStage.setOnHidden(event -> results.removeListener(this));
+
+        JfrEvents.WindowPhase scenePhase = new JfrEvents.WindowPhase("scene");
+        Scene scene = new Scene(root, 1000, 1200);
+        scene.getStylesheets().add(ResourceCache.stylesheet());
+        interactionStage.setScene(scene);
+        interactionStage.show();
+        scenePhase.finish(results.getPairs().size(), loadedRows);
+        logger.info("Interaction window built in " + (System.nanoTime() - buildStart) / 1_000_000 + " ms for " + loadedRows + " rows");
+    }
+
+    /**
+     * Checks whether the window is currently displayed
+     *
+     * @return true if the window is showing
+     */
+    public boolean isShowing() {
+        return interactionStage != null && interactionStage.isShowing();
+    }
+
+    /**
+     * Brings the window in front of the other windows
+     */
+    public void toFront() {
+        if (interactionStage != null) {
+            interactionStage.toFront();
+        }
+    }
+
+    /**
+     * Adds the placeholder summary box of a pending pair
+     *
+     * @param pair the added pair
+     */
+    @Override
+    public void pairAdded(PairResult pair) {
+        pairUpdated(pair);
+    }
+
+    /**
+     * Replaces the current nodes of a pair with its pending, loaded or failed state and appends its details
+     *
+     * @param pair the updated pair
+     */
+    @Override
+    public void pairUpdated(PairResult pair) {
+        int detailIndex = detailIndexOf(pair.getKey());
+        int index = removePairNodes(pair.getKey());
+        if (pair.isSafe()) {
+            safeDrugs.put(pair.getKey(), createInteractionBox(pair, true, scrollPane));
+            if (!replaying) {
+                safeDrugsHeaderSection();
+            }
+        } else {
+            //pair boxes are kept above the safe drugs section
+            if (index < 0) {
+                index = safeDrugsHeader == null ? summarySection.getChildren().size() : summarySection.getChildren().indexOf(safeDrugsHeader);
+            }
+            VBox interactionBox = createInteractionBox(pair, false, scrollPane);
+            summaryBoxes.put(pair.getKey(), interactionBox);
+            summarySection.getChildren().add(index, interactionBox);
+            if (pair.getStatus() == PairResult.Status.LOADED && pair.hasDetails()) {
+                addInteractionDetails(pair, detailIndex);
+            } else if (pair.getStatus() == PairResult.Status.LOADED) {
+                addDetailPlaceholder(pair, detailIndex);
+            }
+        }
+        if (!replaying) {
+            updateProgress();
+        }
+    }
+
+    /**
+     * Removes every node of a pair that was dropped from the results
+     *
+     * @param pair the removed pair
+     */
+    @Override
+    public void pairRemoved(PairResult pair) {
+        removePairNodes(pair.getKey());
+        updateProgress();
+    }
+
+    /**
+     * Removes the summary box, safe drug box and details of a pair from the window
+     *
+     * @param key the mapped interaction key
+     * @return the former index of the summary box, or -1 if the pair had none
+     */
+    private int removePairNodes(String key) {
+        int index = -1;
+        VBox summaryBox = summaryBoxes.remove(key);
+        if (summaryBox != null) {
+            index = summarySection.getChildren().indexOf(summaryBox);
+            summarySection.getChildren().remove(summaryBox);
+        }
+        if (safeDrugs.remove(key) != null) {
+            safeDrugsHeaderSection();
+        }
+        Integer rows = detailRowCounts.remove(key);
+        if (rows != null) {
+            loadedRows -= rows;
+        }
+        VBox section = detailSections.remove(key);
+        if (section != null) {
+            detailsContainer.getChildren().remove(section);
+        }
+        VBox placeholder = detailPlaceholders.remove(key);
+        if (placeholder != null) {
+            detailsContainer.getChildren().remove(placeholder);
+        }
+        if (interactionList != null) {
+            interactionList.removeSection(key);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the position of the detail section or placeholder of a pair so an update keeps it in place
+     *
+     * @param key the mapped interaction key
+     * @return the index within the details container, or -1 if the pair has no section
+     */
+    private int detailIndexOf(String key) {
+        VBox section = detailSections.containsKey(key) ? detailSections.get(key) : detailPlaceholders.get(key);
+        return section == null ? -1 : detailsContainer.getChildren().indexOf(section);
+    }
+
+    /**
+     * Creates the progress section showing how many drug pairs have been loaded
+     *
+     * @return an HBox containing the progress bar and label
+     */
+    private HBox createProgressSection() {
+        progressBar = new ProgressBar(0);
+        progressBar.setPrefWidth(300);
+        progressLabel = new Label();
+        progressLabel.getStyleClass().add("progress-label");
+        HBox progressSection = new HBox(10, progressBar, progressLabel);
+        progressSection.setAlignment(Pos.CENTER_LEFT);
+        return progressSection;
+    }
+
+    /**
+     * Updates the progress bar and label from the results model
+     * The burden is computed when the last pair completes and again only when detail rows are added or removed
+     */
+    private void updateProgress() {
+        if (results == null || progressBar == null) {
+            return;
+        }
+        int completed = results.getCompletedCount();
+        int total = results.size();
+        progressBar.setProgress(total == 0 ? 1 : (double) completed / total);
+        if (completed == total) {
+            progressLabel.setText("All " + total + " drug pairs loaded in " + results.getLastCompletionMillis() + " ms");
+            if (burdenRows != loadedRows) {
+                burdenRows = loadedRows;
+                updateBurden();
+            }
+        } else {
+            burdenRows = -1;
+            progressLabel.setText(completed + " of " + total + " drug pairs loaded...");
+        }
+    }
+
+    /**
+     * Ranks the drugs of the check by the interaction burden they contribute, using the graph of the loaded pairs
+     * The three riskiest drugs are shown together with the regimen risk score of the pairs loaded with their rows
+     * The label is hidden when no drug interacts
+     */
+    private void updateBurden() {
+        List<InteractionGraph.Burden> ranked = results.toInteractionGraph().regimenBurden(results.getDrugs(), InteractionGraph.Weight.SEVERITY);
+        StringBuilder text = new StringBuilder();
+        for (InteractionGraph.Burden burden : ranked.subList(0, Math.min(3, ranked.size()))) {
+            if (burden.getScore() <= 0) {
+                break;
+            }
+            text.append(text.length() == 0 ? "Highest interaction burden: " : ", ")
+                .append(AppGUI.capitalizeEveryFirstLetter(burden.getDrug()))
+                .append(String.format(" (severity %.1f across %d drugs)", burden.getScore(), burden.getInteractingDrugs()));
+        }
+        TwosidesCol loaded = results.toTwosidesCol();
+        if (!loaded.getCol().isEmpty()) {
+            RegimenReport report = RegimenScorer.score(loaded);
+            text.append(text.length() == 0 ? "" : "\n")
+                .append(String.format("Regimen risk score %.1f: %d critical and %d severe interactions", 
+                        report.getScore(), report.getSeverityCount("Critical"), report.getSeverityCount("Severe")));
+        }
+        burdenLabel.setText(text.toString());
+        burdenLabel.setVisible(text.length() > 0);
+        burdenLabel.setManaged(text.length() > 0);
+    }
+
+    /**
+     * Creates the column header row shown above the virtualized interaction list
+     *
+     * @return a GridPane with the Symptom, Severity and Description headers
+     */
+    private GridPane createVirtualTableHeader() {
+        GridPane header = initTable(new GridPane());
+        header.setMinHeight(Region.USE_PREF_SIZE);
+        return header;
+    }
+
+    /**
+     * Replaces the detail tables by a virtualized list once the loaded rows exceed VIRTUALIZED_ROW_THRESHOLD
+     * The summary stays scrollable on top, the rows are only materialized for the visible part of the list
+     */
+    private void switchToVirtualized() {
+        JfrEvents.WindowPhase phase = new JfrEvents.WindowPhase("virtualize");
+        interactionList = new InteractionListView(wikiInfo, () -> scrollToSection("DI", scrollPane), key -> loadMoreRows(results.getPair(key)));
+        for (PairResult pair : results.getPairs()) {
+            if (pair.getStatus() == PairResult.Status.LOADED && pair.hasDetails()) {
+                interactionList.addSection(pair.getKey(), pair.getInteractions(), loadMoreText(pair));
+            }
+        }
+        mainLayout.getChildren().remove(detailsContainer);
+        detailsContainer.getChildren().clear();
+        detailSections.clear();
+        //summarized pairs are loaded from their summary header from now on
+        detailPlaceholders.clear();
+        scrollPane.setMaxHeight(400);
+        VBox.setVgrow(scrollPane, Priority.NEVER);
+        VBox.setVgrow(interactionList, Priority.ALWAYS);
+        root.getChildren().addAll(createVirtualTableHeader(), interactionList);
+        phase.finish(results.getPairs().size(), loadedRows);
+        logger.info("Switched to virtualized rendering after " + loadedRows + " rows");
+    }
+
+    /**
+     * Creates the summary section listing drug interactions
+     *
+     * @return a VBox containing the summary section
+     */
+    private VBox createSummarySection() {
+        //summary section
+        VBox summarySection = new VBox(10);
+
+        //styling
+        summarySection.getStyleClass().add("summary-section");
+
+        return summarySection;
+    }
+
+    /**
+     * Generates, updates or removes the header of the "safe drugs" section and allows toggling its visibility
+     */
+    private void safeDrugsHeaderSection() {
+        if (safeDrugs.isEmpty()) {
+            if (safeDrugsHeader != null) {
+                summarySection.getChildren().removeAll(safeDrugsHeader, safeDrugsContent);
+                safeDrugsHeader = null;
+                safeDrugsContent = null;
+            }
+            return;
+        }
+        String text = safeDrugs.size()==1
+                ? "No interactions were found for 1 drug pair. Expand this section to view details"
+                : "No interactions were found for " + safeDrugs.size() + " drug pairs. Expand this section to view details.";
+        if (safeDrugsHeader != null) {
+            safeDrugsTitle.setText(text);
+            if (safeDrugsContent.isVisible()) {
+                safeDrugsContent.getChildren().setAll(safeDrugs.values());
+            }
+            return;
+        }
+
+        //header to add seperator; title for toggle action
+        safeDrugsHeader = new HBox(5);
+        safeDrugsTitle = new Label(text);
+
+        //icon creation and styling
+        ImageView arrow = new ImageView(ResourceCache.image("icons/step-forward.png"));
+        arrow.setFitWidth(24);
+        arrow.setFitHeight(24);
+        
+        //header styling; title styling
+        safeDrugsHeader.getStyleClass().add("safe-drugs-header");
+        safeDrugsTitle.getStyleClass().add("safe-drugs-title");
+
+        //content section
+        VBox content = new VBox();
+        safeDrugsContent = content;
+        content.setVisible(false);
+        content.setManaged(false);
+        
+        //Toggle action
+        safeDrugsHeader.setOnMouseClicked(event -> {
+            boolean isCollapsed = content.isVisible();
+            content.setVisible(!isCollapsed);
+            content.setManaged(!isCollapsed);
+            content.getChildren().setAll(safeDrugs.values());
+            
+            if (isCollapsed) {
+                arrow.setRotate(0);
+            } else {
+                arrow.setRotate(90);
+            }
+        });
+
+        //add to summary section
+        safeDrugsHeader.getChildren().addAll(arrow, safeDrugsTitle);
+        summarySection.getChildren().addAll(safeDrugsHeader, content);
+    }
+
+    /**
+     * Creates a header showing the interaction between two drugs
+     *
+     * @param drug1 the name of the first drug
+     * @param drug2 the name of the second drug
+     * @param frameHeader true if the header is styled as a frame, false otherwise
+     * @param scrollPane the ScrollPane to enable navigation
+     * @return an HBox representing the interaction header
+     */
+    private HBox createInteractionContent(String drug1, String drug2, boolean frameHeader, ScrollPane scrollPane) {
+        //label content creation
+        HBox header = new HBox(5);
+        Label drug1Label = new Label(drug1);
+        ImageView arrowIcon = new ImageView(ResourceCache.image("icons/repeat.png"));
+        arrowIcon.setFitWidth(20);
+        arrowIcon.setFitHeight(20);
+        Label drug2Label = new Label(drug2);
+        header.getChildren().addAll(drug1Label, arrowIcon, drug2Label);
+        
+        //header styling twopath, hover states come from the stylesheet
+        header.getStyleClass().add("pair-content");
+        header.setAlignment(Pos.CENTER);
+        if (frameHeader) {
+            header.getStyleClass().add("pair-frame");
+            // header.setOnMouseClicked(event->scrollToSection("sfi", scrollPane));
+            header.setOnMouseClicked(event->scrollToSection("DI", scrollPane));
+        }
+        else {
+            header.getStyleClass().add("pair-label");
+        }
+        header.setId("sfi");
+        return header;
+    }
+
+    /**
+     * Creates a counter label for an interaction entry
+     *
+     * @param value the count value to display
+     * @return a styled Label showing the count
+     */
+    private Label createCounterLabel(String value) {
+        //label content creation
+        Label countLabel = new Label(value);
+
+        //label stylign
+        countLabel.getStyleClass().add("counter-label");
+        countLabel.setAlignment(Pos.CENTER);
+
+        return countLabel;
+    }
+
+    /**
+     * Creates the status node of an interaction header: a spinner while pending, the interaction count otherwise
+     *
+     * @param pair the pair result
+     * @return the status node
+     */
+    private Node createPairStatus(PairResult pair) {
+        switch (pair.getStatus()) {
+            case PENDING:
+                ProgressIndicator indicator = new ProgressIndicator();
+                indicator.setPrefSize(28, 28);
+                indicator.setMinWidth(60);
+                return indicator;
+            case FAILED:
+                return createCounterLabel("!");
+            default:
+                return createCounterLabel(String.valueOf(pair.getInteractionCount()));
+        }
+    }
+ 
+    /**
+     * Creates the header for an interaction entry with a count of interactions and the lookup time
+     *
+     * @param pair the pair result
+     * @param safeDrug whether the interaction is marked as safe
+     * @param scrollPane the ScrollPane to enable scrolling to the section
+     * @return an HBox containing the interaction header
+     */
+    private HBox createInteractionHeader(PairResult pair, boolean safeDrug, ScrollPane scrollPane) {
+        //interactionHeader content creation
+        List<String> twoSideInteraction = pair.getDisplayNames();
+        String key = pair.getKey();
+        HBox interactionHeader = new HBox(10);
+        HBox headerContent = createInteractionContent(twoSideInteraction.get(0), twoSideInteraction.get(1), false, scrollPane);
+        Node statusNode = createPairStatus(pair);
+        Label timingLabel = new Label(pair.getStatus() == PairResult.Status.PENDING ? "" : pair.getElapsedMillis() + " ms");
+        timingLabel.getStyleClass().add("pair-timing");
+        Region rowSpacer = new Region();
+        interactionHeader.getChildren().addAll(headerContent, rowSpacer, timingLabel);
+        PairSummary summary = pair.getSummary();
+        if (!safeDrug && summary != null && summary.getMaxSeverityClass() != null) {
+            interactionHeader.getChildren().add(setSeverityStyle(summary.getMaxSeverityClass()));
+        }
+        interactionHeader.getChildren().add(statusNode);
+
+        //interactionHeader styling
+        interactionHeader.getStyleClass().add("interaction-header");
+        interactionHeader.setAlignment(Pos.CENTER);
+        HBox.setHgrow(rowSpacer, Priority.ALWAYS);
+        rowSpacer.setMaxWidth(200);
+
+        //interactionHeader actions
+        boolean navigable = !safeDrug && pair.getStatus() == PairResult.Status.LOADED;
+        if (navigable) {
+            interactionHeader.getStyleClass().add("navigable");
+            interactionHeader.setOnMouseClicked(event -> openSection(pair, scrollPane));
+        }
+
+        //interactionHeader tooltip
+        String tooltipText;
+        if (pair.getStatus() == PairResult.Status.PENDING) {
+            tooltipText = "Loading interactions for " + twoSideInteraction.get(0) + " ↔ " + twoSideInteraction.get(1);
+        } else if (pair.getStatus() == PairResult.Status.FAILED) {
+            tooltipText = "Interactions could not be loaded for " + twoSideInteraction.get(0) + " ↔ " + twoSideInteraction.get(1) + ": " + pair.getError();
+        } else if (safeDrug) {
+            tooltipText = "No interactions were found for " + twoSideInteraction.get(0) + " ↔ " + twoSideInteraction.get(1);
+        } else {
+            tooltipText = pair.getInteractionCount() + " interactions were found. Click to view details for " + 
+                        twoSideInteraction.get(0) + " ↔ " + twoSideInteraction.get(1);
+        }
+        Tooltip tooltip = new Tooltip(tooltipText);
+        tooltip.setShowDelay(Duration.millis(200));
+        tooltip.setHideDelay(Duration.millis(2));
+        tooltip.getStyleClass().add("info-tooltip");
+        Tooltip.install(interactionHeader, tooltip);
+
+        return interactionHeader;
+    }
+
+    /**
+     * Creates an interaction box containing the header of a pair
+     *
+     * @param pair the pair result
+     * @param safeDrug whether the interaction is marked as safe
+     * @param scrollPane the ScrollPane to enable scrolling
+     * @return a VBox containing the interaction box
+     */
+    private VBox createInteractionBox(PairResult pair, boolean safeDrug, ScrollPane scrollPane) {
+        //interactionBox content creation
+        HBox interactionHeader = createInteractionHeader(pair, safeDrug, scrollPane);
+        VBox interactionBox = new VBox(5, interactionHeader);
+
+        //interactionBox styling
+        interactionBox.getStyleClass().add("interaction-box");
+
+        return interactionBox;
+    }
+
+    /**
+     * Creates the container of the detailed interaction sections
+     *
+     * @return an empty VBox the interaction sections are appended to
+     */
+    private VBox createInteractionDetails() {
+        //interactionDetails content creation
+        VBox detailsContainer = new VBox(20);
+        detailsContainer.getStyleClass().add("details-container");
+
+        return detailsContainer;
+    }
+
+    /**
+     * Adds the detailed interaction section of a loaded pair with information about symptoms and severity
+     *
+     * @param pair the loaded pair result
+     * @param index the position of the section within the details container, -1 to append it
+     */
+    private void addInteractionDetails(PairResult pair, int index) {
+        loadedRows += pair.getInteractions().size();
+        detailRowCounts.put(pair.getKey(), pair.getInteractions().size());
+        if (interactionList == null && loadedRows > VIRTUALIZED_ROW_THRESHOLD) {
+            switchToVirtualized();
+            scrollToPendingTarget(pair.getKey());
+            return;
+        }
+        if (interactionList != null) {
+            interactionList.addSection(pair.getKey(), pair.getInteractions(), loadMoreText(pair));
+            scrollToPendingTarget(pair.getKey());
+            return;
+        }
+        Map.Entry<String, Map<String, Twosides>> twosidesInteraction = Map.entry(pair.getKey(), pair.getInteractions());
+        GridPane table = new GridPane();
+        VBox interactionSection = createInteractionSection(twosidesInteraction, table);
+        List<String> twoSideInteraction = pair.getDisplayNames();
+        HBox header = createInteractionContent(twoSideInteraction.get(0), twoSideInteraction.get(1), true, scrollPane);
+        table = initTable(table);
+        table = createInteractionRows(twosidesInteraction, table);
+        interactionSection.getChildren().addAll(header, table);
+        if (pair.hasMoreRows()) {
+            interactionSection.getChildren().add(createLoadMoreButton(pair));
+        }
+        detailSections.put(pair.getKey(), interactionSection);
+        detailsContainer.getChildren().add(index < 0 ? detailsContainer.getChildren().size() : index, interactionSection);
+        scrollToPendingTarget(pair.getKey());
+    }
+
+    /**
+     * Returns the text of the load more button of a pair whose remaining rows have not been fetched yet
+     *
+     * @param pair the pair result
+     * @return the button text, or null if every row of the pair is loaded
+     */
+    private String loadMoreText(PairResult pair) {
+        if (!pair.hasMoreRows()) {
+            return null;
+        }
+        if (pair.isDetailsRequested()) {
+            return "Loading more interactions...";
+        }
+        return "Load more (" + pair.getInteractions().size() + " of " + pair.getInteractionCount() + " shown)";
+    }
+
+    /**
+     * Creates the button fetching the next page of rows of a pair
+     *
+     * @param pair the pair result with more rows to fetch
+     * @return the load more button
+     */
+    private Button createLoadMoreButton(PairResult pair) {
+        Button loadMoreButton = new Button(loadMoreText(pair));
+        loadMoreButton.getStyleClass().add("load-more-button");
+        loadMoreButton.setDisable(pair.isDetailsRequested());
+        loadMoreButton.setOnAction(event -> loadMoreRows(pair));
+        return loadMoreButton;
+    }
+
+    /**
+     * Requests the next page of rows of a pair once
+     *
+     * @param pair the pair result with more rows to fetch
+     */
+    private void loadMoreRows(PairResult pair) {
+        if (pair == null || detailLoader == null || !pair.hasMoreRows() || pair.isDetailsRequested()) {
+            return;
+        }
+        detailLoader.accept(pair);
+        //shows the loading state of the button
+        pairUpdated(pair);
+    }
+
+    /**
+     * Adds the collapsed section of a pair that was loaded with its summary only
+     * Its rows are requested when the section is clicked or scrolled into view
+     * In virtualized mode no placeholder is shown, the rows are requested from the summary header instead
+     *
+     * @param pair the summarized pair result
+     * @param index the position of the section within the details container, -1 to append it
+     */
+    private void addDetailPlaceholder(PairResult pair, int index) {
+        if (interactionList != null) {
+            return;
+        }
+        List<String> twoSideInteraction = pair.getDisplayNames();
+        HBox header = createInteractionContent(twoSideInteraction.get(0), twoSideInteraction.get(1), true, scrollPane);
+        String text = pair.isDetailsRequested()
+                ? "Loading " + pair.getInteractionCount() + " interactions..."
+                : pair.getInteractionCount() + " interactions, highest severity " + pair.getSummary().getMaxSeverityClass() + ". Click or scroll here to load them";
+        Label statusLabel = new Label(text);
+        statusLabel.getStyleClass().add("placeholder-label");
+        VBox placeholder = new VBox(10, header, statusLabel);
+        placeholder.setId(pair.getKey());
+        placeholder.getStyleClass().addAll("interaction-section", "detail-placeholder");
+        placeholder.setOnMouseClicked(event -> requestDetails(pair));
+        detailPlaceholders.put(pair.getKey(), placeholder);
+        detailsContainer.getChildren().add(index < 0 ? detailsContainer.getChildren().size() : index, placeholder);
+        Platform.runLater(this::loadVisibleDetails);
+    }
+
+    /**
+     * Requests the rows of every placeholder section that intersects the visible part of the scroll pane
+     */
+    private void loadVisibleDetails() {
+        if (detailPlaceholders.isEmpty() || scrollPane.getScene() == null) {
+            return;
+        }
+        Bounds viewport = scrollPane.localToScene(scrollPane.getLayoutBounds());
+        for (String key : List.copyOf(detailPlaceholders.keySet())) {
+            VBox placeholder = detailPlaceholders.get(key);
+            if (placeholder != null && placeholder.localToScene(placeholder.getBoundsInLocal()).intersects(viewport)) {
+                requestDetails(results.getPair(key));
+            }
+        }
+    }
+
+    /**
+     * Requests the detail rows of a summarized pair once
+     *
+     * @param pair the summarized pair result
+     */
+    private void requestDetails(PairResult pair) {
+        if (pair == null || detailLoader == null || pair.hasDetails() || pair.isDetailsRequested()) {
+            return;
+        }
+        detailLoader.accept(pair);
+        //shows the loading state of the placeholder
+        pairUpdated(pair);
+    }
+
+    /**
+     * Navigates to the section of a pair, requesting its rows first if they are not loaded yet
+     *
+     * @param pair the pair result
+     * @param scrollPane the ScrollPane containing the content
+     */
+    private void openSection(PairResult pair, ScrollPane scrollPane) {
+        if (!pair.hasDetails()) {
+            scrollTarget = pair.getKey();
+            requestDetails(pair);
+        }
+        scrollToSection(pair.getKey(), scrollPane);
+    }
+
+    /**
+     * Scrolls to a section whose rows were requested from its summary header once they have arrived
+     *
+     * @param key the mapped interaction key of the loaded pair
+     */
+    private void scrollToPendingTarget(String key) {
+        if (key.equals(scrollTarget)) {
+            scrollTarget = null;
+            scrollToSection(key, scrollPane);
+        }
+    }
+
+    /**
+     * Creates a VBox to display an interaction section with a header and table of details
+     *
+     * @param twosidesInteraction the interaction data
+     * @param table the GridPane table to populate with interaction rows
+     * @return a VBox containing the interaction section
+     */
+    private VBox createInteractionSection(Map.Entry<String, Map<String, Twosides>> twosidesInteraction, GridPane table) {
+        //interactionSection content craetion
+        VBox interactionSection = new VBox(10);
+        interactionSection.setId(twosidesInteraction.getKey());
+
+        //interactionSection styling
+        interactionSection.getStyleClass().add("interaction-section");
+
+        return interactionSection;
+    }
+
+    /**
+     * Initializes a table for displaying interaction details
+     *
+     * @param table the GridPane to initialize
+     * @return the initialized GridPane
+     */
+    private GridPane initTable(GridPane table) {
+        //table styling
+        table.setHgap(20);
+        table.setVgap(10);
+        table.getStyleClass().add("interaction-table");
+        table.setAlignment(Pos.CENTER);
+        table.setPrefWidth(1000);
+
+        //table labels creation
+        Label symptomHeader = new Label(String.format("%-26s %s", " ", "Symptom"));
+        Label severityHeader = new Label(String.format("%-5s %s", " ", "Severity"));
+        Label descriptionHeader = new Label(String.format("%-29s %s", " ", "Description"));
+
+        //table lables styling
+        symptomHeader.getStyleClass().add("table-header-label");
+        severityHeader.getStyleClass().add("table-header-label");
+        descriptionHeader.getStyleClass().add("table-header-label");
+
+        //table labels add
+        table.add(symptomHeader, 0, 0);
+        table.add(severityHeader, 1, 0);
+        table.add(descriptionHeader, 2, 0);
+
+        return table;
+    }
+
+    /**
+     * Creates rows in the interaction table with details about symptoms and severity
+     *
+     * @param twosidesInteraction the interaction data
+     * @param table the table to populate
+     * @return the populated GridPane
+     */
+    private GridPane createInteractionRows(Map.Entry<String, Map<String, Twosides>> twosidesInteraction, GridPane table) {
+        int row = 1;
+        for (Map.Entry<String, Twosides> twosides : twosidesInteraction.getValue().entrySet()) {
+            //local vars
+            Twosides value = twosides.getValue();
+            Label symptomLabel = new Label(value.getConditionName());
+            Label severityLabel = setSeverityStyle(value.getSeverityClass());
+            TextFlow descriptionInfo = twosidesInteractionDescription(value);
+            
+            //symptom label styling; descirption label styling
+            symptomLabel.getStyleClass().add("symptom-label");
+            descriptionInfo.setMaxWidth(350);
+            descriptionInfo.getStyleClass().add("description");
+
+            //symptom label tooltip
+            symptomLabel = symptomInfoTooltip(symptomLabel, value);
+
+            //add ot table
+            table.add(symptomLabel, 0, row);
+            table.add(severityLabel, 1, row);
+            table.add(descriptionInfo, 2, row);
+
+            //seperators
+            row++;
+            if (row <= 2*twosidesInteraction.getValue().size()-1) {
+                Separator separator = new Separator();
+                table.add(separator, 0, row, 3, 1);
+                row++;
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * Adds a tooltip to a symptom label with delayed content loading
+     *
+     * @param symptomLabel the Label for the symptom
+     * @param value the Twosides object containing condition details
+     * @return the updated Label with tooltip functionality
+     */
+    private Label symptomInfoTooltip(Label symptomLabel, Twosides value) {
+        //tooltip creation
+        String loadStr = "Loading condition description...";
+        Tooltip tooltip = new Tooltip(loadStr);
+
+        //tooltrip props
+        tooltip.setShowDelay(Duration.millis(200));
+        tooltip.setHideDelay(Duration.INDEFINITE);
+        tooltip.setMaxWidth(400);
+        tooltip.wrapTextProperty().setValue(true);
+        tooltip.getStyleClass().add("info-tooltip");
+        tooltip.setTextAlignment(TextAlignment.JUSTIFY);
+        PauseTransition delay = new PauseTransition(Duration.seconds(0.2));
+
+        //prompts when mouse enters the label
+        symptomLabel.setOnMouseEntered(event -> {
+            tooltip.setText(loadStr);
+            delay.setOnFinished(e -> {
+                if (tooltip.getText().equals(loadStr)) {
+                    new Thread(() -> {
+                        String info = wikiInfo.apply(value.getConditionName());
+                        Platform.runLater(() -> tooltip.setText(info));
+                        }).start();
+                        tooltip.show(symptomLabel, 
+                        event.getScreenX() + 10,
+                        event.getScreenY() + 10);
+                }
+            });
+            delay.playFromStart();
+        });
+        symptomLabel.setOnMouseExited(event -> {
+            delay.stop();
+            tooltip.hide();
+        });
+
+        return symptomLabel;
+    }
+
+    /**
+     * Sets the styling for a severity label based on its value
+     *
+     * @param severityStr the severity string
+     * @return a styled Label representing the severity
+     */
+    private Label setSeverityStyle(String severityStr) {
+        Label severityLabel = new Label(severityStr);
+        severityLabel.getStyleClass().add("severity-label");
+        ResourceCache.applySeverity(severityLabel, severityStr);
+
+        return severityLabel;
+    }
+
+    /**
+     * Creates a description for a Twosides interaction
+     *
+     * @param twosides the Twosides object containing interaction details
+     * @return a TextFlow containing the interaction description
+     */
+    private TextFlow twosidesInteractionDescription(Twosides twosides) {
+        //declare local vars and text alignment
+        TextFlow descriptionTextFlow = new TextFlow();
+        descriptionTextFlow.setTextAlignment(javafx.scene.text.TextAlignment.JUSTIFY);
+
+        //create text parts, every second part is the bold value
+        String[] parts = descriptionParts(twosides);
+        for (int i = 0; i < parts.length; i++) {
+            Text part = new Text(parts[i]);
+            part.getStyleClass().add(i % 2 == 0 ? "description-text" : "description-value");
+            descriptionTextFlow.getChildren().add(part);
+        }
+        return descriptionTextFlow;
+    }
+
+    /**
+     * Builds the text parts of an interaction description, alternating plain text and bold values
+     *
+     * @param twosides the Twosides object containing interaction details
+     * @return the eight description parts
+     */
+    static String[] descriptionParts(Twosides twosides) {
+        return new String[] {
+            "Based on the sample of ",
+            String.valueOf(twosides.getA() + twosides.getB()),
+            " reports for the pair of drugs, the mean reporting frequency of " + twosides.getConditionName() + " is ",
+            String.format("%.2f%%", twosides.getMeanReportingFrequency() * 100),
+            ". " + "The Proportional Reporting Ratio (PRR)" + " is ",
+            String.format("%.2f", twosides.getPrr()),
+            " with an error estimate of ",
+            String.format("%.2f", twosides.getPrrError())
+        };
+    }
+
+    /**
+     * Scrolls the view to the specified section within the ScrollPane
+     * In virtualized mode pair sections are looked up in the interaction list instead
+     *
+     * @param sectionId the ID of the target section
+     * @param scrollPane the ScrollPane containing the content
+     */
+    private void scrollToSection(String sectionId, ScrollPane scrollPane) {
+        if (interactionList != null && interactionList.scrollToSection(sectionId)) {
+            return;
+        }
+        Platform.runLater(() -> {
+            Node targetNode = scrollPane.getContent().lookup("#" + sectionId);
+
+            if (targetNode != null) {
+                Bounds contentBounds = scrollPane.getContent().localToScene(scrollPane.getContent().getBoundsInLocal());
+                Bounds nodeBounds = targetNode.localToScene(targetNode.getBoundsInLocal());
+                double nodePosition = nodeBounds.getMinY() - contentBounds.getMinY();
+                double viewportHeight = scrollPane.getViewportBounds().getHeight();
+                double contentHeight = scrollPane.getContent().getLayoutBounds().getHeight();
+                double scrollValue = nodePosition / (contentHeight - viewportHeight);
+                scrollValue = Math.max(0, Math.min(scrollValue, 1));
+                scrollPane.setVvalue(scrollValue);
+            } else {
+                logger.info("Failed to find the target node");
+            }
+        });
+    }
+}
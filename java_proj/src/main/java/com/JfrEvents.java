@@ -0,0 +1,270 @@
+package com;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events of the query, transport, serialization and rendering phases
+ * One recording, e.g. java -XX:StartFlightRecording=filename=twosides.jfr, breaks a slow interaction check down into
+ * database, broker, JSON and JavaFX time; while no recording runs an event costs little more than the allocation the JIT removes
+ * Every event is ended and checked with shouldCommit before its fields are filled, so disabled events do no formatting
+ */
+public final class JfrEvents {
+    private JfrEvents() {
+    }
+
+    /**
+     * A query method of the database, including its connection
+     */
+    @Name("twosides.Query")
+    @Label("Database Query")
+    @Category({"Twosides", "Database"})
+    @StackTrace(false)
+    public static final class Query extends Event {
+        @Label("Method")
+        String method;
+        @Label("Drug 1")
+        String drug1;
+        @Label("Drug 2")
+        String drug2;
+        @Label("Rows")
+        int rows;
+
+        /**
+         * Starts the event
+         *
+         * @param method the name of the query method
+         * @param drug1 the first drug, or the searched name
+         * @param drug2 the second drug, null for single drug queries
+         */
+        Query(String method, String drug1, String drug2) {
+            this.method = method;
+            this.drug1 = drug1;
+            this.drug2 = drug2;
+            begin();
+        }
+
+        /**
+         * Ends the event and commits it if recorded
+         *
+         * @param rows the number of rows read
+         */
+        void finish(int rows) {
+            end();
+            if (shouldCommit()) {
+                this.rows = rows;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A message published to the broker, from the publish call to its acknowledgement
+     */
+    @Name("twosides.MqttPublish")
+    @Label("MQTT Publish")
+    @Category({"Twosides", "MQTT"})
+    @StackTrace(false)
+    public static final class MqttPublish extends Event {
+        @Label("Topic")
+        String topic;
+        @Label("Payload Size")
+        @DataAmount
+        int bytes;
+        @Label("Delivered")
+        boolean delivered;
+
+        /**
+         * Starts the event
+         *
+         * @param topic the topic of the message
+         * @param bytes the size of the payload
+         */
+        MqttPublish(String topic, int bytes) {
+            this.topic = topic;
+            this.bytes = bytes;
+            begin();
+        }
+
+        /**
+         * Ends the event and commits it if recorded
+         *
+         * @param delivered whether the broker acknowledged the message
+         */
+        void finish(boolean delivered) {
+            end();
+            if (shouldCommit()) {
+                this.delivered = delivered;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A message received from the broker, lasting as long as its handler runs on the callback thread
+     */
+    @Name("twosides.MqttReceive")
+    @Label("MQTT Receive")
+    @Category({"Twosides", "MQTT"})
+    @StackTrace(false)
+    public static final class MqttReceive extends Event {
+        @Label("Topic")
+        String topic;
+        @Label("Payload Size")
+        @DataAmount
+        int bytes;
+
+        /**
+         * Wraps a message handler so every message it handles is recorded
+         *
+         * @param handler the handler
+         * @return the recording handler
+         */
+        static MQQTTransport.Handler traced(MQQTTransport.Handler handler) {
+            return (topic, payload, properties) -> {
+                MqttReceive event = new MqttReceive();
+                event.begin();
+                try {
+                    handler.handle(topic, payload, properties);
+                } finally {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.topic = topic;
+                        event.bytes = payload.length;
+                        event.commit();
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Encoding a result to JSON or decoding a response from JSON with Gson
+     */
+    @Name("twosides.Json")
+    @Label("JSON Encode/Decode")
+    @Category({"Twosides", "Serialization"})
+    @StackTrace(false)
+    public static final class Json extends Event {
+        @Label("Operation")
+        String operation;
+        @Label("Action")
+        String action;
+        @Label("JSON Size")
+        @DataAmount
+        int bytes;
+
+        /**
+         * Starts the event
+         *
+         * @param operation encode or decode
+         * @param action the action of the request
+         */
+        Json(String operation, String action) {
+            this.operation = operation;
+            this.action = action;
+            begin();
+        }
+
+        /**
+         * Ends the event and commits it if recorded
+         *
+         * @param json the encoded or decoded JSON, null for a missing response
+         */
+        void finish(String json) {
+            end();
+            if (shouldCommit()) {
+                //the length in chars, the UTF-8 size is not computed just for the recording
+                this.bytes = json == null ? 0 : json.length();
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A request to the Wikipedia API
+     */
+    @Name("twosides.WikiFetch")
+    @Label("Wikipedia Fetch")
+    @Category({"Twosides", "Wikipedia"})
+    @StackTrace(false)
+    public static final class WikiFetch extends Event {
+        @Label("Query")
+        String query;
+        @Label("Response Size")
+        @DataAmount
+        int bytes;
+        @Label("Succeeded")
+        boolean succeeded;
+
+        /**
+         * Starts the event
+         *
+         * @param query the queried topic
+         */
+        WikiFetch(String query) {
+            this.query = query;
+            begin();
+        }
+
+        /**
+         * Ends the event and commits it if recorded
+         *
+         * @param bytes the length of the response, 0 if it failed
+         * @param succeeded whether the response was parsed
+         */
+        void finish(int bytes, boolean succeeded) {
+            end();
+            if (shouldCommit()) {
+                this.bytes = bytes;
+                this.succeeded = succeeded;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A build phase of the interaction window on the JavaFX thread
+     */
+    @Name("twosides.WindowPhase")
+    @Label("Interaction Window Phase")
+    @Category({"Twosides", "JavaFX"})
+    @StackTrace(false)
+    public static final class WindowPhase extends Event {
+        @Label("Phase")
+        String phase;
+        @Label("Pairs")
+        int pairs;
+        @Label("Rows")
+        int rows;
+
+        /**
+         * Starts the event
+         *
+         * @param phase the name of the phase, e.g. layout
+         */
+        WindowPhase(String phase) {
+            this.phase = phase;
+            begin();
+        }
+
+        /**
+         * Ends the event and commits it if recorded
+         *
+         * @param pairs the number of pairs shown
+         * @param rows the number of detail rows built so far
+         */
+        void finish(int pairs, int rows) {
+            end();
+            if (shouldCommit()) {
+                this.pairs = pairs;
+                this.rows = rows;
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Load generator measuring the throughput and latency of an MQQTServer
+ * Requests arrive open loop at a fixed mean rate with Poisson spacing, independent of how fast the server answers,
+ * and every latency is measured from the moment the request was due, so a stalled server shows in the percentiles
+ * Without --broker it runs fully offline: an embedded broker and a server over synthetic data are started in this JVM
+ */
+public class LoadGenerator {
+    private static final Logger logger = Logger.getLogger(LoadGenerator.class.getName());
+    private static final String USAGE = "Usage: --loadgen [--broker <broker>] [--port <embedded broker port>] [--mqtt5]"
+            + " [--clients <n>] [--rate <requests/s>] [--duration <s>] [--warmup <s>]"
+            + " [--mix autocomplete=70,pair=25,regimen=5] [--pairs <synthetic pairs>] [--rows <rows per pair>]";
+    private static final long REPORT_INTERVAL_SECONDS = 5;
+    private static final int MAX_OUTSTANDING = 10000;
+    private static final long DRAIN_SECONDS = 30;
+    private static final int REGIMEN_MIN_DRUGS = 3;
+    private static final int REGIMEN_MAX_DRUGS = 6;
+    private final List<MQQTClient> clients;
+    private final int drugCount;
+    private final Map<String, Integer> mix;
+    private final int mixTotal;
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private final Map<String, LongAdder> errors = new LinkedHashMap<>();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile long measureFrom;
+    private volatile long measureUntil;
+    private final ExecutorService requestRunner = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "loadgen-request");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructs a load generator
+     *
+     * @param clients the connected clients, requests are spread over them at random
+     * @param drugCount the number of drugs of the synthetic data, named "Drug 0" onwards
+     * @param mix the relative weight of every request type: autocomplete, pair and regimen
+     */
+    public LoadGenerator(List<MQQTClient> clients, int drugCount, Map<String, Integer> mix) {
+        this.clients = clients;
+        this.drugCount = drugCount;
+        this.mix = mix;
+        int total = 0;
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            total += entry.getValue();
+            histograms.put(entry.getKey(), new LatencyHistogram());
+            errors.put(entry.getKey(), new LongAdder());
+        }
+        this.mixTotal = total;
+    }
+
+    /**
+     * Entry point of the load generator, called by GUIStarter for --loadgen
+     *
+     * @param args the command-line arguments without --loadgen
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = BatchScreening.parseOptions(args);
+        if (options.containsKey("help")) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        EmbeddedBroker broker = null;
+        MQQTServer server = null;
+        List<MQQTClient> clients = new ArrayList<>();
+        try {
+            boolean mqtt5 = options.containsKey("mqtt5");
+            int pairs = Integer.parseInt(options.getOrDefault("pairs", "500"));
+            int rows = Integer.parseInt(options.getOrDefault("rows", "40"));
+            String brokerUrl = options.get("broker");
+            if (brokerUrl == null) {
+                broker = new EmbeddedBroker(Integer.parseInt(options.getOrDefault("port", "18830")));
+                brokerUrl = broker.getLocalUrl();
+                server = new MQQTServer(brokerUrl, syntheticSource(pairs, rows), mqtt5);
+            }
+            int clientCount = Integer.parseInt(options.getOrDefault("clients", "8"));
+            for (int i = 0; i < clientCount; i++) {
+                clients.add(new MQQTClient(brokerUrl, mqtt5));
+            }
+            LoadGenerator generator = new LoadGenerator(clients, 2 * pairs, parseMix(options.getOrDefault("mix", "autocomplete=70,pair=25,regimen=5")));
+            generator.run(Double.parseDouble(options.getOrDefault("rate", "200")), Long.parseLong(options.getOrDefault("duration", "60")),
+                    Long.parseLong(options.getOrDefault("warmup", "15")));
+            System.out.println(generator.report());
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Load generation failed", e);
+            System.exit(1);
+        } finally {
+            for (MQQTClient client : clients) {
+                client.close();
+            }
+            if (server != null) {
+                server.stop();
+            }
+            if (broker != null) {
+                broker.stop();
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Builds the in-memory backend of the offline mode from the synthetic data of mockDb
+     *
+     * @param pairs the number of drug pairs
+     * @param rows the number of interactions per pair
+     * @return the snapshot backend
+     */
+    private static Queryable syntheticSource(int pairs, int rows) {
+        List<Twosides> twosides = new ArrayList<>();
+        for (Map<String, Twosides> interactions : mockDb.getSyntheticDb(pairs, rows).getCol().values()) {
+            twosides.addAll(interactions.values());
+        }
+        logger.log(Level.INFO, "Serving {0} synthetic rows", twosides.size());
+        return new SnapshotQuery(twosides);
+    }
+
+    /**
+     * Parses a request mix like autocomplete=70,pair=25,regimen=5
+     *
+     * @param value the mix option
+     * @return the weight of every request type in the given order
+     * @throws IllegalArgumentException if a type is unknown or no weight is positive
+     */
+    static Map<String, Integer> parseMix(String value) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : value.split(",")) {
+            String[] typeAndWeight = part.trim().split("=");
+            String type = typeAndWeight[0].trim();
+            if (!type.equals("autocomplete") && !type.equals("pair") && !type.equals("regimen")) {
+                throw new IllegalArgumentException("Unknown request type: " + type);
+            }
+            mix.put(type, Integer.parseInt(typeAndWeight[1].trim()));
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("The request mix needs a positive weight");
+        }
+        return mix;
+    }
+
+    /**
+     * Issues requests at the given mean rate and waits a while for the outstanding ones
+     * Requests due during the warmup are sent but not measured
+     *
+     * @param rate the mean number of requests per second over all clients
+     * @param durationSeconds the measured duration
+     * @param warmupSeconds the duration before measuring starts
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void run(double rate, long durationSeconds, long warmupSeconds) throws InterruptedException {
+        long start = System.nanoTime();
+        measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        measureUntil = end;
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "loadgen-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] lastCompleted = {0};
+        progress.scheduleAtFixedRate(() -> {
+            long done = completed.sum();
+            logger.log(Level.INFO, String.format("%.0f requests/s, %d outstanding, %d dropped", (double) (done - lastCompleted[0]) / REPORT_INTERVAL_SECONDS,
+                    outstanding.get(), dropped.sum()));
+            lastCompleted[0] = done;
+        }, REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        logger.log(Level.INFO, "Sending {0} requests/s for {1} s after a {2} s warmup",
+                new Object[]{String.valueOf(rate), String.valueOf(durationSeconds), String.valueOf(warmupSeconds)});
+        Random random = new Random();
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long due = start;
+        while (due < end) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            issue(pickType(random), due);
+            //exponential gaps make the arrivals a Poisson process
+            due += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+        }
+        progress.shutdownNow();
+        long drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(DRAIN_SECONDS);
+        while (outstanding.get() > 0 && System.nanoTime() < drainUntil) {
+            Thread.sleep(100);
+        }
+        requestRunner.shutdown();
+    }
+
+    /**
+     * Picks a request type according to the mix
+     *
+     * @param random the random source
+     * @return the request type
+     */
+    private String pickType(Random random) {
+        int pick = random.nextInt(mixTotal);
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("Empty request mix");
+    }
+
+    /**
+     * Starts a request without waiting for it
+     * When too many requests are outstanding the request is dropped and counted, the generator itself must not become the bottleneck
+     *
+     * @param type the request type
+     * @param due the time the request was due in System.nanoTime terms
+     */
+    private void issue(String type, long due) {
+        if (outstanding.incrementAndGet() > MAX_OUTSTANDING) {
+            outstanding.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        requestRunner.execute(() -> {
+            boolean failed = false;
+            try {
+                send(type, clients.get(ThreadLocalRandom.current().nextInt(clients.size())));
+            } catch (RuntimeException e) {
+                failed = true;
+                logger.log(Level.FINE, "Request failed", e);
+            } finally {
+                long latency = System.nanoTime() - due;
+                if (due >= measureFrom) {
+                    histograms.get(type).record(latency);
+                    if (failed) {
+                        errors.get(type).increment();
+                    }
+                }
+                completed.increment();
+                outstanding.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Sends one request of a type and waits for its response
+     * Autocomplete looks up a drug name prefix, pair fetches the interactions of a pair and regimen fetches every pair of several drugs at once
+     *
+     * @param type the request type
+     * @param client the client to send it with
+     */
+    private void send(String type, MQQTClient client) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (type) {
+            case "autocomplete":
+                String name = drugName(random.nextInt(drugCount));
+                client.queryDrug(name.substring(0, Math.min(name.length(), 6 + random.nextInt(3))), true);
+                break;
+
+            case "pair":
+                //neighbouring names are a pair with interactions, otherwise the pair has none
+                int first = random.nextInt(drugCount);
+                int second = random.nextBoolean() ? first ^ 1 : random.nextInt(drugCount);
+                client.queryTwosides(drugName(first), drugName(second), true);
+                break;
+
+            case "regimen":
+                List<String> drugs = new ArrayList<>();
+                int size = REGIMEN_MIN_DRUGS + random.nextInt(REGIMEN_MAX_DRUGS - REGIMEN_MIN_DRUGS + 1);
+                for (int i = 0; i < size; i++) {
+                    drugs.add(drugName(random.nextInt(drugCount)));
+                }
+                List<CompletableFuture<TwosidesCol>> results = new ArrayList<>();
+                for (int i = 0; i < drugs.size(); i++) {
+                    for (int j = i + 1; j < drugs.size(); j++) {
+                        results.add(client.queryTwosidesAsync(drugs.get(i), drugs.get(j), true));
+                    }
+                }
+                CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown request type: " + type);
+        }
+    }
+
+    /**
+     * Returns the name of a synthetic drug
+     *
+     * @param index the drug index
+     * @return the drug name
+     */
+    private static String drugName(int index) {
+        return "Drug " + index;
+    }
+
+    /**
+     * Formats the measured throughput and latency percentiles of every request type and in total
+     *
+     * @return the report table
+     */
+    public String report() {
+        long measuredNanos = measureUntil - measureFrom;
+        StringBuilder report = new StringBuilder(String.format("%-13s %9s %7s %10s %9s %9s %9s %9s%n",
+                "type", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        LatencyHistogram total = new LatencyHistogram();
+        long totalErrors = 0;
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            long typeErrors = errors.get(entry.getKey()).sum();
+            report.append(formatRow(entry.getKey(), entry.getValue(), typeErrors, measuredNanos));
+            total.add(entry.getValue());
+            totalErrors += typeErrors;
+        }
+        report.append(formatRow("total", total, totalErrors, measuredNanos));
+        report.append(String.format("dropped by the generator: %d, unanswered at the end: %d%n", dropped.sum(), outstanding.get()));
+        return report.toString();
+    }
+
+    /**
+     * Formats one row of the report
+     *
+     * @param type the request type
+     * @param histogram the latencies of the type
+     * @param typeErrors the number of failed requests
+     * @param measuredNanos the measured duration
+     * @return the row
+     */
+    private static String formatRow(String type, LatencyHistogram histogram, long typeErrors, long measuredNanos) {
+        return String.format("%-13s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f%n", type, histogram.getCount(), typeErrors,
+                histogram.getCount() / (measuredNanos / 1e9), histogram.getPercentile(50) / 1e6, histogram.getPercentile(99) / 1e6,
+                histogram.getPercentile(99.9) / 1e6, histogram.getMax() / 1e6);
+    }
+}
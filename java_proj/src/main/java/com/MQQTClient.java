@@ -1,174 +1,602 @@
 package com;
 
+import java.nio.charset.StandardCharsets;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.eclipse.paho.client.mqttv3.IMqttClient;
-import org.eclipse.paho.client.mqttv3.MqttClient;
-import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
-import org.eclipse.paho.client.mqttv3.MqttMessage;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
 
 
 public class MQQTClient implements Queryable{
     private static final Logger logger = Logger.getLogger(MQQTClient.class.getName());
     private static final String REQUEST_TOPIC= "twosides/requests";
     private static final String RESPONSE_TOPIC= "twosides/responses";
-    private IMqttClient client;
+    private static final String VERSION_TOPIC= "twosides/version";
+    private static final String RESPONSE_V5_TOPIC_PREFIX= "twosides/v5/responses/";
+    private MQQTTransport transport;
+    private ScheduledFuture<?> metricsPublisher;
+    /**
+     * Topic this client receives its MQTT 5 responses on, null over MQTT 3
+     */
+    private String responseV5Topic;
     private Gson gson=new Gson();
-    private Map<String, String> responseCache = new HashMap<>();
+    private static final long RESPONSE_TIMEOUT_MILLIS = 5 * 60 * 1000; //5 minutes
+    private static final long BATCH_WINDOW_MILLIS = 5;
+    private static final int BATCH_MAX_REQUESTS = 32;
+    private static final int BATCH_MAX_BYTES = 64 * 1024;
+    private final Map<String, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+    /**
+     * Requests waiting for the next envelope, guarded by itself
+     */
+    private final List<JsonObject> batch = new ArrayList<>();
+    private int batchBytes;
+    private long batchStartedAt;
+    private final LongAdder expiredRequests = new LongAdder();
+    private final LongAdder shedBeforePublish = new LongAdder();
+    private volatile boolean bulkOnly;
+    private volatile String dataVersion;
+    private final List<Consumer<String>> versionListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService batchFlusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mqtt-batch-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final PairFilters pairFilters = new PairFilters(params -> call("pairFilter", params));
     
     /**
-     * Constructor for the MQQTClient class
+     * Constructor for the MQQTClient class, connecting over MQTT 3
      * 
      * @throws MqttException
      * @throws InterruptedException
      */
     MQQTClient(String broker) throws MqttException, InterruptedException {
+        this(broker, false);
+    }
+
+    /**
+     * Constructor for the MQQTClient class
+     * Over MQTT 5 every request is its own message, answered on a response topic of this client only
+     * 
+     * @param mqtt5 whether MQTT 5 is used if the broker supports it, the server must then run over MQTT 5 too
+     * @throws MqttException
+     * @throws InterruptedException
+     */
+    MQQTClient(String broker, boolean mqtt5) throws MqttException, InterruptedException {
         logger.log(Level.INFO, "Broker: {0}", broker);
 
         String clientId  = UUID.randomUUID().toString();
         logger.log(Level.INFO, "My ID: {0}", clientId);
 
-        client = new MqttClient(broker, clientId);
-        logger.log(Level.INFO, "Client: {0}", client);
-
-        MqttConnectOptions options = new MqttConnectOptions();
-        options.setAutomaticReconnect(true);
-        options.setCleanSession(true);
-        options.setConnectionTimeout(10);
-        logger.log(Level.INFO, "Connect options: {0}", options);
+        transport = MQQTTransport.connect(broker, clientId, mqtt5);
+        logger.log(Level.INFO, "Connected!");
 
-        client.connect(options);
-        if (!client.isConnected()) {
-            logger.log(Level.SEVERE, "NOT Connected!");
-            client.close();
-            return;
+        if (transport.supportsProperties()) {
+            responseV5Topic = RESPONSE_V5_TOPIC_PREFIX + clientId;
+            transport.subscribe(responseV5Topic, this::handleV5Response);
+        } else {
+            transport.subscribe(RESPONSE_TOPIC, this::handleResponse);
         }
-        logger.log(Level.INFO, "Connected!");
+        transport.subscribe(VERSION_TOPIC, this::handleVersion);
+        metricsPublisher = Metrics.publishPeriodically(transport, Metrics.TOPIC_PREFIX + "client/" + clientId);
+        pairFilters.refresh();
+    }
+
+    public long getExpiredRequests() { return expiredRequests.sum(); }
+    public void setBulkOnly(boolean bulkOnly) { this.bulkOnly = bulkOnly; }
+    public String getDataVersion() { return dataVersion; }
+
+    /**
+     * Registers a listener called with the new version when the server announces changed data
+     * The version known on connect does not trigger the listeners
+     *
+     * @param listener the listener, called on the MQTT callback thread
+     */
+    public void addDataVersionListener(Consumer<String> listener) {
+        versionListeners.add(listener);
+    }
+    public long getShedBeforePublish() { return shedBeforePublish.sum(); }
 
-        client.subscribe(RESPONSE_TOPIC, this::handleResponse);
+    /**
+     * Disconnects from the broker, requests still waiting for a response fail
+     */
+    public void close() {
+        metricsPublisher.cancel(false);
+        transport.close();
+        batchFlusher.shutdownNow();
+        pairFilters.close();
+        for (CompletableFuture<String> response : pending.values()) {
+            response.completeExceptionally(new IllegalStateException("Client closed"));
+        }
     }
 
     /**
      * Method to handle the response
+     * Completes the future of the request, responses of other clients are ignored
      * 
      * @param topic channel to listen to
      * @param message message received
+     * @param properties always null over MQTT 3
      */
-    private void handleResponse(String topic, MqttMessage message) {
+    private void handleResponse(String topic, byte[] message, MQQTProperties properties) {
+        Metrics.counter("mqtt.client.bytesIn").add(message.length);
         try {
-            String payload = new String(message.getPayload());
-            logger.log(Level.INFO, "Message received: {0}", payload);
+            String payload = new String(message, StandardCharsets.UTF_8);
             JsonObject rjson = JsonParser.parseString(payload).getAsJsonObject();
             String requestId = rjson.get("requestId").getAsString();
-            String responseData = rjson.get("data").toString();
-
-            synchronized (responseCache) {
-                responseCache.put(requestId, responseData);
+            logResponse(requestId, message);
+            CompletableFuture<String> response = pending.remove(requestId);
+            if (response != null) {
+                response.complete(rjson.get("data").toString());
             }
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Error handling response", e);
         }
     }
 
+    /**
+     * Method to handle an MQTT 5 response
+     * The correlation data holds the requestId, the payload is the data itself
+     *
+     * @param topic the response topic of this client
+     * @param message message received
+     * @param properties the properties carrying the correlation data
+     */
+    private void handleV5Response(String topic, byte[] message, MQQTProperties properties) {
+        Metrics.counter("mqtt.client.bytesIn").add(message.length);
+        if (properties == null || properties.getCorrelationData() == null) {
+            logger.log(Level.WARNING, "Dropped an MQTT 5 response without correlation data");
+            return;
+        }
+        String requestId = new String(properties.getCorrelationData(), StandardCharsets.UTF_8);
+        logResponse(requestId, message);
+        CompletableFuture<String> response = pending.remove(requestId);
+        if (response != null) {
+            response.complete(new String(message, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Logs a response sampled as size and hash, or in full if its request is traced
+     *
+     * @param requestId the id of the request
+     * @param message the payload of the response
+     */
+    private void logResponse(String requestId, byte[] message) {
+        if (AsyncLog.isTraced(requestId)) {
+            AsyncLog.trace(logger, "mqtt.response", () -> "Response " + requestId + ": " + new String(message, StandardCharsets.UTF_8));
+        } else {
+            AsyncLog.log(logger, Level.FINE, "mqtt.response", () -> "Response " + requestId + ": " + AsyncLog.describe(message));
+        }
+    }
+
+    /**
+     * Method to handle a data version announcement
+     * On a new version the pair filters are fetched again and the listeners flush their caches
+     *
+     * @param topic channel to listen to
+     * @param message message received
+     * @param properties unused
+     */
+    private void handleVersion(String topic, byte[] message, MQQTProperties properties) {
+        try {
+            String version = JsonParser.parseString(new String(message, StandardCharsets.UTF_8)).getAsJsonObject().get("version").getAsString();
+            String previous = dataVersion;
+            dataVersion = version;
+            if (previous == null || previous.equals(version)) {
+                return;
+            }
+            logger.log(Level.INFO, "Data version changed from {0} to {1}", new Object[]{previous, version});
+            pairFilters.refresh();
+            for (Consumer<String> listener : versionListeners) {
+                listener.accept(version);
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error handling version", e);
+        }
+    }
+
     /**
      * Method to query the drug
      * 
      * @param drugName name of the drug
      * @param like boolean value
      * @return list of strings
-     * @throws MqttException
-     * @throws InterruptedException
      */
     public List<String> queryDrug(String drugName, boolean like) {
-        try {
-            String requestId = UUID.randomUUID().toString();
-            JsonObject request = new JsonObject();
-            request.addProperty("requestId", requestId);
-            request.addProperty("action", "queryDrug");
-            JsonObject params = new JsonObject();
-            params.addProperty("drugName", drugName);
-            params.addProperty("like", like);
-            request.add("params", params);
-
-            MqttMessage requestMessage=new MqttMessage(gson.toJson(request).getBytes());
-            requestMessage.setQos(1);
-            client.publish(REQUEST_TOPIC, requestMessage);
-            String response=waitForResponse(requestId);
-            return gson.fromJson(response, List.class);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt(); // Restore the interrupt status
-            throw new RuntimeException("Thread was interrupted during MQTT query", e);
-        } catch (MqttException e) {
-            throw new RuntimeException("MQTT exception occurred during query", e);
-        }
+        JsonObject params = new JsonObject();
+        params.addProperty("drugName", drugName);
+        params.addProperty("like", like);
+        return decode("queryDrug", call("queryDrug", params), List.class);
     }
 
     /**
      * Method to query the twosides
+     * Pairs that the pair filter rules out are answered locally with an empty result
      * 
      * @param drug1Name name of the first drug
      * @param drug2Name name of the second drug
      * @param filtered boolean value
      * @return TwosidesCol object
-     * @throws MqttException
-     * @throws InterruptedException
      */
     public TwosidesCol queryTwosides(String drug1Name, String drug2Name, boolean filtered) {
+        if (pairFilters.excludes(drug1Name, drug2Name, filtered)) {
+            return new TwosidesCol(TwosidesCol.getMapStrId(drug1Name, drug2Name), new HashMap<>());
+        }
+        JsonObject params = new JsonObject();
+        params.addProperty("drug1Name", drug1Name);
+        params.addProperty("drug2Name", drug2Name);
+        params.addProperty("filtered", filtered);
+        return decode("queryTwosides", call("queryTwosides", params), TwosidesCol.class);
+    }
+
+    /**
+     * Method to query the twosides without blocking
+     * Requests issued close together share one MQTT envelope
+     * Pairs that the pair filter rules out are answered locally with an empty result
+     *
+     * @param drug1Name name of the first drug
+     * @param drug2Name name of the second drug
+     * @param filtered boolean value
+     * @return future of the TwosidesCol object
+     */
+    public CompletableFuture<TwosidesCol> queryTwosidesAsync(String drug1Name, String drug2Name, boolean filtered) {
+        return queryTwosidesAsync(drug1Name, drug2Name, filtered, RESPONSE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Method to query the twosides without blocking, giving up after the given time
+     * A request still queued for its envelope when the time is up is not published at all
+     *
+     * @param drug1Name name of the first drug
+     * @param drug2Name name of the second drug
+     * @param filtered boolean value
+     * @param timeoutMillis time the caller waits for the response in milliseconds
+     * @return future of the TwosidesCol object, failed with a TimeoutException once the time is up
+     */
+    public CompletableFuture<TwosidesCol> queryTwosidesAsync(String drug1Name, String drug2Name, boolean filtered, long timeoutMillis) {
+        if (pairFilters.excludes(drug1Name, drug2Name, filtered)) {
+            return CompletableFuture.completedFuture(new TwosidesCol(TwosidesCol.getMapStrId(drug1Name, drug2Name), new HashMap<>()));
+        }
+        JsonObject params = new JsonObject();
+        params.addProperty("drug1Name", drug1Name);
+        params.addProperty("drug2Name", drug2Name);
+        params.addProperty("filtered", filtered);
+        return submit("queryTwosides", params, timeoutMillis).thenApply(response -> decode("queryTwosides", response, TwosidesCol.class));
+    }
+
+    /**
+     * Method to query the aggregates of a drug pair without its detail rows
+     *
+     * @param drug1Name name of the first drug
+     * @param drug2Name name of the second drug
+     * @param filtered boolean value
+     * @return PairSummary object
+     */
+    public PairSummary queryPairSummary(String drug1Name, String drug2Name, boolean filtered) {
+        if (pairFilters.excludes(drug1Name, drug2Name, filtered)) {
+            return new PairSummary(drug1Name, drug2Name, 0, null, 0, 0);
+        }
+        JsonObject params = new JsonObject();
+        params.addProperty("drug1Name", drug1Name);
+        params.addProperty("drug2Name", drug2Name);
+        params.addProperty("filtered", filtered);
+        return decode("queryPairSummary", call("queryPairSummary", params), PairSummary.class);
+    }
+
+    /**
+     * Method to query one page of the interactions of a drug pair, the most severe first
+     *
+     * @param drug1Name name of the first drug
+     * @param drug2Name name of the second drug
+     * @param filtered boolean value
+     * @param after cursor of the previous page, null for the first page
+     * @param limit maximum number of rows of the page
+     * @return TwosidesPage object
+     */
+    public TwosidesPage queryTwosidesPage(String drug1Name, String drug2Name, boolean filtered, TwosidesPage.Cursor after, int limit) {
+        if (pairFilters.excludes(drug1Name, drug2Name, filtered)) {
+            return new TwosidesPage(drug1Name, drug2Name, new ArrayList<>(), false);
+        }
+        JsonObject params = new JsonObject();
+        params.addProperty("drug1Name", drug1Name);
+        params.addProperty("drug2Name", drug2Name);
+        params.addProperty("filtered", filtered);
+        params.addProperty("limit", limit);
+        if (after != null) {
+            params.add("after", gson.toJsonTree(after));
+        }
+        return decode("queryTwosidesPage", call("queryTwosidesPage", params), TwosidesPage.class);
+    }
+
+    /**
+     * Method to query every drug interacting with the given drug
+     *
+     * @param drugName name of the drug
+     * @param filtered boolean value
+     * @return list of PairSummary objects
+     */
+    public List<PairSummary> queryNeighbors(String drugName, boolean filtered) {
+        JsonObject params = new JsonObject();
+        params.addProperty("drugName", drugName);
+        params.addProperty("filtered", filtered);
+        return decode("queryNeighbors", call("queryNeighbors", params), new TypeToken<List<PairSummary>>(){}.getType());
+    }
+
+    /**
+     * Method to query the interactions reporting a condition
+     *
+     * @param conditionName name of the condition
+     * @param drugName name of a drug the pairs must contain, null for every pair
+     * @param filtered boolean value
+     * @param limit maximum number of rows
+     * @return list of Twosides objects
+     */
+    public List<Twosides> queryByCondition(String conditionName, String drugName, boolean filtered, int limit) {
+        JsonObject params = new JsonObject();
+        params.addProperty("conditionName", conditionName);
+        if (drugName != null) {
+            params.addProperty("drugName", drugName);
+        }
+        params.addProperty("filtered", filtered);
+        params.addProperty("limit", limit);
+        return decode("queryByCondition", call("queryByCondition", params), new TypeToken<List<Twosides>>(){}.getType());
+    }
+
+    /**
+     * Decodes the data of a response, the decoding is recorded as a flight recorder event
+     *
+     * @param action the action of the request
+     * @param json the data of the response as JSON
+     * @param type the type of the data
+     * @return the decoded data
+     */
+    private <T> T decode(String action, String json, Type type) {
+        JfrEvents.Json event = new JfrEvents.Json("decode", action);
+        T result = gson.fromJson(json, type);
+        event.finish(json);
+        return result;
+    }
+
+    /**
+     * Publishes a request and waits for its response
+     *
+     * @param action the action to be executed by the server
+     * @param params the parameters of the action
+     * @return the data of the response as JSON
+     */
+    private String call(String action, JsonObject params) {
         try {
-            String requestId = UUID.randomUUID().toString();
-            JsonObject request = new JsonObject();
-            request.addProperty("requestId", requestId);
-            request.addProperty("action", "queryTwosides");
-            JsonObject params = new JsonObject();
-            params.addProperty("drug1Name", drug1Name);
-            params.addProperty("drug2Name", drug2Name);
-            params.addProperty("filtered", filtered);
-            request.add("params", params);
-        
-            MqttMessage requestMessage = new MqttMessage(gson.toJson(request).getBytes());
-            requestMessage.setQos(1);
-            client.publish(REQUEST_TOPIC, requestMessage);
-            String response = waitForResponse(requestId);
-            return gson.fromJson(response, TwosidesCol.class);
+            return submit(action, params, RESPONSE_TIMEOUT_MILLIS).get();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt(); // Restore the interrupt status
             throw new RuntimeException("Thread was interrupted during MQTT query", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                //the server sheds the request on its own once the deadline sent along has passed
+                throw new RuntimeException("Timeout waiting for response", e.getCause());
+            }
+            throw new RuntimeException("MQTT exception occurred during query", e.getCause());
+        }
+    }
+
+    /**
+     * Queues a request for the next envelope
+     * The envelope is published when it reaches the size cap or when the batch window of its first request ends
+     * The request carries the absolute time the caller stops waiting, so the server can drop it after that
+     * The future fails with a TimeoutException at that time, a request still queued then is shed instead of published
+     * Interactive requests are published right away together with whatever is queued, bulk requests wait for the window
+     * Over MQTT 5 the request is published on its own right away, the broker applies the deadline through the message expiry
+     *
+     * @param action the action to be executed by the server
+     * @param params the parameters of the action
+     * @param timeoutMillis time the caller waits for the response in milliseconds
+     * @return future of the data of the response as JSON
+     */
+    private CompletableFuture<String> submit(String action, JsonObject params, long timeoutMillis) {
+        String requestId = UUID.randomUUID().toString();
+        if (responseV5Topic != null) {
+            return submitV5(requestId, action, params, timeoutMillis);
+        }
+        JsonObject request = new JsonObject();
+        request.addProperty("requestId", requestId);
+        request.addProperty("action", action);
+        request.add("params", params);
+        request.addProperty("deadline", System.currentTimeMillis() + timeoutMillis);
+        boolean interactive = !bulkOnly && QueryDispatcher.INTERACTIVE_ACTIONS.contains(action);
+        request.addProperty("priority", interactive ? "interactive" : "bulk");
+
+        long submittedAt = System.nanoTime();
+        CompletableFuture<String> response = track(requestId, submittedAt, timeoutMillis);
+
+        List<JsonObject> full = null;
+        synchronized (batch) {
+            if (batch.isEmpty()) {
+                batchStartedAt = submittedAt;
+            }
+            batch.add(request);
+            batchBytes += request.toString().length();
+            if (interactive || batch.size() >= BATCH_MAX_REQUESTS || batchBytes >= BATCH_MAX_BYTES) {
+                full = takeBatch();
+            } else if (batch.size() == 1) {
+                batchFlusher.schedule(this::flushBatch, BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            publishBatch(full);
+        }
+        return response;
+    }
+
+    /**
+     * Publishes a request as an MQTT 5 message
+     * Routing, expiry and priority travel as properties, the payload only holds the action and its params
+     *
+     * @param requestId the correlation data of the request
+     * @param action the action to be executed by the server
+     * @param params the parameters of the action
+     * @param timeoutMillis time the caller waits for the response in milliseconds
+     * @return future of the data of the response as JSON
+     */
+    private CompletableFuture<String> submitV5(String requestId, String action, JsonObject params, long timeoutMillis) {
+        JsonObject request = new JsonObject();
+        request.addProperty("action", action);
+        request.add("params", params);
+        boolean interactive = !bulkOnly && QueryDispatcher.INTERACTIVE_ACTIONS.contains(action);
+        MQQTProperties properties = new MQQTProperties(responseV5Topic, requestId.getBytes(StandardCharsets.UTF_8),
+                Math.max(1, (timeoutMillis + 999) / 1000), MQQTProperties.JSON_CONTENT_TYPE, interactive ? "interactive" : "bulk");
+
+        CompletableFuture<String> response = track(requestId, System.nanoTime(), timeoutMillis);
+        try {
+            byte[] payload = request.toString().getBytes(StandardCharsets.UTF_8);
+            transport.publish(MQQTServer.REQUEST_V5_TOPIC, payload, false, properties)
+                    .whenComplete((delivered, error) -> {
+                        if (error != null) {
+                            response.completeExceptionally(error);
+                        }
+                    });
+            Metrics.counter("mqtt.client.bytesOut").add(payload.length);
         } catch (MqttException e) {
-            throw new RuntimeException("MQTT exception occurred during query", e);
+            response.completeExceptionally(e);
         }
+        return response;
     }
 
     /**
-     * Method to wait for the response
-     * 
-     * @param requestId id of the request
-     * @return response
-     * @throws InterruptedException
+     * Registers the future of a request, it fails with a TimeoutException when the caller stops waiting
+     * A completed or expired request is no longer pending, so it is shed if its envelope was not published yet
+     *
+     * @param requestId the id the response is matched by
+     * @param submittedAt the submission time as returned by System.nanoTime
+     * @param timeoutMillis time the caller waits for the response in milliseconds
+     * @return the future of the data of the response as JSON
+     */
+    private CompletableFuture<String> track(String requestId, long submittedAt, long timeoutMillis) {
+        CompletableFuture<String> response = new CompletableFuture<>();
+        pending.put(requestId, response);
+        response.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((data, error) -> {
+            pending.remove(requestId);
+            if (error instanceof TimeoutException) {
+                expiredRequests.increment();
+            }
+            recordCall(submittedAt, error);
+        });
+        return response;
+    }
+
+    /**
+     * Records the round trip of a request from its submission to its response, or counts it as failed
+     *
+     * @param submittedAt the submission time as returned by System.nanoTime
+     * @param error the failure, null if answered
+     */
+    private static void recordCall(long submittedAt, Throwable error) {
+        if (error == null) {
+            Metrics.recordSince("mqtt.client.rpc", submittedAt);
+        } else {
+            Metrics.counter("mqtt.client.rpc.errors").increment();
+        }
+    }
+
+    /**
+     * Removes the queued requests, the caller holds the batch lock
+     * The time the oldest request waited for its envelope is recorded in the mqtt.client.batchWait histogram
+     *
+     * @return the queued requests
      */
-    private String waitForResponse(String requestId) throws InterruptedException {
-        int timeout=300000; //5 minutes
-        int interval=100;
-        int elapsed=0;
+    private List<JsonObject> takeBatch() {
+        if (!batch.isEmpty()) {
+            Metrics.recordSince("mqtt.client.batchWait", batchStartedAt);
+        }
+        List<JsonObject> requests = new ArrayList<>(batch);
+        batch.clear();
+        batchBytes = 0;
+        return requests;
+    }
 
-        while (elapsed<timeout) {
-            synchronized (responseCache) {
-                if (responseCache.containsKey(requestId)) {
-                    return responseCache.remove(requestId);
-                }
+    /**
+     * Publishes the queued requests when the batch window ends
+     */
+    private void flushBatch() {
+        List<JsonObject> requests;
+        synchronized (batch) {
+            requests = takeBatch();
+        }
+        if (!requests.isEmpty()) {
+            publishBatch(requests);
+        }
+    }
+
+    /**
+     * Publishes requests as one envelope, the server answers each request with its own response
+     * The futures of the requests fail if the envelope cannot be published
+     *
+     * @param requests the requests of the envelope
+     */
+    private void publishBatch(List<JsonObject> requests) {
+        JsonArray envelopeRequests = new JsonArray();
+        for (JsonObject request : requests) {
+            if (pending.containsKey(request.get("requestId").getAsString())) {
+                envelopeRequests.add(request);
+            } else {
+                //the caller gave up while the request was queued
+                shedBeforePublish.increment();
+            }
+        }
+        if (envelopeRequests.size() == 0) {
+            return;
+        }
+        JsonObject envelope = new JsonObject();
+        envelope.add("requests", envelopeRequests);
+        try {
+            byte[] payload = gson.toJson(envelope).getBytes(StandardCharsets.UTF_8);
+            transport.publish(REQUEST_TOPIC, payload, false, null)
+                    .whenComplete((delivered, error) -> {
+                        if (error != null) {
+                            failAll(requests, error);
+                        }
+                    });
+            Metrics.counter("mqtt.client.bytesOut").add(payload.length);
+            logger.log(Level.FINE, "Published an envelope of {0} requests", envelopeRequests.size());
+        } catch (MqttException e) {
+            failAll(requests, e);
+        }
+    }
+
+    /**
+     * Fails the futures of requests that could not be published
+     *
+     * @param requests the requests
+     * @param error the cause
+     */
+    private void failAll(List<JsonObject> requests, Throwable error) {
+        for (JsonObject request : requests) {
+            CompletableFuture<String> response = pending.remove(request.get("requestId").getAsString());
+            if (response != null) {
+                response.completeExceptionally(error);
             }
-            Thread.sleep(interval);
-            elapsed+=interval;
         }
-        throw new InterruptedException("Timeout waiting for response");
     }
 }
@@ -0,0 +1,38 @@
+package com;
+
+/**
+ * Request/response properties of an MQTT 5 message
+ * Over MQTT 3 none of them are carried and a received message has no properties
+ */
+public class MQQTProperties {
+    public static final String JSON_CONTENT_TYPE = "application/json";
+    private final String responseTopic;
+    private final byte[] correlationData;
+    private final long expirySeconds;
+    private final String contentType;
+    private final String priority;
+
+    /**
+     * Constructs the properties of a message
+     *
+     * @param responseTopic the topic the response is published to, or null
+     * @param correlationData the bytes the response echoes back, or null
+     * @param expirySeconds the seconds after which the broker discards the message, 0 for never
+     * @param contentType the MIME type of the payload, or null
+     * @param priority the priority user property, interactive or bulk, or null
+     */
+    public MQQTProperties(String responseTopic, byte[] correlationData, long expirySeconds, String contentType, String priority) {
+        this.responseTopic = responseTopic;
+        this.correlationData = correlationData;
+        this.expirySeconds = expirySeconds;
+        this.contentType = contentType;
+        this.priority = priority;
+    }
+
+    //Getters
+    public String getResponseTopic() { return responseTopic; }
+    public byte[] getCorrelationData() { return correlationData; }
+    public long getExpirySeconds() { return expirySeconds; }
+    public String getContentType() { return contentType; }
+    public String getPriority() { return priority; }
+}
@@ -1,35 +1,101 @@
 package com;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.eclipse.paho.client.mqttv3.IMqttClient;
-import org.eclipse.paho.client.mqttv3.MqttClient;
-import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
-import org.eclipse.paho.client.mqttv3.MqttMessage;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 public class MQQTServer {
     private static final Logger logger = Logger.getLogger(MQQTServer.class.getName());
     private static final String REQUEST_TOPIC = "twosides/requests";
+    /**
+     * Requests of MQTT 5 clients, each answered on the response topic of its message
+     */
+    static final String REQUEST_V5_TOPIC = "twosides/v5/requests";
     private static final String RESPONSE_TOPIC = "twosides/responses";
-    private IMqttClient client;
+    private static final String VERSION_TOPIC = "twosides/version";
+    private static final long VERSION_CHECK_SECONDS = 30;
+    private static final int REQUEST_THREADS = 8;
+    private static final int INTERACTIVE_THREADS = 2;
+    private static final int INTERACTIVE_LANE = 0;
+    private static final int BULK_LANE = 1;
+    private static final int INTERACTIVE_WEIGHT = 4;
+    private static final int BULK_WEIGHT = 1;
+    private static final long RESPONSE_CACHE_BYTES = 64L * 1024 * 1024; //64 MB
+    private static final long RESPONSE_CACHE_MAX_AGE_MILLIS = 5 * 60 * 1000; //5 minutes
+    private static final int CACHE_REPORT_INTERVAL = 1000;
+    /**
+     * Actions whose responses are not cached: pair filters are versioned on their own and batches are cached per request
+     */
+    private static final Set<String> UNCACHED_ACTIONS = Set.of("pairFilter", "dataVersion", "batch");
+    private MQQTTransport transport;
+    private ScheduledFuture<?> metricsPublisher;
     private DatabaseQuery dbQuery;
+    private QueryDispatcher dispatcher;
     private Gson gson;
+    private final LongAdder shedQueued = new LongAdder();
+    private final LongAdder shedInFlight = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final ResponseCache responseCache = new ResponseCache(RESPONSE_CACHE_BYTES, RESPONSE_CACHE_MAX_AGE_MILLIS);
+    private final ScheduledExecutorService versionChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "data-version-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Runs the requests off the MQTT callback thread, so requests of an envelope run in parallel and identical requests can be coalesced
+     * Interactive requests get four turns for every bulk turn and two workers of their own
+     */
+    private final WeightedFairExecutor workers = new WeightedFairExecutor("mqtt-request", REQUEST_THREADS, INTERACTIVE_THREADS, INTERACTIVE_WEIGHT, BULK_WEIGHT);
 
     /**
-     * Constructor for the MQQTServer class
+     * Constructor for the MQQTServer class, connecting over MQTT 3
      * 
      * @throws MqttException
      */
     public MQQTServer(String broker, String url, String user, String password) throws MqttException {
-        this.dbQuery = new DatabaseQuery();
-        this.dbQuery.connectInitially(url, user, password);
+        this(broker, url, user, password, false);
+    }
+
+    /**
+     * Constructor for the MQQTServer class
+     * Over MQTT 5 the requests of MQTT 3 clients are served as well
+     * 
+     * @param mqtt5 whether MQTT 5 is used if the broker supports it
+     * @throws MqttException
+     */
+    public MQQTServer(String broker, String url, String user, String password, boolean mqtt5) throws MqttException {
+        this(broker, connectDatabase(url, user, password), mqtt5);
+    }
+
+    /**
+     * Constructor for the MQQTServer class serving any backend, e.g. an in-memory snapshot for load tests
+     * Pair filters and data version announcements are only available with a database
+     *
+     * @param source the backend answering the requests
+     * @param mqtt5 whether MQTT 5 is used if the broker supports it
+     * @throws MqttException
+     */
+    public MQQTServer(String broker, Queryable source, boolean mqtt5) throws MqttException {
+        if (source instanceof DatabaseQuery) {
+            this.dbQuery = (DatabaseQuery) source;
+            this.dbQuery.maintainDerivedTables();
+            this.dbQuery.getPairFilter(true); //starts building the pair filters before the first request
+        }
+        this.dispatcher = new QueryDispatcher(source);
         this.gson = new Gson();
 
         logger.log(Level.INFO, "Broker: {0}", broker);
@@ -37,89 +103,313 @@ public class MQQTServer {
         String clientId = UUID.randomUUID().toString();
         logger.log(Level.INFO, "Client ID: {0}", clientId);
 
-        client = new MqttClient(broker, clientId);
+        transport = MQQTTransport.connect(broker, clientId, mqtt5);
+        logger.log(Level.INFO, "Connected to the broker");
 
-        MqttConnectOptions options = new MqttConnectOptions();
-        options.setAutomaticReconnect(true);
-        options.setCleanSession(true);
-        options.setConnectionTimeout(10);
+        transport.subscribe(REQUEST_TOPIC, this::handleMessage);
+        if (transport.supportsProperties()) {
+            transport.subscribe(REQUEST_V5_TOPIC, this::handleV5Message);
+        }
+        registerGauges();
+        metricsPublisher = Metrics.publishPeriodically(transport, Metrics.TOPIC_PREFIX + "server/" + clientId);
 
-        client.connect(options);
-        if (!client.isConnected()) {
-            logger.log(Level.SEVERE, "Failed to connect to the broker");
-            client.close();
-            return;
+        //the version is re-read periodically even while no requests arrive, so clients learn about reloads quickly
+        if (dbQuery != null) {
+            dbQuery.addDataVersionListener(this::dataVersionChanged);
+            versionChecker.scheduleWithFixedDelay(() -> dbQuery.getDataVersion(), 0, VERSION_CHECK_SECONDS, TimeUnit.SECONDS);
         }
-        logger.log(Level.INFO, "Connected to the broker");
+    }
 
-        client.subscribe(REQUEST_TOPIC, this::handleMessage);
+    /**
+     * Connects to the database
+     *
+     * @param url the database connection URL
+     * @param user the database username
+     * @param password the database password
+     * @return the database backend
+     */
+    private static DatabaseQuery connectDatabase(String url, String user, String password) {
+        DatabaseQuery.connectInitially(url, user, password);
+        return new DatabaseQuery();
     }
 
+    /**
+     * Exposes the queue lengths, the running and shed requests, the broker connection and the response cache of this server as gauges
+     */
+    private void registerGauges() {
+        Metrics.gauge("mqtt.server.queued.interactive", () -> workers.getQueued(INTERACTIVE_LANE));
+        Metrics.gauge("mqtt.server.queued.bulk", () -> workers.getQueued(BULK_LANE));
+        Metrics.gauge("mqtt.server.inFlight", inFlight::sum);
+        Metrics.gauge("mqtt.server.connected", () -> transport.isConnected() ? 1 : 0);
+        Metrics.gauge("mqtt.server.shed.queued", shedQueued::sum);
+        Metrics.gauge("mqtt.server.shed.inFlight", shedInFlight::sum);
+        Metrics.gauge("mqtt.server.cache.hits", responseCache::getHits);
+        Metrics.gauge("mqtt.server.cache.misses", responseCache::getMisses);
+        Metrics.gauge("mqtt.server.cache.bytes", responseCache::getBytes);
+    }
+
+    /**
+     * Stops serving: disconnects from the broker and lets the running requests finish
+     */
+    public void stop() {
+        versionChecker.shutdownNow();
+        metricsPublisher.cancel(false);
+        transport.close();
+        try {
+            workers.shutdown(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info("MQTT Server stopped");
+    }
+
+    /**
+     * Drops the cached responses of the old data and announces the new version on the retained version topic
+     * Clients connecting later receive the retained message right after subscribing
+     *
+     * @param version the new data version
+     */
+    private void dataVersionChanged(String version) {
+        responseCache.clear();
+        try {
+            JsonObject json = new JsonObject();
+            json.addProperty("version", version);
+            json.addProperty("publishedAt", System.currentTimeMillis());
+            transport.publish(VERSION_TOPIC, json.toString().getBytes(StandardCharsets.UTF_8), true, null);
+            logger.log(Level.INFO, "Published data version {0}", version);
+        } catch (MqttException e) {
+            logger.log(Level.SEVERE, "Failed to publish the data version", e);
+        }
+    }
+
+    public long getShedQueued() { return shedQueued.sum(); }
+    public long getShedInFlight() { return shedInFlight.sum(); }
+    public ResponseCache getResponseCache() { return responseCache; }
+
     /**
      * Handles the incoming message
+     * An envelope of several requests is split up, every request runs on the worker pool and is answered as soon as it completes
      * 
      * @param topic
      * @param message
+     * @param properties
      */
-    private void handleMessage(String topic, MqttMessage message) {
+    private void handleMessage(String topic, byte[] message, MQQTProperties properties) {
+        long receivedAt = System.nanoTime();
+        Metrics.counter("mqtt.server.bytesIn").add(message.length);
         try {
-            String payload = new String(message.getPayload());
-            logger.log(Level.INFO, "Received message: {0}", payload);
+            String payload = new String(message, StandardCharsets.UTF_8);
+            AsyncLog.log(logger, Level.INFO, "mqtt.received", () -> "Received message: " + AsyncLog.describe(message));
 
             JsonObject json = JsonParser.parseString(payload).getAsJsonObject();
-            String method = json.get("action").getAsString();
-            JsonObject params = json.getAsJsonObject("params");
-
-            logger.log(Level.INFO, "Action: {0}", method);
-            logger.log(Level.INFO, "Params: {0}", params);
-
-            String response;
-
-            switch (method) {
-                case "queryTwosides":
-                    String drug1Name = params.get("drug1Name").getAsString();
-                    String drug2Name = params.get("drug2Name").getAsString();
-                    boolean filtered = params.get("filtered").getAsBoolean();
+            if (json.has("requests")) {
+                for (JsonElement element : json.getAsJsonArray("requests")) {
+                    JsonObject request = element.getAsJsonObject();
+                    workers.execute(laneOf(request), () -> handleRequest(request, null, receivedAt));
+                }
+            } else {
+                workers.execute(laneOf(json), () -> handleRequest(json, null, receivedAt));
+            }
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "An error occurred while handling the message", e);
+        }
+    }
 
-                    response = gson.toJson(dbQuery.queryTwosides(drug1Name, drug2Name, filtered));
-                    break;
+    /**
+     * Handles a request of an MQTT 5 client
+     * The lane comes from the priority user property and the deadline from the remaining message expiry, the payload only holds the action and its params
+     *
+     * @param topic
+     * @param message
+     * @param properties the properties carrying the response topic and correlation data
+     */
+    private void handleV5Message(String topic, byte[] message, MQQTProperties properties) {
+        long receivedAt = System.nanoTime();
+        Metrics.counter("mqtt.server.bytesIn").add(message.length);
+        try {
+            if (properties == null || properties.getResponseTopic() == null) {
+                logger.log(Level.WARNING, "Dropped an MQTT 5 request without response topic");
+                return;
+            }
+            long deadline = properties.getExpirySeconds() > 0 ? System.currentTimeMillis() + properties.getExpirySeconds() * 1000 : 0;
+            JsonObject json = JsonParser.parseString(new String(message, StandardCharsets.UTF_8)).getAsJsonObject();
+            if (deadline > 0) {
+                json.addProperty("deadline", deadline);
+            }
+            if (properties.getPriority() != null) {
+                json.addProperty("priority", properties.getPriority());
+            }
+            workers.execute(laneOf(json), () -> handleRequest(json, properties, receivedAt));
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "An error occurred while handling the message", e);
+        }
+    }
 
-                case "queryDrug":
-                    String drugName = params.get("drugName").getAsString();
-                    boolean like = params.get("like").getAsBoolean();
+    /**
+     * Picks the lane of a request from its priority field, or from its action if the client sent none
+     *
+     * @param request the request
+     * @return the interactive or the bulk lane
+     */
+    private static int laneOf(JsonObject request) {
+        if (request.has("priority")) {
+            return request.get("priority").getAsString().equals("bulk") ? BULK_LANE : INTERACTIVE_LANE;
+        }
+        return QueryDispatcher.INTERACTIVE_ACTIONS.contains(request.get("action").getAsString()) ? INTERACTIVE_LANE : BULK_LANE;
+    }
 
-                    response = gson.toJson(dbQuery.queryDrug(drugName, like));
-                    break;
+    /**
+     * Runs a single request and publishes its response
+     * A request whose deadline passed while it was queued is dropped, one that expires while running has its statements cancelled and gets no response
+     * The request and its response are logged sampled as size and hash, in full if the request is traced
+     *
+     * @param json the request with its action, params, optional deadline and, over MQTT 3, its requestId
+     * @param replyTo the properties of an MQTT 5 request, null for an MQTT 3 request
+     * @param receivedAt the time the message arrived as returned by System.nanoTime
+     */
+    private void handleRequest(JsonObject json, MQQTProperties replyTo, long receivedAt) {
+        Metrics.recordSince("mqtt.server.queueWait", receivedAt);
+        long deadline = json.has("deadline") ? json.get("deadline").getAsLong() : 0;
+        if (deadline > 0 && System.currentTimeMillis() >= deadline) {
+            shedQueued.increment();
+            logger.log(Level.FINE, "Dropped expired request {0}", json.get("action"));
+            return;
+        }
+        RequestDeadline.set(deadline);
+        inFlight.increment();
+        try {
+            String method = json.get("action").getAsString();
+            JsonObject params = json.getAsJsonObject("params");
+            String requestId = requestIdOf(json, replyTo);
+            boolean traced = AsyncLog.isTraced(requestId);
+            if (traced) {
+                AsyncLog.trace(logger, "mqtt.request", () -> "Request " + requestId + ": " + json);
+            } else {
+                AsyncLog.log(logger, Level.INFO, "mqtt.request", () -> "Request " + requestId + ": " + method + ", params " + AsyncLog.describe(params));
+            }
 
-                default:
-                    response = gson.toJson("Unknown method: " + method);
+            boolean cacheable = dispatcher.supports(method) && !UNCACHED_ACTIONS.contains(method) && params != null;
+            String cacheKey = cacheable ? QueryDispatcher.requestKey(method, params) : null;
+            byte[] data = cacheable ? responseCache.get(cacheKey) : null;
+            //taken before the query, a response computed across a data change is not cached
+            long cacheGeneration = responseCache.getGeneration();
+            if (data == null) {
+                String response;
+                try {
+                    response = dispatcher.dispatch(method, params);
+                } catch (IllegalArgumentException e) {
+                    response = gson.toJson(e.getMessage());
+                    cacheable = false;
+                } catch (RequestDeadline.ExpiredException e) {
+                    if (RequestDeadline.isExpired()) {
+                        throw e;
+                    }
+                    //the coalesced execution ran out of the deadline of another request, this one still has time
+                    response = dispatcher.dispatch(method, params);
+                }
+                data = response.getBytes(StandardCharsets.UTF_8);
+                //the lookups answer null when the database could not be queried, a failure is not cached so the next request retries it
+                if (cacheable && !response.equals("null")) {
+                    responseCache.put(cacheKey, data, cacheGeneration);
+                }
+            }
+            if (cacheable && (responseCache.getHits() + responseCache.getMisses()) % CACHE_REPORT_INTERVAL == 0) {
+                logger.log(Level.INFO, String.format("Response cache: %.1f%% hits, %d entries, %d KB", responseCache.getHitRate() * 100,
+                        responseCache.getSize(), responseCache.getBytes() / 1024));
             }
 
-            publishResponse(response, json.get("requestId").getAsString());
+            if (replyTo != null) {
+                publishV5Response(data, replyTo, deadline);
+            } else {
+                publishResponse(data, requestId);
+            }
+            byte[] response = data;
+            if (traced) {
+                AsyncLog.trace(logger, "mqtt.response", () -> "Response " + requestId + ": " + new String(response, StandardCharsets.UTF_8));
+            } else {
+                AsyncLog.log(logger, Level.FINE, "mqtt.response", () -> "Response " + requestId + ": " + AsyncLog.describe(response));
+            }
+            long elapsed = System.nanoTime() - receivedAt;
+            Metrics.histogram("mqtt.server.request").record(elapsed);
+            Metrics.histogram("mqtt.server.action." + method).record(elapsed);
+            logger.log(Level.FINE, "Coalesced requests so far: {0}", dispatcher.getSingleFlight().getCoalesced());
+        } catch (RequestDeadline.ExpiredException e) {
+            shedInFlight.increment();
+            logger.log(Level.FINE, "Dropped request {0} that expired while running", json.get("action"));
         } catch (Exception e) {
-            logger.log(Level.SEVERE, "An error occurred while handling the message", e);
+            logger.log(Level.SEVERE, "An error occurred while handling the request", e);
+        } finally {
+            inFlight.decrement();
+            RequestDeadline.clear();
         }
     }
 
+    /**
+     * Returns the id of a request, used for logging and tracing
+     *
+     * @param json the request
+     * @param replyTo the properties of an MQTT 5 request, null for an MQTT 3 request
+     * @return the requestId of an MQTT 3 request or the correlation data of an MQTT 5 request, null if it has none
+     */
+    private static String requestIdOf(JsonObject json, MQQTProperties replyTo) {
+        if (replyTo == null) {
+            return json.get("requestId").getAsString();
+        }
+        return replyTo.getCorrelationData() == null ? null : new String(replyTo.getCorrelationData(), StandardCharsets.UTF_8);
+    }
+
     /**
      * Publishes the response
+     * The serialized data is spliced into the envelope as is, only the requestId is encoded per request
      * 
-     * @param response
+     * @param data the UTF-8 JSON of the response data
      * @param requestID
      * @throws MqttException
      */
-    private void publishResponse(String response, String requestID) throws MqttException {
+    private void publishResponse(byte[] data, String requestID) throws MqttException {
         try {
-            JsonObject responseJson = new JsonObject();
-            responseJson.addProperty("requestId", requestID);
-            responseJson.add("data", JsonParser.parseString(response)); 
-            MqttMessage responseMessage = new MqttMessage(responseJson.toString().getBytes());
-            responseMessage.setQos(1);
-            client.publish(RESPONSE_TOPIC, responseMessage);
-            logger.log(Level.INFO, "Published response: {0}", responseMessage);
+            byte[] head = ("{\"requestId\":" + gson.toJson(requestID) + ",\"data\":").getBytes(StandardCharsets.UTF_8);
+            byte[] payload = new byte[head.length + data.length + 1];
+            System.arraycopy(head, 0, payload, 0, head.length);
+            System.arraycopy(data, 0, payload, head.length, data.length);
+            payload[payload.length - 1] = '}';
+            transport.publish(RESPONSE_TOPIC, payload, false, null).whenComplete(MQQTServer::logDeliveryFailure);
+            Metrics.counter("mqtt.server.bytesOut").add(payload.length);
 
         } catch (Exception e) {
             logger.log(Level.SEVERE, "Failed to publish response", e);
         }
     }
+
+    /**
+     * Publishes the response of an MQTT 5 request to its response topic
+     * The data is the whole payload, the correlation data of the request identifies it and the response expires with the request
+     *
+     * @param data the UTF-8 JSON of the response data
+     * @param replyTo the properties of the request
+     * @param deadline the deadline of the request, 0 for none
+     */
+    private void publishV5Response(byte[] data, MQQTProperties replyTo, long deadline) {
+        try {
+            long expirySeconds = deadline > 0 ? Math.max(1, (deadline - System.currentTimeMillis() + 999) / 1000) : 0;
+            transport.publish(replyTo.getResponseTopic(), data, false,
+                    new MQQTProperties(null, replyTo.getCorrelationData(), expirySeconds, MQQTProperties.JSON_CONTENT_TYPE, null))
+                    .whenComplete(MQQTServer::logDeliveryFailure);
+            Metrics.counter("mqtt.server.bytesOut").add(data.length);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Failed to publish response", e);
+        }
+    }
+
+    /**
+     * Logs a response the broker did not acknowledge, the client times out waiting for it
+     *
+     * @param delivered unused
+     * @param error the delivery failure, null if delivered
+     */
+    private static void logDeliveryFailure(Void delivered, Throwable error) {
+        if (error != null) {
+            logger.log(Level.SEVERE, "Failed to publish response", error);
+        }
+    }
 }
@@ -0,0 +1,92 @@
+package com;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+/**
+ * Connection to the MQTT broker used by the server and the client, over MQTT 5 or MQTT 3
+ * Only MQTT 5 carries the message properties, so requests can be routed and expired without parsing the payload
+ * Failures of either protocol are reported as MQTT 3 exceptions
+ */
+public interface MQQTTransport {
+
+    /**
+     * Receives the messages of a subscription
+     */
+    @FunctionalInterface
+    interface Handler {
+        /**
+         * Handles a received message
+         *
+         * @param topic the topic the message was published to
+         * @param payload the payload
+         * @param properties the MQTT 5 properties, null over MQTT 3
+         */
+        void handle(String topic, byte[] payload, MQQTProperties properties);
+    }
+
+    /**
+     * Connects to the broker, preferring MQTT 5 if asked to
+     * A broker refusing MQTT 5 is connected to over MQTT 3 instead
+     *
+     * @param broker the broker URL
+     * @param clientId the client ID
+     * @param mqtt5 whether MQTT 5 is tried first
+     * @return the connected transport
+     * @throws MqttException if no connection could be established
+     */
+    static MQQTTransport connect(String broker, String clientId, boolean mqtt5) throws MqttException {
+        Logger logger = Logger.getLogger(MQQTTransport.class.getName());
+        if (mqtt5) {
+            try {
+                return new MQQTv5Transport(broker, clientId);
+            } catch (MqttException e) {
+                logger.log(Level.WARNING, "MQTT 5 connection failed, falling back to MQTT 3: {0}", e.getMessage());
+            }
+        }
+        return new MQQTv3Transport(broker, clientId);
+    }
+
+    /**
+     * Checks whether messages carry MQTT 5 properties
+     *
+     * @return true over MQTT 5
+     */
+    boolean supportsProperties();
+
+    /**
+     * Checks whether the connection to the broker is up, it is re-established automatically after a loss
+     *
+     * @return true while connected
+     */
+    boolean isConnected();
+
+    /**
+     * Subscribes to a topic with QoS 1
+     *
+     * @param topic the topic filter
+     * @param handler the handler of the received messages, called on the MQTT callback thread
+     * @throws MqttException if the subscription fails
+     */
+    void subscribe(String topic, Handler handler) throws MqttException;
+
+    /**
+     * Publishes a message with QoS 1 without waiting for the broker's acknowledgement
+     *
+     * @param topic the topic
+     * @param payload the payload
+     * @param retained whether the broker keeps the message for later subscribers
+     * @param properties the MQTT 5 properties, ignored over MQTT 3, or null
+     * @return future completed once the broker acknowledged the message, failed if the delivery failed
+     * @throws MqttException if the message cannot be queued for publishing
+     */
+    CompletableFuture<Void> publish(String topic, byte[] payload, boolean retained, MQQTProperties properties) throws MqttException;
+
+    /**
+     * Disconnects from the broker
+     */
+    void close();
+}
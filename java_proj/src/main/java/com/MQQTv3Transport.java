@@ -0,0 +1,107 @@
+package com;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+/**
+ * MQTT 3.1.1 transport, messages carry no properties so requests and responses identify themselves in the payload
+ * Publishing does not wait for the acknowledgement, a worker blocked on every round trip to the broker caps the throughput
+ * Only when the in-flight window is full does a publish block until an acknowledgement frees a slot
+ */
+public class MQQTv3Transport implements MQQTTransport {
+    private static final Logger logger = Logger.getLogger(MQQTv3Transport.class.getName());
+    /**
+     * QoS 1 messages awaiting their acknowledgement, Paho's default of 10 fails publishes as soon as the server answers in parallel
+     */
+    private static final int MAX_INFLIGHT = 1000;
+    private final IMqttAsyncClient client;
+    private final Semaphore inflight = new Semaphore(MAX_INFLIGHT);
+
+    /**
+     * Connects to the broker
+     *
+     * @param broker the broker URL
+     * @param clientId the client ID
+     * @throws MqttException if the connection fails
+     */
+    public MQQTv3Transport(String broker, String clientId) throws MqttException {
+        client = new MqttAsyncClient(broker, clientId, null);
+
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setAutomaticReconnect(true);
+        options.setCleanSession(true);
+        options.setConnectionTimeout(10);
+        options.setMaxInflight(MAX_INFLIGHT);
+
+        client.connect(options).waitForCompletion();
+        logger.log(Level.INFO, "Connected to {0} over MQTT 3", broker);
+    }
+
+    @Override
+    public boolean supportsProperties() {
+        return false;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return client.isConnected();
+    }
+
+    @Override
+    public void subscribe(String topic, Handler handler) throws MqttException {
+        Handler traced = JfrEvents.MqttReceive.traced(handler);
+        client.subscribe(topic, 1, (receivedTopic, message) -> traced.handle(receivedTopic, message.getPayload(), null)).waitForCompletion();
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(String topic, byte[] payload, boolean retained, MQQTProperties properties) throws MqttException {
+        MqttMessage message = new MqttMessage(payload);
+        message.setQos(1);
+        message.setRetained(retained);
+        CompletableFuture<Void> delivery = new CompletableFuture<>();
+        JfrEvents.MqttPublish event = new JfrEvents.MqttPublish(topic, payload.length);
+        inflight.acquireUninterruptibly();
+        try {
+            client.publish(topic, message, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                    inflight.release();
+                    event.finish(true);
+                    delivery.complete(null);
+                }
+
+                @Override
+                public void onFailure(IMqttToken token, Throwable exception) {
+                    inflight.release();
+                    event.finish(false);
+                    delivery.completeExceptionally(exception);
+                }
+            });
+        } catch (MqttException | RuntimeException e) {
+            inflight.release();
+            event.finish(false);
+            throw e;
+        }
+        return delivery;
+    }
+
+    @Override
+    public void close() {
+        try {
+            client.disconnect().waitForCompletion();
+            client.close();
+        } catch (MqttException e) {
+            logger.log(Level.WARNING, "Failed to disconnect from the broker", e);
+        }
+    }
+}
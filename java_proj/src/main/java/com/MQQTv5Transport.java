@@ -0,0 +1,170 @@
+package com;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.mqttv5.client.IMqttMessageListener;
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttActionListener;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.MqttSubscription;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+
+/**
+ * MQTT 5 transport, the request/response properties travel in the message headers
+ * The broker discards a message once its expiry interval passes and hands on the remaining interval to the receiver
+ * Like over MQTT 3, publishing does not wait for the acknowledgement, up to the receive maximum the broker announced
+ */
+public class MQQTv5Transport implements MQQTTransport {
+    private static final Logger logger = Logger.getLogger(MQQTv5Transport.class.getName());
+    private static final String PRIORITY_PROPERTY = "priority";
+    private static final int MAX_INFLIGHT = 1000;
+    private final MqttAsyncClient client;
+    private final Semaphore inflight;
+
+    /**
+     * Connects to the broker
+     *
+     * @param broker the broker URL
+     * @param clientId the client ID
+     * @throws MqttException if the connection fails, also if the broker does not speak MQTT 5
+     */
+    public MQQTv5Transport(String broker, String clientId) throws MqttException {
+        try {
+            client = new MqttAsyncClient(broker, clientId, null);
+
+            MqttConnectionOptions options = new MqttConnectionOptions();
+            options.setAutomaticReconnect(true);
+            options.setCleanStart(true);
+            options.setConnectionTimeout(10);
+
+            IMqttToken connected = client.connect(options);
+            connected.waitForCompletion();
+            Integer receiveMaximum = connected.getResponseProperties() == null ? null : connected.getResponseProperties().getReceiveMaximum();
+            inflight = new Semaphore(receiveMaximum == null ? MAX_INFLIGHT : Math.min(MAX_INFLIGHT, receiveMaximum));
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw new MqttException(e.getReasonCode(), e);
+        }
+        logger.log(Level.INFO, "Connected to {0} over MQTT 5", broker);
+    }
+
+    @Override
+    public boolean supportsProperties() {
+        return true;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return client.isConnected();
+    }
+
+    @Override
+    public void subscribe(String topic, Handler handler) throws MqttException {
+        try {
+            Handler traced = JfrEvents.MqttReceive.traced(handler);
+            IMqttMessageListener listener = (receivedTopic, message) -> traced.handle(receivedTopic, message.getPayload(), toProperties(message.getProperties()));
+            //the single subscription overloads of Paho 1.2.5 fail, the array variant is the one that works
+            client.subscribe(new MqttSubscription[]{new MqttSubscription(topic, 1)}, null, null, new IMqttMessageListener[]{listener}, new MqttProperties())
+                    .waitForCompletion();
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            throw new MqttException(e.getReasonCode(), e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(String topic, byte[] payload, boolean retained, MQQTProperties properties) throws MqttException {
+        MqttMessage message = new MqttMessage(payload);
+        message.setQos(1);
+        message.setRetained(retained);
+        if (properties != null) {
+            message.setProperties(toMqttProperties(properties));
+        }
+        CompletableFuture<Void> delivery = new CompletableFuture<>();
+        JfrEvents.MqttPublish event = new JfrEvents.MqttPublish(topic, payload.length);
+        inflight.acquireUninterruptibly();
+        try {
+            client.publish(topic, message, null, new MqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                    inflight.release();
+                    event.finish(true);
+                    delivery.complete(null);
+                }
+
+                @Override
+                public void onFailure(IMqttToken token, Throwable exception) {
+                    inflight.release();
+                    event.finish(false);
+                    delivery.completeExceptionally(exception);
+                }
+            });
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            inflight.release();
+            event.finish(false);
+            throw new MqttException(e.getReasonCode(), e);
+        } catch (RuntimeException e) {
+            inflight.release();
+            event.finish(false);
+            throw e;
+        }
+        return delivery;
+    }
+
+    @Override
+    public void close() {
+        try {
+            client.disconnect().waitForCompletion();
+            client.close();
+        } catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+            logger.log(Level.WARNING, "Failed to disconnect from the broker", e);
+        }
+    }
+
+    /**
+     * Converts received Paho properties
+     *
+     * @param mqttProperties the properties of the message, may be null
+     * @return the properties
+     */
+    private static MQQTProperties toProperties(MqttProperties mqttProperties) {
+        if (mqttProperties == null) {
+            return new MQQTProperties(null, null, 0, null, null);
+        }
+        String priority = null;
+        for (UserProperty userProperty : mqttProperties.getUserProperties()) {
+            if (userProperty.getKey().equals(PRIORITY_PROPERTY)) {
+                priority = userProperty.getValue();
+            }
+        }
+        Long expiry = mqttProperties.getMessageExpiryInterval();
+        return new MQQTProperties(mqttProperties.getResponseTopic(), mqttProperties.getCorrelationData(), expiry == null ? 0 : expiry,
+                mqttProperties.getContentType(), priority);
+    }
+
+    /**
+     * Converts properties to be published
+     *
+     * @param properties the properties
+     * @return the Paho properties
+     */
+    private static MqttProperties toMqttProperties(MQQTProperties properties) {
+        MqttProperties mqttProperties = new MqttProperties();
+        mqttProperties.setResponseTopic(properties.getResponseTopic());
+        mqttProperties.setCorrelationData(properties.getCorrelationData());
+        if (properties.getExpirySeconds() > 0) {
+            mqttProperties.setMessageExpiryInterval(properties.getExpirySeconds());
+        }
+        mqttProperties.setContentType(properties.getContentType());
+        if (properties.getPriority() != null) {
+            mqttProperties.setUserProperties(List.of(new UserProperty(PRIORITY_PROPERTY, properties.getPriority())));
+        }
+        return mqttProperties;
+    }
+}
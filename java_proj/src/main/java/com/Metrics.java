@@ -0,0 +1,237 @@
+package com;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Process wide registry of counters, gauges and latency histograms
+ * Recording is lock-free, so the hot paths only pay for a LongAdder increment or a histogram bucket update
+ * The values are exported as attributes of the JMX bean com:type=Metrics and can be published periodically on an MQTT topic
+ */
+public final class Metrics {
+    private static final Logger logger = Logger.getLogger(Metrics.class.getName());
+    static final String OBJECT_NAME = "com:type=Metrics";
+    /**
+     * Prefix of the topics the snapshots are published on, followed by the role and the client id
+     */
+    static final String TOPIC_PREFIX = "twosides/metrics/";
+    static final long PUBLISH_INTERVAL_SECONDS = 10;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "metrics-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(), new ObjectName(OBJECT_NAME));
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Failed to register the metrics bean", e);
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns a counter, creating it on first use
+     *
+     * @param name the name of the counter, e.g. db.rows
+     * @return the counter
+     */
+    public static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Returns a latency histogram, creating it on first use
+     *
+     * @param name the name of the histogram, e.g. db.query.queryDrug
+     * @return the histogram
+     */
+    public static LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Records the time elapsed since a start
+     *
+     * @param name the name of the histogram
+     * @param startNanos the start as returned by System.nanoTime
+     */
+    public static void recordSince(String name, long startNanos) {
+        histogram(name).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Reads a counter or a gauge without creating it
+     *
+     * @param name the name of the counter or gauge
+     * @return the current value, null if neither exists
+     */
+    public static Long read(String name) {
+        LongAdder counter = counters.get(name);
+        if (counter != null) {
+            return counter.sum();
+        }
+        LongSupplier gauge = gauges.get(name);
+        return gauge == null ? null : gauge.getAsLong();
+    }
+
+    /**
+     * Returns the histograms whose names start with a prefix, without creating any
+     *
+     * @param prefix the prefix, e.g. db.query.
+     * @return the histograms by name in name order
+     */
+    public static Map<String, LatencyHistogram> histograms(String prefix) {
+        Map<String, LatencyHistogram> matching = new TreeMap<>();
+        histograms.forEach((name, histogram) -> {
+            if (name.startsWith(prefix)) {
+                matching.put(name, histogram);
+            }
+        });
+        return matching;
+    }
+
+    /**
+     * Registers a value read when the metrics are exported, e.g. a queue length
+     * A gauge registered again under the same name replaces the previous one
+     *
+     * @param name the name of the gauge
+     * @param value the supplier of the current value
+     */
+    public static void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Reads every metric, a histogram contributes its count and its percentiles in milliseconds
+     *
+     * @return the values by name in name order
+     */
+    public static Map<String, Number> values() {
+        Map<String, Number> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        histograms.forEach((name, histogram) -> {
+            values.put(name + ".count", histogram.getCount());
+            values.put(name + ".meanMs", histogram.getMean() / NANOS_PER_MILLI);
+            values.put(name + ".p50Ms", histogram.getPercentile(50) / NANOS_PER_MILLI);
+            values.put(name + ".p99Ms", histogram.getPercentile(99) / NANOS_PER_MILLI);
+            values.put(name + ".p999Ms", histogram.getPercentile(99.9) / NANOS_PER_MILLI);
+            values.put(name + ".maxMs", histogram.getMax() / NANOS_PER_MILLI);
+        });
+        return values;
+    }
+
+    /**
+     * Builds the JSON snapshot of every metric
+     *
+     * @return the snapshot with the time it was taken
+     */
+    public static JsonObject snapshot() {
+        JsonObject json = new JsonObject();
+        json.addProperty("timestamp", System.currentTimeMillis());
+        JsonObject metrics = new JsonObject();
+        values().forEach(metrics::addProperty);
+        json.add("metrics", metrics);
+        return json;
+    }
+
+    /**
+     * Publishes a snapshot on a topic every PUBLISH_INTERVAL_SECONDS until cancelled
+     * A failed publish is logged and retried with the next snapshot
+     *
+     * @param transport the connection to the broker
+     * @param topic the topic of the snapshots
+     * @return the schedule, cancelled by the caller when it disconnects
+     */
+    public static ScheduledFuture<?> publishPeriodically(MQQTTransport transport, String topic) {
+        return publisher.scheduleAtFixedRate(() -> {
+            try {
+                transport.publish(topic, snapshot().toString().getBytes(StandardCharsets.UTF_8), false, null);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Failed to publish the metrics", e);
+            }
+        }, PUBLISH_INTERVAL_SECONDS, PUBLISH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * JMX view of the registry, every metric is a read-only attribute
+     * The attribute list is taken when a console asks for the bean info, metrics created later appear on its next refresh
+     */
+    private static class MetricsBean implements DynamicMBean {
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Number value = values().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Number> values = values();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                if (values.containsKey(attribute)) {
+                    list.add(new Attribute(attribute, values.get(attribute)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException("Metrics have no operations");
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            Map<String, Number> values = values();
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+            int i = 0;
+            for (Map.Entry<String, Number> entry : values.entrySet()) {
+                attributes[i++] = new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(), entry.getKey(), true, false, false);
+            }
+            return new MBeanInfo(Metrics.class.getName(), "Counters and latency histograms of the twosides client and server", attributes, null, null, null);
+        }
+    }
+}
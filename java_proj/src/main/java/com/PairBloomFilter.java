@@ -0,0 +1,150 @@
+package com;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Compact probabilistic set of every drug pair that has at least one interaction
+ * A negative answer is definite, so the pair can be reported as safe without a lookup
+ * A positive answer may be a false positive and still needs the real query
+ */
+public class PairBloomFilter {
+    private final long[] bits;
+    private final int numBits;
+    private final int numHashes;
+    private final String version;
+
+    /**
+     * Constructs an empty filter sized for the expected number of pairs
+     *
+     * @param expectedPairs the number of pairs that will be added
+     * @param falsePositiveRate the targeted false positive probability, e.g. 0.01
+     * @param version identifies the data the filter was built from
+     */
+    public PairBloomFilter(long expectedPairs, double falsePositiveRate, String version) {
+        long n = Math.max(1, expectedPairs);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.numBits = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, m));
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / n * Math.log(2)));
+        this.bits = new long[(numBits + 63) / 64];
+        this.version = version;
+    }
+
+    /**
+     * Constructs a filter from its serialized parts
+     *
+     * @param bits the bit array
+     * @param numBits the number of usable bits
+     * @param numHashes the number of hash functions
+     * @param version identifies the data the filter was built from
+     */
+    private PairBloomFilter(long[] bits, int numBits, int numHashes, String version) {
+        this.bits = bits;
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+        this.version = version;
+    }
+
+    public String getVersion() { return version; }
+    public int getNumBits() { return numBits; }
+    public int getNumHashes() { return numHashes; }
+
+    /**
+     * Normalizes a drug pair so that the order of the drugs and their letter case do not matter
+     *
+     * @param drug1Name the name of the first drug
+     * @param drug2Name the name of the second drug
+     * @return the normalized pair key
+     */
+    public static String pairKey(String drug1Name, String drug2Name) {
+        String a = drug1Name.trim().toLowerCase(Locale.ROOT);
+        String b = drug2Name.trim().toLowerCase(Locale.ROOT);
+        return a.compareTo(b) <= 0 ? a + "%" + b : b + "%" + a;
+    }
+
+    /**
+     * Adds a drug pair to the filter
+     *
+     * @param drug1Name the name of the first drug
+     * @param drug2Name the name of the second drug
+     */
+    public void put(String drug1Name, String drug2Name) {
+        long hash = hash(pairKey(drug1Name, drug2Name));
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks whether a drug pair may have interactions
+     *
+     * @param drug1Name the name of the first drug
+     * @param drug2Name the name of the second drug
+     * @return false if the pair has definitely no interactions, true if it might have some
+     */
+    public boolean mightContain(String drug1Name, String drug2Name) {
+        long hash = hash(pairKey(drug1Name, drug2Name));
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the key finished with the splitmix64 mixer
+     *
+     * @param key the normalized pair key
+     * @return the hash value
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Serializes the filter for transport, the bit array is base64 encoded
+     *
+     * @return the filter as a JsonObject
+     */
+    public JsonObject toJson() {
+        ByteBuffer buffer = ByteBuffer.allocate(bits.length * Long.BYTES);
+        buffer.asLongBuffer().put(bits);
+        JsonObject json = new JsonObject();
+        json.addProperty("version", version);
+        json.addProperty("numBits", numBits);
+        json.addProperty("numHashes", numHashes);
+        json.addProperty("bits", Base64.getEncoder().encodeToString(buffer.array()));
+        return json;
+    }
+
+    /**
+     * Restores a filter serialized with toJson
+     *
+     * @param json the serialized filter
+     * @return the filter
+     */
+    public static PairBloomFilter fromJson(JsonObject json) {
+        byte[] bytes = Base64.getDecoder().decode(json.get("bits").getAsString());
+        long[] bits = new long[bytes.length / Long.BYTES];
+        ByteBuffer.wrap(bytes).asLongBuffer().get(bits);
+        return new PairBloomFilter(bits, json.get("numBits").getAsInt(), json.get("numHashes").getAsInt(), json.get("version").getAsString());
+    }
+}
@@ -0,0 +1,131 @@
+package com;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Client side copies of the server's pair filters, so lookups of pairs without interactions are answered without a round trip
+ * The filters are fetched in the background, a pair is only ruled out once a filter has arrived
+ */
+public class PairFilters {
+    private static final Logger logger = Logger.getLogger(PairFilters.class.getName());
+    private static final long REFRESH_MILLIS = 5 * 60 * 1000; //5 minutes
+    private static final long RETRY_MILLIS = 30 * 1000;
+    /**
+     * Runs the pairFilter action on the server and returns the data of the response as JSON
+     */
+    private final Function<JsonObject, String> fetch;
+    private volatile PairBloomFilter allPairs;
+    private volatile PairBloomFilter filteredPairs;
+    private volatile long checkedAt;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final ExecutorService fetcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pair-filter-fetcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructs the filters of a server, nothing is fetched before the first lookup
+     *
+     * @param fetch runs the pairFilter action with the given parameters
+     */
+    public PairFilters(Function<JsonObject, String> fetch) {
+        this.fetch = fetch;
+    }
+
+    /**
+     * Checks whether a pair certainly has no interactions
+     * Starts a refresh of the filters if they are old
+     *
+     * @param drug1Name name of the first drug
+     * @param drug2Name name of the second drug
+     * @param filtered whether the lookup excludes interactions with unknown or negligible severity
+     * @return true if the pair can be answered with an empty result without asking the server
+     */
+    public boolean excludes(String drug1Name, String drug2Name, boolean filtered) {
+        refreshIfStale();
+        PairBloomFilter pairFilter = filtered ? filteredPairs : allPairs;
+        if (pairFilter != null && !pairFilter.mightContain(drug1Name, drug2Name)) {
+            logger.log(Level.FINE, "Pair filter skipped lookup of {0} and {1}", new Object[]{drug1Name, drug2Name});
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Fetches the filters again now, e.g. after the server reported changed data
+     */
+    public void refresh() {
+        checkedAt = 0;
+        refreshIfStale();
+    }
+
+    /**
+     * Stops the background fetches
+     */
+    public void close() {
+        fetcher.shutdownNow();
+    }
+
+    /**
+     * Fetches fresh filters from the server in the background when the current ones are old
+     * The known version is sent along so an unchanged filter is not transferred again
+     */
+    private void refreshIfStale() {
+        long now = System.currentTimeMillis();
+        if (now - checkedAt < REFRESH_MILLIS || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        fetcher.execute(() -> {
+            try {
+                allPairs = fetchFilter(false, allPairs);
+                filteredPairs = fetchFilter(true, filteredPairs);
+                checkedAt = System.currentTimeMillis();
+                if (allPairs == null || filteredPairs == null) {
+                    //the server is still building its filters, ask again soon
+                    checkedAt -= REFRESH_MILLIS - RETRY_MILLIS;
+                }
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Failed to fetch the pair filters", e);
+                checkedAt = System.currentTimeMillis() - REFRESH_MILLIS + RETRY_MILLIS;
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    /**
+     * Requests one filter variant from the server
+     *
+     * @param filtered whether the filtered variant is requested
+     * @param current the filter currently held, or null
+     * @return the up to date filter, the current one if unchanged, or null if the server has none yet
+     */
+    private PairBloomFilter fetchFilter(boolean filtered, PairBloomFilter current) {
+        JsonObject params = new JsonObject();
+        params.addProperty("filtered", filtered);
+        if (current != null) {
+            params.addProperty("version", current.getVersion());
+        }
+        JsonElement response = JsonParser.parseString(fetch.apply(params));
+        if (response.isJsonNull()) {
+            return null;
+        }
+        JsonObject json = response.getAsJsonObject();
+        if (!json.has("bits")) {
+            return current;
+        }
+        PairBloomFilter pairFilter = PairBloomFilter.fromJson(json);
+        logger.log(Level.INFO, "Received pair filter version {0}", pairFilter.getVersion());
+        return pairFilter;
+    }
+}
@@ -0,0 +1,170 @@
+package com;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents the interaction lookup of a single drug pair while it is pending, loaded or failed
+ */
+public class PairResult {
+    /**
+     * Lifecycle of a pair lookup
+     */
+    public enum Status { PENDING, LOADED, FAILED }
+
+    private final String key;
+    private final String drug1;
+    private final String drug2;
+    private Status status = Status.PENDING;
+    private boolean requested;
+    private Map<String, Twosides> interactions = Collections.emptyMap();
+    private PairSummary summary;
+    private boolean detailsLoaded;
+    private boolean detailsRequested;
+    private boolean hasMoreRows;
+    private TwosidesPage.Cursor nextCursor;
+    private long elapsedMillis;
+    private String error;
+
+    /**
+     * Constructs a pending pair result
+     *
+     * @param drug1 the name of the first drug
+     * @param drug2 the name of the second drug
+     */
+    public PairResult(String drug1, String drug2) {
+        this.key = TwosidesCol.getMapStrId(drug1, drug2);
+        this.drug1 = drug1;
+        this.drug2 = drug2;
+    }
+
+    //Getters and Setters
+    public String getKey() { return key; }
+    public String getDrug1() { return drug1; }
+    public String getDrug2() { return drug2; }
+    public Status getStatus() { return status; }
+    public boolean isRequested() { return requested; } public void setRequested(boolean requested) { this.requested = requested; }
+    public Map<String, Twosides> getInteractions() { return interactions; }
+    public PairSummary getSummary() { return summary; }
+    public boolean hasDetails() { return detailsLoaded; }
+    public boolean hasMoreRows() { return hasMoreRows; }
+    public TwosidesPage.Cursor getNextCursor() { return nextCursor; }
+    public boolean isDetailsRequested() { return detailsRequested; } public void setDetailsRequested(boolean detailsRequested) { this.detailsRequested = detailsRequested; }
+    public long getElapsedMillis() { return elapsedMillis; }
+    public String getError() { return error; }
+
+    /**
+     * Marks the pair as loaded with its interactions
+     *
+     * @param interactions the Twosides records of the pair
+     * @param elapsedMillis time spent on the lookup in milliseconds
+     */
+    public void loaded(Map<String, Twosides> interactions, long elapsedMillis) {
+        this.status = Status.LOADED;
+        this.interactions = interactions;
+        this.summary = PairSummary.of(drug1, drug2, interactions);
+        this.detailsLoaded = true;
+        this.detailsRequested = false;
+        this.hasMoreRows = false;
+        this.nextCursor = null;
+        this.elapsedMillis = elapsedMillis;
+        this.error = null;
+    }
+
+    /**
+     * Marks the pair as loaded with its aggregates only, the detail rows are fetched on demand
+     *
+     * @param summary the aggregates of the pair
+     * @param elapsedMillis time spent on the lookup in milliseconds
+     */
+    public void summarized(PairSummary summary, long elapsedMillis) {
+        this.status = Status.LOADED;
+        this.interactions = Collections.emptyMap();
+        this.summary = summary;
+        //a pair without interactions has nothing left to fetch
+        this.detailsLoaded = summary.getRowCount() == 0;
+        this.detailsRequested = false;
+        this.hasMoreRows = false;
+        this.nextCursor = null;
+        this.elapsedMillis = elapsedMillis;
+        this.error = null;
+    }
+
+    /**
+     * Appends a page of detail rows to the pair, the summary keeps describing all of its rows
+     *
+     * @param page the next page of interactions
+     * @param elapsedMillis time spent on the lookup in milliseconds
+     */
+    public void pageLoaded(TwosidesPage page, long elapsedMillis) {
+        Map<String, Twosides> merged = new LinkedHashMap<>(interactions);
+        merged.putAll(page.toInteractionMap());
+        this.status = Status.LOADED;
+        this.interactions = merged;
+        if (summary == null) {
+            summary = PairSummary.of(drug1, drug2, merged);
+        }
+        this.detailsLoaded = true;
+        this.detailsRequested = false;
+        this.hasMoreRows = page.hasMore();
+        this.nextCursor = page.getNextCursor();
+        this.elapsedMillis = elapsedMillis;
+        this.error = null;
+    }
+
+    /**
+     * Marks the pair as failed
+     *
+     * @param error the error message
+     * @param elapsedMillis time spent on the lookup in milliseconds
+     */
+    public void failed(String error, long elapsedMillis) {
+        this.status = Status.FAILED;
+        this.elapsedMillis = elapsedMillis;
+        this.error = error;
+    }
+
+    /**
+     * Puts the pair back to pending so it is looked up again
+     */
+    public void reset() {
+        this.status = Status.PENDING;
+        this.requested = false;
+        this.interactions = Collections.emptyMap();
+        this.summary = null;
+        this.detailsLoaded = false;
+        this.detailsRequested = false;
+        this.hasMoreRows = false;
+        this.nextCursor = null;
+        this.error = null;
+    }
+
+    /**
+     * Returns the number of interactions, known from the summary before the detail rows are loaded
+     *
+     * @return the number of interactions of the pair
+     */
+    public int getInteractionCount() {
+        return summary != null ? summary.getRowCount() : interactions.size();
+    }
+
+    /**
+     * Returns the display names of both drugs with every first letter capitalized
+     *
+     * @return a list containing the two display names
+     */
+    public List<String> getDisplayNames() {
+        return List.of(AppGUI.capitalizeEveryFirstLetter(drug1), AppGUI.capitalizeEveryFirstLetter(drug2));
+    }
+
+    /**
+     * Checks whether the pair was loaded without any interactions
+     *
+     * @return true if the pair is loaded and has no interactions
+     */
+    public boolean isSafe() {
+        return status == Status.LOADED && getInteractionCount() == 0;
+    }
+}
@@ -0,0 +1,88 @@
+package com;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates of the interactions of a single drug pair, enough to render the summary section without the detail rows
+ */
+public class PairSummary {
+    /**
+     * Severity classes ordered from the least to the most severe
+     */
+    public static final List<String> SEVERITY_ORDER = List.of("Unknown", "Negligible", "Minor", "Medium", "Severe", "Critical");
+
+    private String drug1;
+    private String drug2;
+    private int rowCount;
+    private String maxSeverityClass;
+    private double maxSeverity;
+    private double maxPrr;
+
+    /**
+     * Constructs a pair summary
+     *
+     * @param drug1 the name of the first drug
+     * @param drug2 the name of the second drug
+     * @param rowCount the number of interactions of the pair
+     * @param maxSeverityClass the most severe severity class, null if the pair has no interactions
+     * @param maxSeverity the highest severity score
+     * @param maxPrr the highest proportional reporting ratio
+     */
+    public PairSummary(String drug1, String drug2, int rowCount, String maxSeverityClass, double maxSeverity, double maxPrr) {
+        this.drug1 = drug1;
+        this.drug2 = drug2;
+        this.rowCount = rowCount;
+        this.maxSeverityClass = maxSeverityClass;
+        this.maxSeverity = maxSeverity;
+        this.maxPrr = maxPrr;
+    }
+
+    //Getters
+    public String getDrug1() { return drug1; }
+    public String getDrug2() { return drug2; }
+    public int getRowCount() { return rowCount; }
+    public String getMaxSeverityClass() { return maxSeverityClass; }
+    public double getMaxSeverity() { return maxSeverity; }
+    public double getMaxPrr() { return maxPrr; }
+
+    /**
+     * Computes the summary of already loaded interactions
+     *
+     * @param drug1 the name of the first drug
+     * @param drug2 the name of the second drug
+     * @param interactions the Twosides records of the pair
+     * @return the summary of the pair
+     */
+    public static PairSummary of(String drug1, String drug2, Map<String, Twosides> interactions) {
+        int maxRank = -1;
+        double maxSeverity = 0;
+        double maxPrr = 0;
+        for (Twosides twosides : interactions.values()) {
+            maxRank = Math.max(maxRank, severityRank(twosides.getSeverityClass()));
+            maxSeverity = Math.max(maxSeverity, twosides.getSeverity());
+            maxPrr = Math.max(maxPrr, twosides.getPrr());
+        }
+        return new PairSummary(drug1, drug2, interactions.size(), severityClass(maxRank), maxSeverity, maxPrr);
+    }
+
+    /**
+     * Returns the rank of a severity class, higher is more severe
+     *
+     * @param severityClass the severity class
+     * @return the rank, 0 for unknown classes
+     */
+    public static int severityRank(String severityClass) {
+        return Math.max(0, SEVERITY_ORDER.indexOf(severityClass));
+    }
+
+    /**
+     * Returns the severity class of a rank
+     *
+     * @param rank the rank, negative if there is none
+     * @return the severity class, or null for a negative rank
+     */
+    public static String severityClass(int rank) {
+        return rank < 0 ? null : SEVERITY_ORDER.get(Math.min(rank, SEVERITY_ORDER.size() - 1));
+    }
+}
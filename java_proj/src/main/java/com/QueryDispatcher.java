@@ -0,0 +1,307 @@
+package com;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Maps the remote actions to Queryable calls, shared by the MQTT and the HTTP server
+ * Every action takes its parameters as a JSON object and answers with the JSON of the result
+ * Identical requests running at the same time share one database execution and its serialized response
+ */
+public class QueryDispatcher {
+    static final Set<String> ACTIONS = Set.of("queryTwosides", "queryDrug", "queryPairSummary", "queryTwosidesPage",
+            "queryNeighbors", "queryByCondition", "pairFilter", "dataVersion", "batch");
+    /**
+     * Actions answering a user while typing or scrolling, served ahead of bulk work unless the request says otherwise
+     */
+    static final Set<String> INTERACTIVE_ACTIONS = Set.of("queryDrug", "queryPairSummary", "queryTwosidesPage");
+    private final Queryable source;
+    private final Gson gson = new Gson();
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    /**
+     * Constructs a dispatcher
+     *
+     * @param source the backend answering the actions, usually the database
+     */
+    public QueryDispatcher(Queryable source) {
+        this.source = source;
+    }
+
+    public SingleFlight<String, String> getSingleFlight() { return singleFlight; }
+
+    /**
+     * Checks whether an action is known
+     *
+     * @param action the name of the action
+     * @return true if the action can be dispatched
+     */
+    public boolean supports(String action) {
+        return ACTIONS.contains(action);
+    }
+
+    /**
+     * Runs an action, joining an identical request that is already running
+     * The requests of a batch are coalesced one by one
+     * A result computed past the deadline of the running thread is not handed out, the statements may have been cancelled midway
+     *
+     * @param action the name of the action
+     * @param params the parameters of the action
+     * @return the JSON response
+     * @throws IllegalArgumentException if the action is unknown or a parameter is missing or has the wrong type
+     * @throws RequestDeadline.ExpiredException if the deadline passed before or during the execution
+     */
+    public String dispatch(String action, JsonObject params) {
+        if (!supports(action)) {
+            throw new IllegalArgumentException("Unknown method: " + action);
+        }
+        validate(action, params);
+        if (RequestDeadline.isExpired()) {
+            throw new RequestDeadline.ExpiredException();
+        }
+        if (action.equals("batch")) {
+            String responses = batchResponse(params.getAsJsonArray("requests"));
+            if (RequestDeadline.isExpired()) {
+                throw new RequestDeadline.ExpiredException();
+            }
+            return responses;
+        }
+        return singleFlight.run(requestKey(action, params), () -> {
+            String response = execute(action, params);
+            if (RequestDeadline.isExpired()) {
+                throw new RequestDeadline.ExpiredException();
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Checks that a request carries every parameter its action reads, with the JSON type it is read as
+     * A malformed request is the client's fault and must not surface as a failure of the server
+     *
+     * @param action the name of the action
+     * @param params the parameters of the action
+     * @throws IllegalArgumentException naming the first missing or ill-typed parameter
+     */
+    private void validate(String action, JsonObject params) {
+        if (params == null) {
+            throw new IllegalArgumentException("Missing params");
+        }
+        switch (action) {
+            case "queryTwosides":
+            case "queryPairSummary":
+                require(params, "drug1Name", JsonPrimitive::isString);
+                require(params, "drug2Name", JsonPrimitive::isString);
+                require(params, "filtered", JsonPrimitive::isBoolean);
+                break;
+
+            case "queryTwosidesPage":
+                require(params, "drug1Name", JsonPrimitive::isString);
+                require(params, "drug2Name", JsonPrimitive::isString);
+                require(params, "filtered", JsonPrimitive::isBoolean);
+                require(params, "limit", JsonPrimitive::isNumber);
+                TwosidesPage.checkLimit(params.get("limit").getAsInt());
+                if (params.has("after")) {
+                    try {
+                        gson.fromJson(params.get("after").getAsJsonObject(), TwosidesPage.Cursor.class);
+                    } catch (RuntimeException e) {
+                        throw new IllegalArgumentException("Invalid parameter: after");
+                    }
+                }
+                break;
+
+            case "queryDrug":
+                require(params, "drugName", JsonPrimitive::isString);
+                require(params, "like", JsonPrimitive::isBoolean);
+                break;
+
+            case "queryNeighbors":
+                require(params, "drugName", JsonPrimitive::isString);
+                require(params, "filtered", JsonPrimitive::isBoolean);
+                break;
+
+            case "queryByCondition":
+                require(params, "conditionName", JsonPrimitive::isString);
+                require(params, "filtered", JsonPrimitive::isBoolean);
+                require(params, "limit", JsonPrimitive::isNumber);
+                if (params.has("drugName")) {
+                    require(params, "drugName", JsonPrimitive::isString);
+                }
+                break;
+
+            case "pairFilter":
+                require(params, "filtered", JsonPrimitive::isBoolean);
+                if (params.has("version")) {
+                    require(params, "version", JsonPrimitive::isString);
+                }
+                break;
+
+            case "dataVersion":
+                break;
+
+            case "batch":
+                if (!params.has("requests") || !params.get("requests").isJsonArray()) {
+                    throw new IllegalArgumentException("Invalid parameter: requests");
+                }
+                for (JsonElement request : params.getAsJsonArray("requests")) {
+                    //the params of each request are checked when it is dispatched, so one bad request only fails itself
+                    if (!request.isJsonObject()) {
+                        throw new IllegalArgumentException("Invalid batch request: " + request);
+                    }
+                    require(request.getAsJsonObject(), "action", JsonPrimitive::isString);
+                }
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown method: " + action);
+        }
+    }
+
+    /**
+     * Checks that a parameter is present as a JSON primitive of the expected type
+     *
+     * @param params the parameters of the request
+     * @param name the name of the parameter
+     * @param type the check of the primitive's type, e.g. JsonPrimitive::isString
+     * @throws IllegalArgumentException if the parameter is missing or has another type
+     */
+    private static void require(JsonObject params, String name, Predicate<JsonPrimitive> type) {
+        JsonElement value = params.get(name);
+        if (value == null || !value.isJsonPrimitive() || !type.test(value.getAsJsonPrimitive())) {
+            throw new IllegalArgumentException("Invalid parameter: " + name);
+        }
+    }
+
+    /**
+     * Builds the coalescing key of a request, the parameters are ordered by name so the key does not depend on the client's field order
+     *
+     * @param action the name of the action
+     * @param params the parameters of the action
+     * @return the request key
+     */
+    static String requestKey(String action, JsonObject params) {
+        Map<String, String> sorted = new TreeMap<>();
+        for (Map.Entry<String, JsonElement> entry : params.entrySet()) {
+            sorted.put(entry.getKey(), entry.getValue().isJsonObject() ? requestKey("", entry.getValue().getAsJsonObject()) : entry.getValue().toString());
+        }
+        return action + sorted;
+    }
+
+    /**
+     * Runs an action on the database
+     * The query and the encoding of its result are separate steps, so a flight recording shows the JSON time on its own
+     *
+     * @param action the name of the action
+     * @param params the parameters of the action
+     * @return the JSON response
+     */
+    private String execute(String action, JsonObject params) {
+        Object result;
+        switch (action) {
+            case "queryTwosides":
+                result = source.queryTwosides(params.get("drug1Name").getAsString(), params.get("drug2Name").getAsString(),
+                        params.get("filtered").getAsBoolean());
+                break;
+
+            case "queryDrug":
+                result = source.queryDrug(params.get("drugName").getAsString(), params.get("like").getAsBoolean());
+                break;
+
+            case "queryPairSummary":
+                result = source.queryPairSummary(params.get("drug1Name").getAsString(), params.get("drug2Name").getAsString(),
+                        params.get("filtered").getAsBoolean());
+                break;
+
+            case "queryTwosidesPage":
+                TwosidesPage.Cursor after = params.has("after") ? gson.fromJson(params.get("after"), TwosidesPage.Cursor.class) : null;
+                result = source.queryTwosidesPage(params.get("drug1Name").getAsString(), params.get("drug2Name").getAsString(),
+                        params.get("filtered").getAsBoolean(), after, params.get("limit").getAsInt());
+                break;
+
+            case "queryNeighbors":
+                result = source.queryNeighbors(params.get("drugName").getAsString(), params.get("filtered").getAsBoolean());
+                break;
+
+            case "queryByCondition":
+                String restrictTo = params.has("drugName") ? params.get("drugName").getAsString() : null;
+                result = source.queryByCondition(params.get("conditionName").getAsString(), restrictTo,
+                        params.get("filtered").getAsBoolean(), params.get("limit").getAsInt());
+                break;
+
+            case "dataVersion":
+                JsonObject version = new JsonObject();
+                version.addProperty("version", source instanceof DatabaseQuery ? ((DatabaseQuery) source).getDataVersion() : null);
+                return version.toString();
+
+            case "pairFilter":
+                return pairFilterResponse(params.get("filtered").getAsBoolean(), params.has("version") ? params.get("version").getAsString() : null);
+
+            default:
+                throw new IllegalArgumentException("Unknown method: " + action);
+        }
+        JfrEvents.Json event = new JfrEvents.Json("encode", action);
+        String json = gson.toJson(result);
+        event.finish(json);
+        return json;
+    }
+
+    /**
+     * Runs every request of a batch in order
+     * A failing request answers with an error object instead of failing the whole batch
+     *
+     * @param requests the requests, each with an action and its params
+     * @return the JSON array of the responses in request order
+     */
+    private String batchResponse(JsonArray requests) {
+        JsonArray responses = new JsonArray();
+        for (JsonElement element : requests) {
+            JsonObject request = element.getAsJsonObject();
+            String action = request.get("action").getAsString();
+            try {
+                if (action.equals("batch")) {
+                    throw new IllegalArgumentException("Nested batches are not supported");
+                }
+                JsonElement params = request.get("params");
+                responses.add(JsonParser.parseString(dispatch(action, params != null && params.isJsonObject() ? params.getAsJsonObject() : null)));
+            } catch (RuntimeException e) {
+                JsonObject error = new JsonObject();
+                error.addProperty("error", String.valueOf(e.getMessage()));
+                responses.add(error);
+            }
+        }
+        return responses.toString();
+    }
+
+    /**
+     * Builds the response of a pairFilter request
+     * A client already holding the current version only receives the version back instead of the whole bit array
+     *
+     * @param filtered whether the filtered variant is requested
+     * @param knownVersion the version the client already has, or null
+     * @return the JSON response, null while the filter is not built yet or if the backend has none
+     */
+    private String pairFilterResponse(boolean filtered, String knownVersion) {
+        if (!(source instanceof DatabaseQuery)) {
+            return "null";
+        }
+        PairBloomFilter pairFilter = ((DatabaseQuery) source).getPairFilter(filtered);
+        if (pairFilter == null) {
+            return "null";
+        }
+        if (pairFilter.getVersion().equals(knownVersion)) {
+            JsonObject unchanged = new JsonObject();
+            unchanged.addProperty("version", knownVersion);
+            return unchanged.toString();
+        }
+        return pairFilter.toJson().toString();
+    }
+}
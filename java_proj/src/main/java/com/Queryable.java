@@ -0,0 +1,53 @@
+package com;
+
+import java.util.List;
+
+/**
+ * Backend of the drug interaction lookups, implemented by the local database and the MQTT client
+ */
+interface Queryable {
+    TwosidesCol queryTwosides(String drugA, String drugB, boolean someFlag);
+    List<String> queryDrug(String drugName, boolean like);
+
+    /**
+     * Queries the aggregates of a drug pair without its detail rows
+     *
+     * @param drug1Name the name of the first drug
+     * @param drug2Name the name of the second drug
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @return the summary of the pair, with a row count of 0 if the pair has no interactions
+     */
+    PairSummary queryPairSummary(String drug1Name, String drug2Name, boolean filtered);
+
+    /**
+     * Queries one page of the interactions of a drug pair, the most severe first
+     *
+     * @param drug1Name the name of the first drug
+     * @param drug2Name the name of the second drug
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @param after the cursor of the previous page, null for the first page
+     * @param limit the maximum number of rows of the page
+     * @return the page of interactions
+     */
+    TwosidesPage queryTwosidesPage(String drug1Name, String drug2Name, boolean filtered, TwosidesPage.Cursor after, int limit);
+
+    /**
+     * Queries every drug that has interactions with the given drug, aggregated per co-medication
+     *
+     * @param drugName the name of the drug
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @return the summaries of the pairs with drug1 set to the given drug, the most severe first
+     */
+    List<PairSummary> queryNeighbors(String drugName, boolean filtered);
+
+    /**
+     * Queries the interactions reporting a condition, optionally restricted to the pairs of one drug
+     *
+     * @param conditionName the name of the condition
+     * @param drugName restricts the result to pairs containing this drug, null for every pair
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @param limit the maximum number of rows
+     * @return the matching Twosides records, the most severe first
+     */
+    List<Twosides> queryByCondition(String conditionName, String drugName, boolean filtered, int limit);
+}
@@ -0,0 +1,114 @@
+package com;
+
+import java.util.List;
+
+/**
+ * Ranked risk report of a regimen computed by RegimenScorer, independent of the GUI
+ */
+public class RegimenReport {
+    private final double score;
+    private final int[] severityCounts;
+    private final List<PairScore> pairs;
+    private final List<DrugScore> drugs;
+    private final long elapsedMillis;
+
+    /**
+     * Risk score of a single drug pair
+     */
+    public static class PairScore {
+        private final String drug1;
+        private final String drug2;
+        private final double score;
+        private final int[] severityCounts;
+        private final double weightedPrr;
+        private final int confidentRows;
+
+        /**
+         * Constructs the score of a pair
+         *
+         * @param drug1 the name of the first drug
+         * @param drug2 the name of the second drug
+         * @param score the risk score of the pair
+         * @param severityCounts the number of rows per severity class, indexed like PairSummary.SEVERITY_ORDER
+         * @param weightedPrr the mean PRR of the rows weighted by their severity class
+         * @param confidentRows the number of rows whose PRR stays above 1 at the lower confidence bound
+         */
+        public PairScore(String drug1, String drug2, double score, int[] severityCounts, double weightedPrr, int confidentRows) {
+            this.drug1 = drug1;
+            this.drug2 = drug2;
+            this.score = score;
+            this.severityCounts = severityCounts;
+            this.weightedPrr = weightedPrr;
+            this.confidentRows = confidentRows;
+        }
+
+        //Getters
+        public String getDrug1() { return drug1; }
+        public String getDrug2() { return drug2; }
+        public double getScore() { return score; }
+        public int[] getSeverityCounts() { return severityCounts; }
+        public double getWeightedPrr() { return weightedPrr; }
+        public int getConfidentRows() { return confidentRows; }
+    }
+
+    /**
+     * Risk score of a single drug: the sum of the scores of its pairs
+     */
+    public static class DrugScore {
+        private final String drug;
+        private final double score;
+        private final int interactingPairs;
+
+        /**
+         * Constructs the score of a drug
+         *
+         * @param drug the name of the drug
+         * @param score the summed score of the pairs of the drug
+         * @param interactingPairs the number of pairs of the drug with a positive score
+         */
+        public DrugScore(String drug, double score, int interactingPairs) {
+            this.drug = drug;
+            this.score = score;
+            this.interactingPairs = interactingPairs;
+        }
+
+        //Getters
+        public String getDrug() { return drug; }
+        public double getScore() { return score; }
+        public int getInteractingPairs() { return interactingPairs; }
+    }
+
+    /**
+     * Constructs a regimen report
+     *
+     * @param score the risk score of the whole regimen
+     * @param severityCounts the number of rows per severity class over all pairs
+     * @param pairs the pair scores, the riskiest first
+     * @param drugs the drug scores, the riskiest first
+     * @param elapsedMillis time spent on the scoring in milliseconds
+     */
+    public RegimenReport(double score, int[] severityCounts, List<PairScore> pairs, List<DrugScore> drugs, long elapsedMillis) {
+        this.score = score;
+        this.severityCounts = severityCounts;
+        this.pairs = pairs;
+        this.drugs = drugs;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    //Getters
+    public double getScore() { return score; }
+    public int[] getSeverityCounts() { return severityCounts; }
+    public List<PairScore> getPairs() { return pairs; }
+    public List<DrugScore> getDrugs() { return drugs; }
+    public long getElapsedMillis() { return elapsedMillis; }
+
+    /**
+     * Returns the number of rows of a severity class over all pairs
+     *
+     * @param severityClass the severity class
+     * @return the number of rows
+     */
+    public int getSeverityCount(String severityClass) {
+        return severityCounts[PairSummary.severityRank(severityClass)];
+    }
+}
@@ -0,0 +1,89 @@
+package com;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Aggregates the Twosides rows of every pair of a regimen into pair, drug and regimen risk scores
+ * Each row contributes weight(severity class) * ln(lower PRR bound), where the lower bound is prr * exp(-1.96 * prrError)
+ * Rows whose lower bound does not exceed 1 carry no confident signal and contribute nothing
+ * The pairs are scored in parallel, no GUI nodes are involved
+ */
+public class RegimenScorer {
+    /**
+     * Weight of every severity class, indexed like PairSummary.SEVERITY_ORDER (Unknown to Critical)
+     */
+    private static final double[] SEVERITY_WEIGHTS = {0.5, 0.25, 1, 2, 4, 8};
+    private static final double Z_95 = 1.96;
+
+    /**
+     * Scores every pair of a collection of interactions
+     *
+     * @param twosidesCol the interactions of the regimen, one entry per drug pair
+     * @return the ranked regimen report
+     */
+    public static RegimenReport score(TwosidesCol twosidesCol) {
+        long start = System.nanoTime();
+        List<RegimenReport.PairScore> pairs = twosidesCol.getCol().entrySet().parallelStream()
+                .map(entry -> {
+                    List<String> drugs = TwosidesCol.getUnmapedStrId(entry.getKey());
+                    return scorePair(drugs.get(0), drugs.get(1), entry.getValue());
+                })
+                .sorted(Comparator.comparingDouble(RegimenReport.PairScore::getScore).reversed())
+                .collect(Collectors.toList());
+
+        double regimenScore = 0;
+        int[] severityCounts = new int[PairSummary.SEVERITY_ORDER.size()];
+        Map<String, double[]> drugTotals = new LinkedHashMap<>();
+        for (RegimenReport.PairScore pair : pairs) {
+            regimenScore += pair.getScore();
+            for (int i = 0; i < severityCounts.length; i++) {
+                severityCounts[i] += pair.getSeverityCounts()[i];
+            }
+            for (String drug : List.of(pair.getDrug1(), pair.getDrug2())) {
+                double[] totals = drugTotals.computeIfAbsent(drug, k -> new double[2]);
+                totals[0] += pair.getScore();
+                totals[1] += pair.getScore() > 0 ? 1 : 0;
+            }
+        }
+        List<RegimenReport.DrugScore> drugs = new ArrayList<>();
+        for (Map.Entry<String, double[]> entry : drugTotals.entrySet()) {
+            drugs.add(new RegimenReport.DrugScore(entry.getKey(), entry.getValue()[0], (int) entry.getValue()[1]));
+        }
+        drugs.sort(Comparator.comparingDouble(RegimenReport.DrugScore::getScore).reversed());
+        return new RegimenReport(regimenScore, severityCounts, pairs, drugs, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Scores the rows of a single pair
+     *
+     * @param drug1 the name of the first drug
+     * @param drug2 the name of the second drug
+     * @param interactions the Twosides records of the pair
+     * @return the score of the pair
+     */
+    static RegimenReport.PairScore scorePair(String drug1, String drug2, Map<String, Twosides> interactions) {
+        double score = 0;
+        double weightedPrr = 0;
+        double totalWeight = 0;
+        int confidentRows = 0;
+        int[] severityCounts = new int[PairSummary.SEVERITY_ORDER.size()];
+        for (Twosides twosides : interactions.values()) {
+            int rank = PairSummary.severityRank(twosides.getSeverityClass());
+            double weight = SEVERITY_WEIGHTS[rank];
+            severityCounts[rank]++;
+            weightedPrr += weight * twosides.getPrr();
+            totalWeight += weight;
+            double lowerPrr = twosides.getPrr() * Math.exp(-Z_95 * twosides.getPrrError());
+            if (lowerPrr > 1) {
+                score += weight * Math.log(lowerPrr);
+                confidentRows++;
+            }
+        }
+        return new RegimenReport.PairScore(drug1, drug2, score, severityCounts, totalWeight == 0 ? 0 : weightedPrr / totalWeight, confidentRows);
+    }
+}
@@ -0,0 +1,76 @@
+package com;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Keeps the drugs of the current regimen together with the results of every drug pair fetched so far
+ * Adding or removing a drug only changes the pairs involving that drug, so adding the Nth drug costs N-1 lookups
+ */
+public class RegimenSession {
+    private final List<String> drugs = new ArrayList<>();
+    private final InteractionResults results = new InteractionResults();
+
+    /**
+     * Adds a drug to the regimen and registers its pairs with every drug already in the regimen as pending
+     *
+     * @param drug the name of the drug
+     * @return the newly added pairs, empty if the drug was already part of the regimen
+     */
+    public List<PairResult> addDrug(String drug) {
+        List<PairResult> added = new ArrayList<>();
+        if (drugs.contains(drug)) {
+            return added;
+        }
+        for (String other : drugs) {
+            added.add(results.addPair(other, drug));
+        }
+        drugs.add(drug);
+        return added;
+    }
+
+    /**
+     * Removes a drug from the regimen together with all of its pairs
+     *
+     * @param drug the name of the drug
+     * @return the removed pairs
+     */
+    public List<PairResult> removeDrug(String drug) {
+        List<PairResult> removed = new ArrayList<>();
+        if (!drugs.remove(drug)) {
+            return removed;
+        }
+        for (PairResult pair : new ArrayList<>(results.getPairs())) {
+            if (pair.getDrug1().equals(drug) || pair.getDrug2().equals(drug)) {
+                removed.add(results.removePair(pair.getKey()));
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Queries the pairs that have not been fetched yet, failed pairs are retried
+     *
+     * @param source the backend used for the lookups
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @param summariesFirst whether to only query the pair summaries and load the detail rows on demand
+     * @param executor the executor running the lookups
+     * @param callbackExecutor the executor applying the results, e.g. the JavaFX application thread
+     */
+    public void fetch(Queryable source, boolean filtered, boolean summariesFirst, ExecutorService executor, Executor callbackExecutor) {
+        results.retryFailed();
+        results.fetchPending(source, filtered, summariesFirst, executor, callbackExecutor);
+    }
+
+    /**
+     * Forgets the results of every pair after a data change, the next fetch queries all of them again
+     */
+    public void invalidate() {
+        results.invalidateAll();
+    }
+
+    public List<String> getDrugs() { return drugs; }
+    public InteractionResults getResults() { return results; }
+}
@@ -0,0 +1,72 @@
+package com;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Absolute deadline of the request running on the current thread
+ * The server sets it from the request envelope, DatabaseQuery turns the remaining time into a JDBC query timeout
+ * The deadline is an epoch millisecond timestamp, so client and server clocks are assumed to be roughly in sync
+ */
+public final class RequestDeadline {
+    private static final ThreadLocal<Long> current = new ThreadLocal<>();
+
+    /**
+     * Thrown when a request runs past its deadline, nobody waits for its result anymore
+     */
+    public static class ExpiredException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ExpiredException() {
+            super("Request deadline passed");
+        }
+    }
+
+    private RequestDeadline() {
+    }
+
+    /**
+     * Sets the deadline of the current thread
+     *
+     * @param deadline the deadline in epoch milliseconds, 0 for none
+     */
+    public static void set(long deadline) {
+        if (deadline > 0) {
+            current.set(deadline);
+        } else {
+            current.remove();
+        }
+    }
+
+    /**
+     * Removes the deadline of the current thread
+     */
+    public static void clear() {
+        current.remove();
+    }
+
+    /**
+     * Checks whether the deadline of the current thread has passed
+     *
+     * @return true if a deadline is set and has passed
+     */
+    public static boolean isExpired() {
+        Long deadline = current.get();
+        return deadline != null && System.currentTimeMillis() >= deadline;
+    }
+
+    /**
+     * Limits a statement to the remaining time of the current deadline, rounded up to whole seconds
+     * The driver cancels the statement on the server once the timeout elapses
+     *
+     * @param statement the statement about to be executed
+     * @throws SQLException if the timeout cannot be set
+     */
+    public static void applyTo(Statement statement) throws SQLException {
+        Long deadline = current.get();
+        if (deadline != null) {
+            long remaining = deadline - System.currentTimeMillis();
+            statement.setQueryTimeout((int) Math.max(1, (remaining + 999) / 1000));
+        }
+    }
+}
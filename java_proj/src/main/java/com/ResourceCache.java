@@ -0,0 +1,78 @@
+package com;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import javafx.css.PseudoClass;
+import javafx.scene.control.Label;
+import javafx.scene.image.Image;
+
+/**
+ * Caches the images and the stylesheet used by the GUI so each resource is decoded or located only once
+ * Image instances are immutable and can be shared by any number of ImageViews
+ */
+public class ResourceCache {
+    private static final Logger logger = Logger.getLogger(ResourceCache.class.getName());
+    public static final String STYLESHEET = "styles/twosides.css";
+    private static final Map<String, Image> images = new ConcurrentHashMap<>();
+    private static final Map<String, String> urls = new ConcurrentHashMap<>();
+    private static final Map<String, PseudoClass> severityStates = Map.of(
+        "Critical", PseudoClass.getPseudoClass("critical"),
+        "Severe", PseudoClass.getPseudoClass("severe"),
+        "Medium", PseudoClass.getPseudoClass("medium"),
+        "Minor", PseudoClass.getPseudoClass("minor"),
+        "Negligible", PseudoClass.getPseudoClass("negligible"),
+        "Unknown", PseudoClass.getPseudoClass("unknown")
+    );
+
+    /**
+     * Returns the cached image for a resource path relative to the com package
+     *
+     * @param path the resource path, e.g. "icons/repeat.png"
+     * @return the decoded image
+     */
+    public static Image image(String path) {
+        return images.computeIfAbsent(path, p -> new Image(url(p)));
+    }
+
+    /**
+     * Returns the external form of the shared stylesheet
+     * JavaFX parses a stylesheet once per URL, so every scene referencing it shares the parsed rules
+     *
+     * @return the stylesheet URL
+     */
+    public static String stylesheet() {
+        return url(STYLESHEET);
+    }
+
+    /**
+     * Resolves and caches the external form of a resource path relative to the com package
+     *
+     * @param path the resource path
+     * @return the resource URL as a string
+     */
+    private static String url(String path) {
+        return urls.computeIfAbsent(path, p -> {
+            URL resource = ResourceCache.class.getResource(p);
+            if (resource == null) {
+                logger.warning("Resource not found: " + p);
+                throw new IllegalArgumentException("Resource not found: " + p);
+            }
+            return resource.toExternalForm();
+        });
+    }
+
+    /**
+     * Switches the severity pseudo-class of a label, the colors are defined in the stylesheet
+     *
+     * @param label the severity label
+     * @param severityClass the severity class of the interaction
+     */
+    public static void applySeverity(Label label, String severityClass) {
+        for (Map.Entry<String, PseudoClass> state : severityStates.entrySet()) {
+            label.pseudoClassStateChanged(state.getValue(), state.getKey().equals(severityClass));
+        }
+    }
+}
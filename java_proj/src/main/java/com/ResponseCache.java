@@ -0,0 +1,124 @@
+package com;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Least recently used cache of serialized response payloads, bounded by their total size in bytes
+ * Entries expire after a fixed age; the servers only put successful responses, so a failed lookup is retried by the next request
+ * Clearing the cache starts a new generation, a response computed from the data of an older generation is not stored
+ */
+public class ResponseCache {
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+    private long generation;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Cached payload with its size and creation time
+     */
+    private static class Entry {
+        private final byte[] payload;
+        private final long size;
+        private final long createdAt;
+
+        Entry(String key, byte[] payload) {
+            this.payload = payload;
+            this.size = key.length() * 2L + payload.length + ENTRY_OVERHEAD_BYTES;
+            this.createdAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Constructs an empty cache
+     *
+     * @param maxBytes the maximum total size of the keys and payloads
+     * @param maxAgeMillis the age after which an entry is no longer served
+     */
+    public ResponseCache(long maxBytes, long maxAgeMillis) {
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    //Getters
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+    public synchronized long getBytes() { return bytes; }
+    public synchronized int getSize() { return entries.size(); }
+    public synchronized long getGeneration() { return generation; }
+
+    /**
+     * Returns the share of lookups answered from the cache
+     *
+     * @return the hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    /**
+     * Looks up a payload
+     *
+     * @param key the request key
+     * @return the payload, null if absent or expired
+     */
+    public synchronized byte[] get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.createdAt > maxAgeMillis) {
+            entries.remove(key);
+            bytes -= entry.size;
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.payload;
+    }
+
+    /**
+     * Stores a payload and evicts the least recently used entries beyond the size bound
+     * A payload larger than the whole bound, or computed before the cache was last cleared, is not stored
+     *
+     * @param key the request key
+     * @param payload the serialized response
+     * @param computedIn the generation read before the response was computed
+     */
+    public synchronized void put(String key, byte[] payload, long computedIn) {
+        Entry entry = new Entry(key, payload);
+        if (entry.size > maxBytes || computedIn != generation) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            bytes -= previous.size;
+        }
+        bytes += entry.size;
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getValue().size;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Drops every entry, used when the underlying data changed
+     */
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        bytes = 0;
+    }
+}
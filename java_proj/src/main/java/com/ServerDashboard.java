@@ -0,0 +1,285 @@
+package com;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.Separator;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+
+/**
+ * Live status window of a running MQTT or HTTP server, refreshed every second from the metrics registry
+ * Rates, percentiles and hit rates cover the last WINDOW_SECONDS, computed from copies of the histograms and counters taken on every refresh
+ * Only the registry is read, so the request path of the server gets no locks or callbacks for the dashboard
+ */
+public class ServerDashboard {
+    private static final int WINDOW_SECONDS = 10;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+    private final String prefix;
+    private final Runnable onStop;
+    private final ArrayDeque<Sample> samples = new ArrayDeque<>();
+    private final Map<String, Label[]> actionRows = new LinkedHashMap<>();
+    private Stage stage;
+    private Timeline timeline;
+    private Label throughputLabel;
+    private Label latencyLabel;
+    private Label inFlightLabel;
+    private Label queuedLabel;
+    private Label databaseLabel;
+    private Label cacheLabel;
+    private Label brokerLabel;
+    private GridPane actionTable;
+
+    /**
+     * The registry values of one refresh
+     */
+    private static class Sample {
+        private final long takenAt = System.nanoTime();
+        private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        private long cacheHits;
+        private long cacheMisses;
+    }
+
+    /**
+     * Constructs the dashboard of a server
+     *
+     * @param prefix the metric prefix of the server, mqtt.server or http.server
+     * @param onStop called after the window closed when the user stops the server
+     */
+    public ServerDashboard(String prefix, Runnable onStop) {
+        this.prefix = prefix;
+        this.onStop = onStop;
+    }
+
+    /**
+     * Opens the window and starts refreshing it, the refresh stops when the window is closed
+     */
+    public void show() {
+        stage = new Stage();
+        stage.setTitle("Server Status");
+
+        Label statusLabel = new Label("Server is running...");
+        statusLabel.getStyleClass().add("dashboard-title");
+
+        GridPane summary = new GridPane();
+        summary.setHgap(15);
+        summary.setVgap(6);
+        throughputLabel = addSummaryRow(summary, 0, "Requests/s");
+        latencyLabel = addSummaryRow(summary, 1, "Latency");
+        inFlightLabel = addSummaryRow(summary, 2, "In flight");
+        queuedLabel = addSummaryRow(summary, 3, "Queued");
+        databaseLabel = addSummaryRow(summary, 4, "Database");
+        cacheLabel = addSummaryRow(summary, 5, "Response cache");
+        brokerLabel = addSummaryRow(summary, 6, "Broker");
+
+        actionTable = new GridPane();
+        actionTable.setHgap(20);
+        actionTable.setVgap(4);
+        String[] headers = {"Action", "req/s", "p50 ms", "p99 ms"};
+        for (int column = 0; column < headers.length; column++) {
+            Label header = new Label(headers[column]);
+            header.getStyleClass().add("dashboard-header");
+            actionTable.add(header, column, 0);
+        }
+
+        Label windowLabel = new Label("Rates and latencies over the last " + WINDOW_SECONDS + " s");
+        windowLabel.getStyleClass().add("dashboard-note");
+
+        Button stopButton = new Button("Stop Server");
+        stopButton.setOnAction(e -> {
+            stage.close();
+            onStop.run();
+        });
+
+        VBox layout = new VBox(12, statusLabel, summary, new Separator(), actionTable, windowLabel, stopButton);
+        layout.setPadding(new Insets(20));
+        layout.getStyleClass().add("dashboard-root");
+
+        refresh();
+        timeline = new Timeline(new KeyFrame(Duration.seconds(1), e -> refresh()));
+        timeline.setCycleCount(Timeline.INDEFINITE);
+        timeline.play();
+        stage.setOnHidden(e -> timeline.stop());
+
+        Scene scene = new Scene(layout, 560, 520);
+        scene.getStylesheets().add(ResourceCache.stylesheet());
+        stage.setScene(scene);
+        stage.show();
+    }
+
+    /**
+     * Adds a row of the summary grid
+     *
+     * @param summary the summary grid
+     * @param row the row index
+     * @param name the name of the value
+     * @return the label showing the value
+     */
+    private static Label addSummaryRow(GridPane summary, int row, String name) {
+        Label nameLabel = new Label(name);
+        nameLabel.getStyleClass().add("dashboard-name");
+        Label valueLabel = new Label("-");
+        valueLabel.getStyleClass().add("dashboard-value");
+        summary.add(nameLabel, 0, row);
+        summary.add(valueLabel, 1, row);
+        return valueLabel;
+    }
+
+    /**
+     * Copies the histograms and cache counters shown by the dashboard
+     *
+     * @return the sample
+     */
+    private Sample takeSample() {
+        Sample sample = new Sample();
+        Metrics.histograms(prefix + ".").forEach((name, histogram) -> sample.histograms.put(name, histogram.copy()));
+        Metrics.histograms("db.").forEach((name, histogram) -> sample.histograms.put(name, histogram.copy()));
+        sample.cacheHits = valueOf(prefix + ".cache.hits");
+        sample.cacheMisses = valueOf(prefix + ".cache.misses");
+        return sample;
+    }
+
+    /**
+     * Reads a counter or a gauge
+     *
+     * @param name the name of the metric
+     * @return the value, 0 if the metric does not exist yet
+     */
+    private static long valueOf(String name) {
+        Long value = Metrics.read(name);
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * Takes a sample and updates the labels from the difference to the oldest sample of the window
+     */
+    private void refresh() {
+        Sample now = takeSample();
+        samples.addLast(now);
+        while (samples.size() > WINDOW_SECONDS + 1) {
+            samples.removeFirst();
+        }
+        Sample oldest = samples.peekFirst();
+        double seconds = (now.takenAt - oldest.takenAt) / NANOS_PER_SECOND;
+
+        LatencyHistogram requests = windowOf(prefix + ".request", now, oldest);
+        throughputLabel.setText(rate(requests, seconds));
+        latencyLabel.setText(requests.getCount() == 0 ? "-"
+                : String.format("p50 %.1f ms, p99 %.1f ms", requests.getPercentile(50) / NANOS_PER_MILLI, requests.getPercentile(99) / NANOS_PER_MILLI));
+        inFlightLabel.setText(String.valueOf(valueOf(prefix + ".inFlight")));
+        Long interactive = Metrics.read(prefix + ".queued.interactive");
+        queuedLabel.setText(interactive == null ? "n/a" : String.format("%d interactive, %d bulk", interactive, valueOf(prefix + ".queued.bulk")));
+        databaseLabel.setText(databaseText(now, oldest, seconds));
+        cacheLabel.setText(cacheText(now, oldest));
+        Long connected = Metrics.read(prefix + ".connected");
+        brokerLabel.setText(connected == null ? "n/a" : connected == 1 ? "Connected" : "Disconnected, reconnecting...");
+
+        String actionPrefix = prefix + ".action.";
+        for (String name : now.histograms.keySet()) {
+            if (!name.startsWith(actionPrefix)) {
+                continue;
+            }
+            Label[] row = actionRows.computeIfAbsent(name, key -> addActionRow(key.substring(actionPrefix.length())));
+            LatencyHistogram action = windowOf(name, now, oldest);
+            row[0].setText(rate(action, seconds));
+            row[1].setText(action.getCount() == 0 ? "-" : String.format("%.1f", action.getPercentile(50) / NANOS_PER_MILLI));
+            row[2].setText(action.getCount() == 0 ? "-" : String.format("%.1f", action.getPercentile(99) / NANOS_PER_MILLI));
+        }
+    }
+
+    /**
+     * Returns the values a histogram recorded within the window
+     *
+     * @param name the name of the histogram
+     * @param now the latest sample
+     * @param oldest the oldest sample of the window
+     * @return the histogram of the window, empty if the histogram does not exist yet
+     */
+    private static LatencyHistogram windowOf(String name, Sample now, Sample oldest) {
+        LatencyHistogram current = now.histograms.get(name);
+        if (current == null) {
+            return new LatencyHistogram();
+        }
+        LatencyHistogram earlier = now == oldest ? null : oldest.histograms.get(name);
+        //a histogram created within the window counts from zero
+        return earlier == null ? current.since(new LatencyHistogram()) : current.since(earlier);
+    }
+
+    /**
+     * Formats the rate of the values of a window
+     *
+     * @param window the histogram of the window
+     * @param seconds the length of the window
+     * @return the rate per second, - before the first full second
+     */
+    private static String rate(LatencyHistogram window, double seconds) {
+        return seconds < 1 ? "-" : String.format("%.1f", window.getCount() / seconds);
+    }
+
+    /**
+     * Describes the database load of the window
+     * There is no connection pool, every query opens its own connection, so the load is shown as the average number of queries running
+     *
+     * @param now the latest sample
+     * @param oldest the oldest sample of the window
+     * @param seconds the length of the window
+     * @return the description
+     */
+    private static String databaseText(Sample now, Sample oldest, double seconds) {
+        if (seconds < 1) {
+            return "-";
+        }
+        long busyNanos = 0;
+        for (String name : now.histograms.keySet()) {
+            if (name.startsWith("db.query.")) {
+                busyNanos += windowOf(name, now, oldest).getTotal();
+            }
+        }
+        LatencyHistogram acquire = windowOf("db.connection.acquire", now, oldest);
+        return String.format("%.2f queries running on average, %.1f connections/s, acquire p99 %.1f ms",
+                busyNanos / (seconds * NANOS_PER_SECOND), acquire.getCount() / seconds, acquire.getPercentile(99) / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Describes the hit rate of the response cache within the window
+     *
+     * @param now the latest sample
+     * @param oldest the oldest sample of the window
+     * @return the description, n/a if the server has no response cache
+     */
+    private String cacheText(Sample now, Sample oldest) {
+        if (Metrics.read(prefix + ".cache.hits") == null) {
+            return "n/a";
+        }
+        long hits = now.cacheHits - oldest.cacheHits;
+        long lookups = hits + now.cacheMisses - oldest.cacheMisses;
+        String hitRate = lookups == 0 ? "no lookups" : String.format("%.1f%% hits", 100.0 * hits / lookups);
+        return hitRate + ", " + valueOf(prefix + ".cache.bytes") / 1024 + " KB";
+    }
+
+    /**
+     * Adds the row of an action to the action table
+     *
+     * @param action the name of the action
+     * @return the labels of the rate, p50 and p99 columns
+     */
+    private Label[] addActionRow(String action) {
+        int row = actionRows.size() + 1;
+        actionTable.add(new Label(action), 0, row);
+        Label[] labels = {new Label("-"), new Label("-"), new Label("-")};
+        for (int column = 0; column < labels.length; column++) {
+            actionTable.add(labels[column], column + 1, row);
+        }
+        return labels;
+    }
+}
@@ -0,0 +1,57 @@
+package com;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key into one execution
+ * The first caller of a key runs the loader, callers arriving while it runs wait for and share its result
+ * Nothing is cached: once the execution finishes the next call of the key runs again
+ *
+ * @param <K> the key type
+ * @param <V> the result type
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public long getExecutions() { return executions.sum(); }
+    public long getCoalesced() { return coalesced.sum(); }
+    public int getInFlight() { return inFlight.size(); }
+
+    /**
+     * Runs the loader of a key unless an execution of the key is already in flight
+     *
+     * @param key the normalized request key
+     * @param loader computes the result
+     * @return the result of the own or the shared execution
+     * @throws RuntimeException the exception of the loader, rethrown to every waiter
+     */
+    public V run(K key, Supplier<V> loader) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        executions.increment();
+        try {
+            V value = loader.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory snapshot of the twosides table answering every query without a database round trip
+ * The rows are sorted once in severity order and indexed by pair, by drug and by condition
+ * Each index maps a key to the ascending row numbers of its rows, so every result already comes out in severity order
+ */
+public class SnapshotQuery implements Queryable {
+    private static final int DRUG_SUGGESTION_LIMIT = 50;
+    /**
+     * Severity order of the database queries: severity DESC, prr DESC, condition_meddra_id, drug_1_rxnorm_id
+     */
+    static final Comparator<Twosides> SEVERITY_ORDER = Comparator.comparingDouble(Twosides::getSeverity).reversed()
+            .thenComparing(Comparator.comparingDouble(Twosides::getPrr).reversed())
+            .thenComparingInt(Twosides::getConditionMeddraId)
+            .thenComparingInt(Twosides::getDrug1RxnormId);
+    private final Twosides[] rows;
+    private final Map<String, int[]> byPair;
+    private final Map<String, int[]> byDrug;
+    private final Map<String, int[]> byCondition;
+    private final List<String> drugNames;
+
+    /**
+     * Builds the snapshot and its inverted indexes
+     *
+     * @param twosides every row of the twosides table
+     */
+    public SnapshotQuery(List<Twosides> twosides) {
+        rows = twosides.toArray(new Twosides[0]);
+        Arrays.sort(rows, SEVERITY_ORDER);
+        Map<String, List<Integer>> pairIndex = new HashMap<>();
+        Map<String, List<Integer>> drugIndex = new HashMap<>();
+        Map<String, List<Integer>> conditionIndex = new HashMap<>();
+        Map<String, String> drug1Names = new TreeMap<>();
+        for (int i = 0; i < rows.length; i++) {
+            Twosides row = rows[i];
+            pairIndex.computeIfAbsent(PairBloomFilter.pairKey(row.getDrug1ConceptName(), row.getDrug2ConceptName()), k -> new ArrayList<>()).add(i);
+            drugIndex.computeIfAbsent(normalize(row.getDrug1ConceptName()), k -> new ArrayList<>()).add(i);
+            //a drug paired with itself is indexed once
+            if (!normalize(row.getDrug2ConceptName()).equals(normalize(row.getDrug1ConceptName()))) {
+                drugIndex.computeIfAbsent(normalize(row.getDrug2ConceptName()), k -> new ArrayList<>()).add(i);
+            }
+            conditionIndex.computeIfAbsent(normalize(row.getConditionName()), k -> new ArrayList<>()).add(i);
+            drug1Names.putIfAbsent(normalize(row.getDrug1ConceptName()), row.getDrug1ConceptName());
+        }
+        byPair = compact(pairIndex);
+        byDrug = compact(drugIndex);
+        byCondition = compact(conditionIndex);
+        drugNames = new ArrayList<>(drug1Names.values());
+    }
+
+    /**
+     * Converts the row number lists of an index to int arrays
+     *
+     * @param index the index with boxed row numbers
+     * @return the compact index
+     */
+    private static Map<String, int[]> compact(Map<String, List<Integer>> index) {
+        Map<String, int[]> compacted = new HashMap<>(index.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<Integer>> entry : index.entrySet()) {
+            compacted.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        return compacted;
+    }
+
+    /**
+     * Normalizes a name the way the case insensitive database collation compares it
+     *
+     * @param name the drug or condition name
+     * @return the normalized name
+     */
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Checks whether a row passes the severity filter of the filtered queries
+     *
+     * @param twosides the row
+     * @param filtered whether unknown and negligible interactions are excluded
+     * @return true if the row is part of the result
+     */
+    private static boolean accepts(Twosides twosides, boolean filtered) {
+        return !filtered || !("Unknown".equals(twosides.getSeverityClass()) || "Negligible".equals(twosides.getSeverityClass()));
+    }
+
+    /**
+     * Returns the row numbers of a drug pair
+     *
+     * @param drug1Name the name of the first drug
+     * @param drug2Name the name of the second drug
+     * @return the ascending row numbers, empty if the pair has no rows
+     */
+    private int[] pairRows(String drug1Name, String drug2Name) {
+        return byPair.getOrDefault(PairBloomFilter.pairKey(drug1Name, drug2Name), new int[0]);
+    }
+
+    public int size() { return rows.length; }
+
+    /**
+     * Queries the interactions of a drug pair from the snapshot
+     *
+     * @param drug1Name the name of the first drug
+     * @param drug2Name the name of the second drug
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @return a TwosidesCol object containing the drug interactions in severity order
+     */
+    public TwosidesCol queryTwosides(String drug1Name, String drug2Name, boolean filtered) {
+        Map<String, Twosides> interactions = new LinkedHashMap<>();
+        for (int i : pairRows(drug1Name, drug2Name)) {
+            if (accepts(rows[i], filtered)) {
+                interactions.put(TwosidesCol.getMapStrId(rows[i]), rows[i]);
+            }
+        }
+        return new TwosidesCol(TwosidesCol.getMapStrId(drug1Name, drug2Name), interactions);
+    }
+
+    /**
+     * Searches the drug names of the snapshot
+     *
+     * @param drugName the name of the drug to search for
+     * @param like whether to search for names containing the text or for an exact match
+     * @return a list of drug names matching the search criteria
+     */
+    public List<String> queryDrug(String drugName, boolean like) {
+        String search = normalize(drugName);
+        List<String> results = new ArrayList<>();
+        for (String name : drugNames) {
+            String normalized = normalize(name);
+            if (like ? normalized.contains(search) : normalized.equals(search)) {
+                results.add(name);
+                if (results.size() == (like ? DRUG_SUGGESTION_LIMIT : 1)) {
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Computes the aggregates of a drug pair from the snapshot
+     *
+     * @param drug1Name the name of the first drug
+     * @param drug2Name the name of the second drug
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @return the summary of the pair
+     */
+    public PairSummary queryPairSummary(String drug1Name, String drug2Name, boolean filtered) {
+        return PairSummary.of(drug1Name, drug2Name, queryTwosides(drug1Name, drug2Name, filtered).getCol().values().iterator().next());
+    }
+
+    /**
+     * Returns one page of the interactions of a drug pair from the snapshot
+     *
+     * @param drug1Name the name of the first drug
+     * @param drug2Name the name of the second drug
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @param after the cursor of the previous page, null for the first page
+     * @param limit the maximum number of rows of the page
+     * @return the page of interactions
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public TwosidesPage queryTwosidesPage(String drug1Name, String drug2Name, boolean filtered, TwosidesPage.Cursor after, int limit) {
+        TwosidesPage.checkLimit(limit);
+        List<Twosides> page = new ArrayList<>();
+        boolean hasMore = false;
+        for (int i : pairRows(drug1Name, drug2Name)) {
+            Twosides row = rows[i];
+            if (!accepts(row, filtered) || (after != null && !after.precedes(row))) {
+                continue;
+            }
+            if (page.size() == limit) {
+                hasMore = true;
+                break;
+            }
+            page.add(row);
+        }
+        return new TwosidesPage(drug1Name, drug2Name, page, hasMore);
+    }
+
+    /**
+     * Aggregates every drug interacting with the given drug from the drug index
+     *
+     * @param drugName the name of the drug
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @return the summaries of the pairs with drug1 set to the given drug, the most severe first
+     */
+    public List<PairSummary> queryNeighbors(String drugName, boolean filtered) {
+        String drug = normalize(drugName);
+        Map<String, Map<String, Twosides>> byNeighbor = new LinkedHashMap<>();
+        for (int i : byDrug.getOrDefault(drug, new int[0])) {
+            Twosides row = rows[i];
+            if (accepts(row, filtered)) {
+                String neighbor = normalize(row.getDrug1ConceptName()).equals(drug) ? row.getDrug2ConceptName() : row.getDrug1ConceptName();
+                byNeighbor.computeIfAbsent(neighbor, k -> new LinkedHashMap<>()).put(TwosidesCol.getMapStrId(row), row);
+            }
+        }
+        List<PairSummary> neighbors = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Twosides>> entry : byNeighbor.entrySet()) {
+            neighbors.add(PairSummary.of(drugName, entry.getKey(), entry.getValue()));
+        }
+        neighbors.sort(Comparator.comparingInt((PairSummary summary) -> PairSummary.severityRank(summary.getMaxSeverityClass())).reversed()
+                .thenComparing(Comparator.comparingInt(PairSummary::getRowCount).reversed()));
+        return neighbors;
+    }
+
+    /**
+     * Builds the interaction graph of the snapshot, one edge per interacting pair
+     *
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @return the interaction graph
+     */
+    public InteractionGraph toInteractionGraph(boolean filtered) {
+        InteractionGraph.Builder builder = new InteractionGraph.Builder();
+        for (int[] pairRows : byPair.values()) {
+            double maxSeverity = 0;
+            double maxPrr = 0;
+            boolean interacting = false;
+            for (int i : pairRows) {
+                if (accepts(rows[i], filtered)) {
+                    maxSeverity = Math.max(maxSeverity, rows[i].getSeverity());
+                    maxPrr = Math.max(maxPrr, rows[i].getPrr());
+                    interacting = true;
+                }
+            }
+            if (interacting) {
+                Twosides first = rows[pairRows[0]];
+                builder.addEdge(first.getDrug1ConceptName(), first.getDrug2ConceptName(), maxSeverity, maxPrr);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the interactions reporting a condition from the condition index, the most severe first
+     * When a drug is given the shorter of the condition and the drug index is scanned
+     *
+     * @param conditionName the name of the condition
+     * @param drugName restricts the result to pairs containing this drug, null for every pair
+     * @param filtered whether to exclude interactions with unknown or negligible severity
+     * @param limit the maximum number of rows
+     * @return the matching Twosides records
+     */
+    public List<Twosides> queryByCondition(String conditionName, String drugName, boolean filtered, int limit) {
+        String condition = normalize(conditionName);
+        String drug = drugName == null ? null : normalize(drugName);
+        int[] conditionRows = byCondition.getOrDefault(condition, new int[0]);
+        int[] candidates = conditionRows;
+        if (drug != null) {
+            int[] drugRows = byDrug.getOrDefault(drug, new int[0]);
+            candidates = drugRows.length < conditionRows.length ? drugRows : conditionRows;
+        }
+        List<Twosides> result = new ArrayList<>();
+        for (int i : candidates) {
+            Twosides row = rows[i];
+            boolean matchesDrug = drug == null || normalize(row.getDrug1ConceptName()).equals(drug) || normalize(row.getDrug2ConceptName()).equals(drug);
+            if (matchesDrug && normalize(row.getConditionName()).equals(condition) && accepts(row, filtered)) {
+                result.add(row);
+                if (result.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+package com;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of the interactions of a drug pair, ordered from the most to the least severe
+ * Pages are chained with a keyset cursor, so fetching a later page does not rescan the rows before it
+ */
+public class TwosidesPage {
+    private String drug1;
+    private String drug2;
+    private List<Twosides> rows;
+    private boolean hasMore;
+    private Cursor nextCursor;
+
+    /**
+     * Position after the last row of a page in the order severity DESC, prr DESC, condition_meddra_id, drug_1_rxnorm_id
+     */
+    public static class Cursor {
+        private double severity;
+        private double prr;
+        private int conditionMeddraId;
+        private int drug1RxnormId;
+
+        /**
+         * Constructs a cursor positioned after the given row
+         *
+         * @param twosides the last row of a page
+         */
+        public Cursor(Twosides twosides) {
+            this.severity = twosides.getSeverity();
+            this.prr = twosides.getPrr();
+            this.conditionMeddraId = twosides.getConditionMeddraId();
+            this.drug1RxnormId = twosides.getDrug1RxnormId();
+        }
+
+        //Getters
+        public double getSeverity() { return severity; }
+        public double getPrr() { return prr; }
+        public int getConditionMeddraId() { return conditionMeddraId; }
+        public int getDrug1RxnormId() { return drug1RxnormId; }
+
+        /**
+         * Checks whether a row comes after this cursor in severity order
+         *
+         * @param row the row
+         * @return true if the row belongs to a later page
+         */
+        public boolean precedes(Twosides row) {
+            if (row.getSeverity() != severity) {
+                return row.getSeverity() < severity;
+            }
+            if (row.getPrr() != prr) {
+                return row.getPrr() < prr;
+            }
+            if (row.getConditionMeddraId() != conditionMeddraId) {
+                return row.getConditionMeddraId() > conditionMeddraId;
+            }
+            return row.getDrug1RxnormId() > drug1RxnormId;
+        }
+    }
+
+    /**
+     * Rejects a page size that could never make progress, a page of 0 rows would be followed by the same page forever
+     *
+     * @param limit the maximum number of rows of a page
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public static void checkLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Invalid parameter: limit must be positive");
+        }
+    }
+
+    /**
+     * Constructs a page, the next cursor points after its last row if more rows follow
+     *
+     * @param drug1 the name of the first drug
+     * @param drug2 the name of the second drug
+     * @param rows the rows of the page in severity order
+     * @param hasMore whether more rows follow this page
+     */
+    public TwosidesPage(String drug1, String drug2, List<Twosides> rows, boolean hasMore) {
+        this.drug1 = drug1;
+        this.drug2 = drug2;
+        this.rows = rows;
+        this.hasMore = hasMore;
+        this.nextCursor = hasMore && !rows.isEmpty() ? new Cursor(rows.get(rows.size() - 1)) : null;
+    }
+
+    //Getters
+    public String getDrug1() { return drug1; }
+    public String getDrug2() { return drug2; }
+    public List<Twosides> getRows() { return rows; }
+    public boolean hasMore() { return hasMore; }
+    public Cursor getNextCursor() { return nextCursor; }
+
+    /**
+     * Returns the rows keyed like the maps of a TwosidesCol, keeping their severity order
+     *
+     * @return an insertion ordered map of the rows
+     */
+    public Map<String, Twosides> toInteractionMap() {
+        Map<String, Twosides> interactions = new LinkedHashMap<>();
+        for (Twosides twosides : rows) {
+            interactions.put(TwosidesCol.getMapStrId(twosides), twosides);
+        }
+        return interactions;
+    }
+}
@@ -0,0 +1,192 @@
+package com;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Thread pool with one queue per priority lane, served by weighted round robin
+ * Out of every sum(weights) tasks a busy lane gets its weight worth of turns, an idle lane's turns go to the others
+ * Some workers are reserved for lane 0, so long tasks of the other lanes cannot occupy every thread
+ */
+public class WeightedFairExecutor {
+    private static final Logger logger = Logger.getLogger(WeightedFairExecutor.class.getName());
+    private final int[] weights;
+    private final int[] schedule;
+    private final List<ArrayDeque<Runnable>> queues;
+    private final LongAdder[] completed;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Thread[] workers;
+    private int turn;
+    private volatile boolean shutdown;
+
+    /**
+     * Starts the workers
+     *
+     * @param name the prefix of the worker thread names
+     * @param threads the total number of workers
+     * @param reservedForFirstLane the number of workers that only run lane 0
+     * @param weights the weight of every lane, lane 0 first
+     */
+    public WeightedFairExecutor(String name, int threads, int reservedForFirstLane, int... weights) {
+        if (reservedForFirstLane >= threads) {
+            throw new IllegalArgumentException("At least one worker must serve every lane");
+        }
+        this.weights = weights.clone();
+        this.queues = new ArrayList<>(weights.length);
+        this.completed = new LongAdder[weights.length];
+        int total = 0;
+        for (int lane = 0; lane < weights.length; lane++) {
+            queues.add(new ArrayDeque<>());
+            completed[lane] = new LongAdder();
+            total += weights[lane];
+        }
+        //interleaves the lanes, e.g. weights 3 and 1 give 0 0 1 0 rather than 0 0 0 1
+        schedule = new int[total];
+        int[] given = new int[weights.length];
+        for (int slot = 0; slot < total; slot++) {
+            int best = 0;
+            for (int lane = 1; lane < weights.length; lane++) {
+                if ((double) (given[lane] + 1) / weights[lane] <= (double) (given[best] + 1) / weights[best]) {
+                    best = lane;
+                }
+            }
+            schedule[slot] = best;
+            given[best]++;
+        }
+        workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            boolean reserved = i < reservedForFirstLane;
+            workers[i] = new Thread(() -> work(reserved), name + "-" + (i + 1) + (reserved ? "-reserved" : ""));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    public int getLanes() { return weights.length; }
+
+    /**
+     * Returns the number of queued tasks of a lane
+     *
+     * @param lane the lane
+     * @return the queue length
+     */
+    public int getQueued(int lane) {
+        lock.lock();
+        try {
+            return queues.get(lane).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of finished tasks of a lane
+     *
+     * @param lane the lane
+     * @return the number of tasks run
+     */
+    public long getCompleted(int lane) {
+        return completed[lane].sum();
+    }
+
+    /**
+     * Queues a task on a lane
+     *
+     * @param lane the priority lane, 0 is served by the reserved workers too
+     * @param task the task
+     * @throws RejectedExecutionException after shutdown
+     */
+    public void execute(int lane, Runnable task) {
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor is shut down");
+            }
+            queues.get(lane).addLast(task);
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the workers once the queued tasks are done
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        lock.lock();
+        try {
+            shutdown = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        long end = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread worker : workers) {
+            worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime())));
+        }
+    }
+
+    /**
+     * Loop of a worker
+     *
+     * @param reserved whether the worker only runs lane 0
+     */
+    private void work(boolean reserved) {
+        while (true) {
+            int lane;
+            Runnable task;
+            lock.lock();
+            try {
+                while ((lane = nextLane(reserved)) < 0) {
+                    if (shutdown) {
+                        return;
+                    }
+                    notEmpty.awaitUninterruptibly();
+                }
+                task = queues.get(lane).pollFirst();
+            } finally {
+                lock.unlock();
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Task failed", e);
+            }
+            completed[lane].increment();
+        }
+    }
+
+    /**
+     * Picks the lane of the next task, the caller holds the lock
+     * The lane of the current turn is served if it has work, otherwise the following turns are tried
+     *
+     * @param reserved whether only lane 0 may be picked
+     * @return the lane, -1 if no allowed lane has work
+     */
+    private int nextLane(boolean reserved) {
+        if (reserved) {
+            return queues.get(0).isEmpty() ? -1 : 0;
+        }
+        for (int i = 0; i < schedule.length; i++) {
+            int lane = schedule[(turn + i) % schedule.length];
+            if (!queues.get(lane).isEmpty()) {
+                turn = (turn + i + 1) % schedule.length;
+                return lane;
+            }
+        }
+        return -1;
+    }
+}
@@ -20,11 +20,14 @@ public class WikiAPI {
 
     /**
      * Fetches data from the Wikipedia API for a given query
+     * The time of successful fetches is recorded in the wiki.fetch histogram
      *
      * @param query the topic to query in the Wikipedia API
      * @return a JsonObject containing the API response or null if an error occurs
      */
     private static JsonObject fetch(String query) {
+        long start = System.nanoTime();
+        JfrEvents.WikiFetch event = new JfrEvents.WikiFetch(query);
         try {
             String encodedQuery = query.replace(" ", "%20");
             URL url = new URL(urlStr + encodedQuery);
@@ -40,12 +43,17 @@ public class WikiAPI {
             reader.close();
             JsonObject jsonResponse = JsonParser.parseString(response.toString()).getAsJsonObject();
             JsonObject data = jsonResponse.getAsJsonObject("query").getAsJsonObject("pages");
+            Metrics.recordSince("wiki.fetch", start);
+            event.finish(response.length(), true);
+            Metrics.counter("wiki.responseChars").add(response.length());
             logger.info("WikiAPI data loaded successfully. Request #" + counter);
             counter++;
 
             return data;
 
         } catch (Exception e) {
+            Metrics.counter("wiki.fetch.errors").increment();
+            event.finish(0, false);
             logger.log(Level.SEVERE, "An error occurred while loading WikiAPI data", e);
             return null;
         }
@@ -1,6 +1,7 @@
 package com;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 
 public class mockDb {
 //mock db for testing in case mysql decides to play truant again
@@ -43,5 +44,34 @@ public class mockDb {
 
         return twosidesCol;
     }
-}
 
+    /**
+     * Generates a deterministic synthetic collection, used to measure rendering of large result sets
+     *
+     * @param pairs number of drug pairs
+     * @param rowsPerPair number of interaction rows per pair
+     * @return the synthetic TwosidesCol
+     */
+    public static TwosidesCol getSyntheticDb(int pairs, int rowsPerPair) {
+        String[] severityClasses = {"Critical", "Severe", "Medium", "Minor", "Negligible", "Unknown"};
+        Random random = new Random(42);
+        TwosidesCol twosidesCol = new TwosidesCol();
+        for (int p = 0; p < pairs; p++) {
+            String drug1 = "Drug " + (2 * p);
+            String drug2 = "Drug " + (2 * p + 1);
+            Map<String, Twosides> interactionMap = new HashMap<>();
+            for (int r = 0; r < rowsPerPair; r++) {
+                int a = 10 + random.nextInt(500);
+                int b = 100 + random.nextInt(7000);
+                double prr = 1 + random.nextDouble() * 10;
+                Twosides twosides = new Twosides(1000 + 2 * p, drug1, 1001 + 2 * p, drug2, 10000000 + r, "Condition " + r,
+                        a, b, 10 + random.nextInt(3000), 1000 + random.nextInt(70000),
+                        prr, random.nextDouble() * 0.5, random.nextDouble() * 0.1, random.nextDouble() * 4,
+                        severityClasses[random.nextInt(severityClasses.length)]);
+                interactionMap.put(TwosidesCol.getMapStrId(twosides), twosides);
+            }
+            twosidesCol.addTwosides(TwosidesCol.getMapStrId(drug1, drug2), interactionMap);
+        }
+        return twosidesCol;
+    }
+}
@@ -0,0 +1,107 @@
+package com;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the streaming results model
+ */
+public class InteractionResultsTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    /**
+     * Backend answering every pair with the given number of interactions
+     */
+    private static class CountingSource implements Queryable {
+        private final int interactions;
+
+        CountingSource(int interactions) {
+            this.interactions = interactions;
+        }
+
+        @Override
+        public TwosidesCol queryTwosides(String drug1Name, String drug2Name, boolean filtered) {
+            Map<String, Twosides> rows = new LinkedHashMap<>();
+            for (int i = 0; i < interactions; i++) {
+                Twosides twosides = new Twosides(1, drug1Name, 2, drug2Name, i, "condition " + i, 1, 1, 1, 1, 2.0, 0.1, 0.01, 1.0, "Minor");
+                rows.put(TwosidesCol.getMapStrId(twosides), twosides);
+            }
+            return new TwosidesCol(TwosidesCol.getMapStrId(drug1Name, drug2Name), rows);
+        }
+
+        @Override
+        public List<String> queryDrug(String drugName, boolean like) { return List.of(drugName); }
+        @Override
+        public PairSummary queryPairSummary(String drug1Name, String drug2Name, boolean filtered) { return null; }
+        @Override
+        public TwosidesPage queryTwosidesPage(String drug1Name, String drug2Name, boolean filtered, TwosidesPage.Cursor after, int limit) { return null; }
+        @Override
+        public List<PairSummary> queryNeighbors(String drugName, boolean filtered) { return null; }
+        @Override
+        public List<Twosides> queryByCondition(String conditionName, String drugName, boolean filtered, int limit) { return null; }
+    }
+
+    /**
+     * A lookup that started before the data changed is dropped, the pair is filled by the lookup of the new data
+     */
+    @Test
+    public void dropsLookupsOfOldData() throws InterruptedException {
+        InteractionResults results = new InteractionResults();
+        PairResult pair = results.addPair("aspirin", "warfarin");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        BlockingQueue<Runnable> callbacks = new LinkedBlockingQueue<>();
+
+        results.fetchPending(new CountingSource(1), false, false, executor, callbacks::add);
+        Runnable oldCompletion = callbacks.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(oldCompletion);
+        results.invalidateAll();
+        oldCompletion.run();
+        assertEquals(PairResult.Status.PENDING, pair.getStatus());
+
+        results.fetchPending(new CountingSource(3), false, false, executor, callbacks::add);
+        Runnable newCompletion = callbacks.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(newCompletion);
+        newCompletion.run();
+        assertEquals(PairResult.Status.LOADED, pair.getStatus());
+        assertEquals(3, pair.getInteractions().size());
+        executor.shutdownNow();
+    }
+
+    /**
+     * The completed count follows loads, failures, retries, removals and invalidation
+     */
+    @Test
+    public void countsCompletedPairs() {
+        InteractionResults results = new InteractionResults();
+        PairResult loaded = results.addPair("aspirin", "warfarin");
+        PairResult failed = results.addPair("aspirin", "ibuprofen");
+        results.addPair("warfarin", "ibuprofen");
+        assertEquals(0, results.getCompletedCount());
+
+        results.complete(loaded.getKey(), Map.of(), 1);
+        results.fail(failed.getKey(), "timeout", 1);
+        results.complete(loaded.getKey(), Map.of(), 1);
+        assertEquals(2, results.getCompletedCount());
+
+        results.retryFailed();
+        assertEquals(1, results.getCompletedCount());
+        results.removePair(loaded.getKey());
+        assertEquals(0, results.getCompletedCount());
+
+        results.fail(failed.getKey(), "timeout", 1);
+        assertEquals(1, results.getCompletedCount());
+        results.invalidateAll();
+        assertEquals(0, results.getCompletedCount());
+    }
+}
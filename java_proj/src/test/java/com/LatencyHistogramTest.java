@@ -0,0 +1,109 @@
+package com;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the bucketed latency histogram
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Returns the upper bound of the bucket a value falls into
+     * The value is recorded next to a much larger one, so the median is the value's bucket and not capped by the maximum
+     *
+     * @param value the value
+     * @return the upper bound reported for the value
+     */
+    private static long reportedBound(long value) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        histogram.record(Long.MAX_VALUE);
+        return histogram.getPercentile(50);
+    }
+
+    /**
+     * Values below 128 each have a bucket of their own
+     */
+    @Test
+    public void keepsSmallValuesExact() {
+        for (long value = 0; value < 128; value++) {
+            assertEquals(value, reportedBound(value));
+        }
+    }
+
+    /**
+     * A larger value is reported at most 1/64 above itself, at every power of two and at its edges
+     */
+    @Test
+    public void boundsBucketErrorRelativeToValue() {
+        Random random = new Random(42);
+        for (int power = 7; power < 63; power++) {
+            long low = 1L << power;
+            long[] values = {low, low + 1, (low << 1) - 1, low + (long) (random.nextDouble() * low)};
+            for (long value : values) {
+                long bound = reportedBound(value);
+                assertTrue(bound >= value, value + " reported as " + bound);
+                assertTrue(bound - value <= value / 64, value + " reported as " + bound);
+            }
+        }
+        assertEquals(Long.MAX_VALUE, reportedBound(Long.MAX_VALUE));
+    }
+
+    /**
+     * Adjacent buckets meet without gaps: the bound of a bucket is the last value before the next one starts
+     */
+    @Test
+    public void hasContiguousBuckets() {
+        for (long value = 128; value < 1 << 16; value = reportedBound(value) + 1) {
+            long bound = reportedBound(value);
+            assertEquals(bound, reportedBound(bound));
+            assertTrue(reportedBound(bound + 1) > bound);
+        }
+    }
+
+    /**
+     * Percentiles of a uniform distribution are found within the bucket error
+     */
+    @Test
+    public void findsPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000, histogram.getMax());
+        assertEquals(50_000.5, histogram.getMean(), 1e-9);
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long expected = (long) (percentile * 1000);
+            long reported = histogram.getPercentile(percentile);
+            assertTrue(reported >= expected && reported - expected <= expected / 64, percentile + " reported as " + reported);
+        }
+        assertEquals(100_000, histogram.getPercentile(100));
+    }
+
+    /**
+     * The difference to an earlier copy only holds the values recorded after the copy
+     */
+    @Test
+    public void subtractsEarlierCopy() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 100; i++) {
+            histogram.record(1_000);
+        }
+        LatencyHistogram earlier = histogram.copy();
+        for (int i = 0; i < 10; i++) {
+            histogram.record(5_000_000);
+        }
+        LatencyHistogram since = histogram.since(earlier);
+        assertEquals(10, since.getCount());
+        assertEquals(50_000_000, since.getTotal());
+        assertTrue(since.getPercentile(1) >= 5_000_000);
+        assertEquals(100, earlier.getCount());
+        assertEquals(1_000, earlier.getMax());
+    }
+}
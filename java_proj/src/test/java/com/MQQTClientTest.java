@@ -0,0 +1,68 @@
+package com;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the request batching of the MQTT client, run against an embedded broker without a server
+ */
+public class MQQTClientTest {
+    private static final long TIMEOUT_SECONDS = 10;
+    private static EmbeddedBroker broker;
+
+    /**
+     * Starts the broker on a free port
+     */
+    @BeforeAll
+    public static void startBroker() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        broker = new EmbeddedBroker(port);
+    }
+
+    /**
+     * Stops the broker
+     */
+    @AfterAll
+    public static void stopBroker() {
+        broker.stop();
+    }
+
+    /**
+     * A bulk request whose caller gives up before its batch window ends is never published
+     */
+    @Test
+    public void shedsRequestsExpiredBeforePublish() throws Exception {
+        MQQTClient client = new MQQTClient(broker.getLocalUrl(), false);
+        try {
+            client.setBulkOnly(true);
+            //let the pair filter request sent on connect leave the batch first, an interactive request would flush it
+            Thread.sleep(100);
+            CompletableFuture<TwosidesCol> response = client.queryTwosidesAsync("Aspirin", "Warfarin", true, 1);
+            ExecutionException failure = assertThrows(ExecutionException.class, () -> response.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, failure.getCause());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+            while (client.getShedBeforePublish() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(1, client.getShedBeforePublish());
+            assertEquals(1, client.getExpiredRequests());
+        } finally {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonParser;
+
+/**
+ * Unit tests for the drug pair membership filter
+ */
+public class PairBloomFilterTest {
+    private static final int PAIRS = 10_000;
+    private static final int PROBES = 100_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    /**
+     * Builds a filter holding the pairs drug-i and partner-i
+     *
+     * @return the filled filter
+     */
+    private static PairBloomFilter filledFilter() {
+        PairBloomFilter filter = new PairBloomFilter(PAIRS, FALSE_POSITIVE_RATE, "test-version");
+        for (int i = 0; i < PAIRS; i++) {
+            filter.put("Drug " + i, "Partner " + i);
+        }
+        return filter;
+    }
+
+    /**
+     * Every inserted pair is found, whatever the drug order and letter case of the lookup
+     */
+    @Test
+    public void hasNoFalseNegatives() {
+        PairBloomFilter filter = filledFilter();
+        for (int i = 0; i < PAIRS; i++) {
+            assertTrue(filter.mightContain("Drug " + i, "Partner " + i));
+            assertTrue(filter.mightContain("Partner " + i, "Drug " + i));
+            assertTrue(filter.mightContain("DRUG " + i, "partner " + i));
+            assertTrue(filter.mightContain(" partner " + i + " ", "dRuG " + i));
+        }
+    }
+
+    /**
+     * Pairs that were never inserted are reported at about the configured rate
+     */
+    @Test
+    public void keepsFalsePositivesNearConfiguredRate() {
+        PairBloomFilter filter = filledFilter();
+        int falsePositives = 0;
+        for (int i = 0; i < PROBES; i++) {
+            if (filter.mightContain("Absent " + i, "Other " + i)) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / PROBES;
+        assertTrue(rate < FALSE_POSITIVE_RATE * 2, "false positive rate " + rate);
+    }
+
+    /**
+     * A filter restored from its JSON gives the same answers as the original
+     */
+    @Test
+    public void survivesJsonRoundTrip() {
+        PairBloomFilter filter = filledFilter();
+        PairBloomFilter restored = PairBloomFilter.fromJson(JsonParser.parseString(filter.toJson().toString()).getAsJsonObject());
+        assertEquals(filter.getVersion(), restored.getVersion());
+        assertEquals(filter.getNumBits(), restored.getNumBits());
+        assertEquals(filter.getNumHashes(), restored.getNumHashes());
+        for (int i = 0; i < PAIRS; i++) {
+            assertTrue(restored.mightContain("Partner " + i, "Drug " + i));
+        }
+        for (int i = 0; i < PROBES; i++) {
+            assertEquals(filter.mightContain("Absent " + i, "Other " + i), restored.mightContain("Absent " + i, "Other " + i));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the size bounded response cache
+ */
+public class ResponseCacheTest {
+
+    /**
+     * Encodes a payload
+     *
+     * @param text the payload text
+     * @return the UTF-8 bytes
+     */
+    private static byte[] payload(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A stored payload is served until it expires, and counted as hit or miss
+     */
+    @Test
+    public void servesUntilExpired() throws InterruptedException {
+        ResponseCache cache = new ResponseCache(1 << 20, 50);
+        assertNull(cache.get("a"));
+        cache.put("a", payload("one"), cache.getGeneration());
+        assertArrayEquals(payload("one"), cache.get("a"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        Thread.sleep(100);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getBytes());
+    }
+
+    /**
+     * The least recently used entries are evicted once the size bound is exceeded
+     */
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        byte[] kilobyte = new byte[1000];
+        ResponseCache cache = new ResponseCache(3500, 60_000);
+        cache.put("a", kilobyte, 0);
+        cache.put("b", kilobyte, 0);
+        cache.put("c", kilobyte, 0);
+        cache.get("a");
+        cache.put("d", kilobyte, 0);
+        assertNull(cache.get("b"));
+        assertArrayEquals(kilobyte, cache.get("a"));
+        assertArrayEquals(kilobyte, cache.get("d"));
+        assertEquals(1, cache.getEvictions());
+        cache.put("huge", new byte[4000], 0);
+        assertNull(cache.get("huge"));
+    }
+
+    /**
+     * A response computed before the cache was cleared is not stored, it may describe the old data
+     */
+    @Test
+    public void dropsResponsesOfClearedGeneration() {
+        ResponseCache cache = new ResponseCache(1 << 20, 60_000);
+        long before = cache.getGeneration();
+        cache.put("a", payload("old"), before);
+        cache.clear();
+        assertNull(cache.get("a"));
+        cache.put("b", payload("old"), before);
+        assertNull(cache.get("b"));
+        cache.put("b", payload("new"), cache.getGeneration());
+        assertArrayEquals(payload("new"), cache.get("b"));
+    }
+}
@@ -0,0 +1,102 @@
+package com;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the coalescing of concurrent identical calls
+ */
+public class SingleFlightTest {
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final int CALLERS = 8;
+
+    /**
+     * Starts callers of one key while the first execution is blocked, then releases it
+     *
+     * @param flight the single flight
+     * @param loader the loader, blocked until the returned latch is released
+     * @param executor runs the callers
+     * @return the results of the callers
+     * @throws InterruptedException if interrupted while waiting for the callers
+     */
+    private static List<Future<String>> callConcurrently(SingleFlight<String, String> flight, Runnable loader, ExecutorService executor) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> flight.run("key", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            loader.run();
+            return "value";
+        })));
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        for (int i = 1; i < CALLERS; i++) {
+            results.add(executor.submit(() -> flight.run("key", () -> "other")));
+        }
+        //the waiters are counted as coalesced once they joined the running execution
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (flight.getCoalesced() < CALLERS - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        return results;
+    }
+
+    /**
+     * Concurrent callers of a key share the one execution, a later call runs again
+     */
+    @Test
+    public void sharesConcurrentExecution() throws InterruptedException, ExecutionException, TimeoutException {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        for (Future<String> result : callConcurrently(flight, () -> {}, executor)) {
+            assertEquals("value", result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        assertEquals(1, flight.getExecutions());
+        assertEquals(CALLERS - 1, flight.getCoalesced());
+        assertEquals(0, flight.getInFlight());
+
+        assertEquals("again", flight.run("key", () -> "again"));
+        assertEquals(2, flight.getExecutions());
+        executor.shutdownNow();
+    }
+
+    /**
+     * The exception of the loader reaches every waiter and does not stick to the key
+     */
+    @Test
+    public void rethrowsFailureToEveryWaiter() throws InterruptedException, TimeoutException {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        IllegalStateException failure = new IllegalStateException("database down");
+        for (Future<String> result : callConcurrently(flight, () -> { throw failure; }, executor)) {
+            try {
+                result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertSame(failure, e.getCause());
+                continue;
+            }
+            throw new AssertionError("the failure was not rethrown");
+        }
+        assertEquals(0, flight.getInFlight());
+        assertEquals("recovered", flight.run("key", () -> "recovered"));
+        executor.shutdownNow();
+    }
+}
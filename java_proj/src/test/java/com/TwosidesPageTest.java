@@ -0,0 +1,133 @@
+package com;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the keyset paging of the interactions of a drug pair
+ */
+public class TwosidesPageTest {
+
+    /**
+     * Builds an interaction of the pair aspirin and warfarin
+     *
+     * @param conditionMeddraId the condition id
+     * @param drug1RxnormId the id of the first drug
+     * @param prr the proportional reporting ratio, 0 for a NULL value
+     * @param severity the severity, 0 for a NULL value
+     * @return the interaction
+     */
+    private static Twosides row(int conditionMeddraId, int drug1RxnormId, double prr, double severity) {
+        return new Twosides(drug1RxnormId, "Aspirin", 2, "Warfarin", conditionMeddraId, "condition " + conditionMeddraId,
+                1, 1, 1, 1, prr, 0.1, 0.01, severity, "Minor");
+    }
+
+    /**
+     * Rows with ties on severity and prr, and with NULL severity and prr
+     *
+     * @return the rows in no particular order
+     */
+    private static List<Twosides> rows() {
+        List<Twosides> rows = new ArrayList<>();
+        for (int condition = 1; condition <= 4; condition++) {
+            rows.add(row(condition, 1, 2.0, 0.5));
+            rows.add(row(condition, 3, 2.0, 0.5));
+            rows.add(row(condition, 2, 1.5, 0.5));
+            rows.add(row(condition, 1, 0, 0));
+            rows.add(row(condition, 2, 3.0, 0.9));
+        }
+        return rows;
+    }
+
+    /**
+     * Follows the cursors from the first page to the last
+     *
+     * @param query the snapshot
+     * @param limit the page size
+     * @return every row in page order
+     */
+    private static List<Twosides> readAllPages(SnapshotQuery query, int limit) {
+        List<Twosides> read = new ArrayList<>();
+        TwosidesPage.Cursor cursor = null;
+        while (true) {
+            TwosidesPage page = query.queryTwosidesPage("Aspirin", "Warfarin", false, cursor, limit);
+            assertTrue(page.getRows().size() <= limit);
+            read.addAll(page.getRows());
+            if (!page.hasMore()) {
+                assertNull(page.getNextCursor());
+                return read;
+            }
+            assertEquals(limit, page.getRows().size());
+            cursor = page.getNextCursor();
+        }
+    }
+
+    /**
+     * Every page size reads each row exactly once in severity order, across ties and NULL keys
+     */
+    @Test
+    public void readsEveryRowOnceAtAnyPageSize() {
+        List<Twosides> expected = new ArrayList<>(rows());
+        expected.sort(SnapshotQuery.SEVERITY_ORDER);
+        SnapshotQuery query = new SnapshotQuery(rows());
+        for (int limit = 1; limit <= expected.size() + 1; limit++) {
+            assertEquals(expected, readAllPages(query, limit), "limit " + limit);
+        }
+    }
+
+    /**
+     * A page ending exactly on the last row has no successor, and the page after a full page starts after its last row
+     */
+    @Test
+    public void endsOnLastPage() {
+        SnapshotQuery query = new SnapshotQuery(rows());
+        TwosidesPage whole = query.queryTwosidesPage("Aspirin", "Warfarin", false, null, 20);
+        assertEquals(20, whole.getRows().size());
+        assertFalse(whole.hasMore());
+        assertNull(whole.getNextCursor());
+
+        TwosidesPage first = query.queryTwosidesPage("Aspirin", "Warfarin", false, null, 19);
+        assertTrue(first.hasMore());
+        TwosidesPage last = query.queryTwosidesPage("Aspirin", "Warfarin", false, first.getNextCursor(), 19);
+        assertEquals(List.of(whole.getRows().get(19)), last.getRows());
+        assertFalse(last.hasMore());
+    }
+
+    /**
+     * The cursor orders rows like the snapshot: severity and prr descending, then condition and drug ascending
+     */
+    @Test
+    public void comparesCursorKeysInSeverityOrder() {
+        TwosidesPage.Cursor cursor = new TwosidesPage.Cursor(row(2, 2, 2.0, 0.5));
+        assertTrue(cursor.precedes(row(1, 1, 2.0, 0.4)));
+        assertTrue(cursor.precedes(row(1, 1, 1.9, 0.5)));
+        assertTrue(cursor.precedes(row(3, 1, 2.0, 0.5)));
+        assertTrue(cursor.precedes(row(2, 3, 2.0, 0.5)));
+        assertTrue(cursor.precedes(row(1, 1, 0, 0)));
+        assertFalse(cursor.precedes(row(2, 2, 2.0, 0.5)));
+        assertFalse(cursor.precedes(row(2, 1, 2.0, 0.5)));
+        assertFalse(cursor.precedes(row(9, 9, 2.1, 0.5)));
+
+        TwosidesPage.Cursor nullKeys = new TwosidesPage.Cursor(row(1, 1, 0, 0));
+        assertTrue(nullKeys.precedes(row(2, 1, 0, 0)));
+        assertFalse(nullKeys.precedes(row(9, 9, 0.1, 0)));
+    }
+
+    /**
+     * A page size that can never make progress is rejected
+     */
+    @Test
+    public void rejectsNonPositiveLimit() {
+        SnapshotQuery query = new SnapshotQuery(rows());
+        assertThrows(IllegalArgumentException.class, () -> query.queryTwosidesPage("Aspirin", "Warfarin", false, null, 0));
+        assertThrows(IllegalArgumentException.class, () -> query.queryTwosidesPage("Aspirin", "Warfarin", false, null, -1));
+    }
+}
@@ -0,0 +1,136 @@
+package com;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for the weighted round robin thread pool
+ */
+public class WeightedFairExecutorTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    /**
+     * Occupies a worker until released, so the tasks queued meanwhile are picked in schedule order
+     *
+     * @param executor the executor
+     * @param lane the lane of the blocking task
+     * @return the latch releasing the worker
+     * @throws InterruptedException if interrupted while waiting for the worker
+     */
+    private static CountDownLatch block(WeightedFairExecutor executor, int lane) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(lane, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        return release;
+    }
+
+    /**
+     * Queues tasks recording their lane in run order
+     *
+     * @param executor the executor
+     * @param lane the lane of the tasks
+     * @param count the number of tasks
+     * @param order the list the lanes are recorded in
+     * @param done counted down by every task
+     */
+    private static void queue(WeightedFairExecutor executor, int lane, int count, List<Integer> order, CountDownLatch done) {
+        for (int i = 0; i < count; i++) {
+            executor.execute(lane, () -> {
+                order.add(lane);
+                done.countDown();
+            });
+        }
+    }
+
+    /**
+     * With weights 3 and 1 and both lanes busy, every 4 consecutive tasks hold exactly one task of lane 1
+     */
+    @Test
+    public void interleavesLanesByWeight() throws InterruptedException {
+        WeightedFairExecutor executor = new WeightedFairExecutor("test", 1, 0, 3, 1);
+        CountDownLatch release = block(executor, 0);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(40);
+        queue(executor, 0, 30, order, done);
+        queue(executor, 1, 10, order, done);
+        release.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        for (int start = 0; start + 4 <= 24; start++) {
+            assertEquals(1, Collections.frequency(order.subList(start, start + 4), 1), "tasks " + order);
+        }
+        executor.shutdown(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * The turns of an idle lane are given to the busy lanes instead of being waited out
+     */
+    @Test
+    public void givesIdleTurnsToBusyLanes() throws InterruptedException {
+        WeightedFairExecutor executor = new WeightedFairExecutor("test", 1, 0, 1, 1, 1);
+        CountDownLatch release = block(executor, 0);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(20);
+        queue(executor, 0, 10, order, done);
+        queue(executor, 1, 10, order, done);
+        release.countDown();
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        //lane 2 has nothing queued, so lanes 0 and 1 alternate without gaps
+        for (int i = 1; i < order.size(); i++) {
+            assertNotEquals(order.get(i - 1), order.get(i), "tasks " + order);
+        }
+        assertEquals(10, executor.getCompleted(1));
+        assertEquals(0, executor.getCompleted(2));
+        executor.shutdown(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A reserved worker runs lane 0 while every other worker is busy, and never runs the other lanes
+     */
+    @Test
+    public void reservesWorkersForFirstLane() throws InterruptedException {
+        WeightedFairExecutor executor = new WeightedFairExecutor("test", 2, 1, 1, 1);
+        CountDownLatch release = block(executor, 1);
+        List<String> laneOneThreads = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch laneOneDone = new CountDownLatch(5);
+        for (int i = 0; i < 5; i++) {
+            executor.execute(1, () -> {
+                laneOneThreads.add(Thread.currentThread().getName());
+                laneOneDone.countDown();
+            });
+        }
+        CountDownLatch laneZeroDone = new CountDownLatch(1);
+        String[] laneZeroThread = new String[1];
+        executor.execute(0, () -> {
+            laneZeroThread[0] = Thread.currentThread().getName();
+            laneZeroDone.countDown();
+        });
+        assertTrue(laneZeroDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(laneZeroThread[0].endsWith("-reserved"), laneZeroThread[0]);
+        //the only unreserved worker is still blocked, so no lane 1 task has run
+        assertEquals(5, executor.getQueued(1));
+        release.countDown();
+        assertTrue(laneOneDone.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        for (String thread : laneOneThreads) {
+            assertFalse(thread.endsWith("-reserved"), thread);
+        }
+        executor.shutdown(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}